@@ -94,6 +94,7 @@ public final class R {
         public static final int fehler_spielfeld=0x7f060024;
         public static final int feldgroesse_waehlen=0x7f060007;
         public static final int gewinner=0x7f060028;
+        public static final int lobby_rtt=0x7f060033;
         public static final int name=0x7f06001d;
         public static final int neuenspielerhinzufuegen=0x7f060020;
         public static final int none_found=0x7f06002c;
@@ -135,6 +136,7 @@ public final class R {
         public static final int toast_dein_zug=0x7f060026;
         public static final int toast_konfiguriere=0x7f060001;
         public static final int toast_verbindung_beendet=0x7f060032;
+        public static final int toast_verbindung_unterbrochen=0x7f060034;
         public static final int toast_warten_auf=0x7f060027;
     }
     public static final class style {
@@ -9,12 +9,15 @@ import android.app.ListActivity;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
-import de.fhgiessen.mni.bluememory.client.ClientBT;
+import android.widget.TextView;
 import de.fhgiessen.mni.bluememory.client.ClientLokal;
+import de.fhgiessen.mni.bluememory.client.ClientRemote;
 import de.fhgiessen.mni.bluememory.client.ClientStrategie;
 import de.fhgiessen.mni.bluememory.client.MemoryActivity;
 import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
@@ -63,6 +66,18 @@ public class Lobby extends ListActivity implements MemoryActivity {
 	 */
 	private boolean lockBack;
 	
+	/** Aktualisiert regelmäßig die angezeigten Round-Trip-Times */
+	private Handler handler;
+	
+	/** Zeichnet die Spielerliste mit den aktuellen Round-Trip-Times neu */
+	private Runnable rttAnzeigen = new Runnable() {
+		@Override
+		public void run() {
+			spielerAdapter.notifyDataSetChanged();
+			handler.postDelayed(this, GlobalValues.PING_INTERVALL);
+		}
+	};
+	
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -96,8 +111,8 @@ public class Lobby extends ListActivity implements MemoryActivity {
 			// Lokale Verbindung zum Server-Service setzen
 			komm = ClientLokal.getInstance();
 		} else if (intentAction.equals(GlobalValues.START_CLIENT_BT)) {
-			// Bluetooth-Verbindung zum Server-Service setzen
-			komm = ClientBT.getInstance();
+			// Verbindung zum Server-Service setzen, Bluetooth oder die Transport-Art aus dem Intent
+			komm = ClientRemote.getInstance(getIntent().getStringExtra("transport"));
 			
 			// "Spiel starten"-Button umbenennen und deaktivieren
 			Button button = (Button) findViewById(R.id.btn_spiel_starten);
@@ -110,11 +125,11 @@ public class Lobby extends ListActivity implements MemoryActivity {
 		
 		// Spielerliste initialiseren
 		spielerListe = new ArrayList<String>();
-		spielerAdapter = new ArrayAdapter<String>(
-				this,
-				android.R.layout.simple_list_item_1,
-				this.spielerListe
-		);
+		spielerAdapter = erzeugeAdapter();
+		
+		// Round-Trip-Times regelmäßig aktualisieren
+		handler = new Handler();
+		handler.postDelayed(rttAnzeigen, GlobalValues.PING_INTERVALL);
 		
 		// Name des Spielers an diesem Gerät aus den Shared Prefs holen
 		spielerName = getSharedPreferences(GlobalValues.STATS_SAVE_FILE, 0).getString("stat_name", "ActivityName");
@@ -131,6 +146,7 @@ public class Lobby extends ListActivity implements MemoryActivity {
 	
 	@Override
 	protected void onDestroy() {
+		if (handler != null) handler.removeCallbacks(rttAnzeigen);
 		if (isFinishing()) {
 			Log.d(TAG, "Verbindung wird getrennt.");
 			komm.trenneVerbindung();
@@ -213,12 +229,8 @@ public class Lobby extends ListActivity implements MemoryActivity {
 	public void onLobbyEmpfangen(List<String> spielerListe) {
 		// Listen-Adapter erstellen
 		this.spielerListe = spielerListe;
-		spielerAdapter = new ArrayAdapter<String>(
-				this,
-				android.R.layout.simple_list_item_1,
-				this.spielerListe
-		);
-				
+		spielerAdapter = erzeugeAdapter();
+		
 		// Adapter der Liste zuordnen
 		setListAdapter(spielerAdapter);
 		
@@ -259,9 +271,9 @@ public class Lobby extends ListActivity implements MemoryActivity {
 	public void onSpielStarten() {
 		Intent intent = new Intent(this, Spiel.class);
 		intent.setAction(getIntent().getAction());
-		intent.putExtra("spielerListe", (ArrayList<String>) spielerListe);
 		// TODO: Spielername aus SharedPrefs
 		intent.putExtra("spielerLokal", spielerName);
+		if (getIntent().hasExtra("transport")) intent.putExtra("transport", getIntent().getStringExtra("transport"));
 		
 		// Spiel aufrufen
 		startActivity(intent);
@@ -307,9 +319,27 @@ public class Lobby extends ListActivity implements MemoryActivity {
 		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
 		Log.w(TAG, "Spielzug empfangen, keine Verwendung");
 	}
+	
+	@Override
+	public void onSpielzugErgebnis(int zug, int zudeckenNach, int naechster, long zudeckenUm) {
+		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
+		Log.w(TAG, "Spielzug empfangen, keine Verwendung");
+	}
+	
+	@Override
+	public void onZugPaarErgebnis(int erste, int zweite, boolean paar, int zudeckenNach, int naechster, long zudeckenUm) {
+		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
+		Log.w(TAG, "Spielzug empfangen, keine Verwendung");
+	}
 
 	@Override
-	public void onRate(String name) {
+	public void onZugAngenommen(int zudeckenNach, int naechster, long zudeckenUm) {
+		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
+		Log.w(TAG, "Annahme eines Spielzugs empfangen, keine Verwendung");
+	}
+	
+	@Override
+	public void onRate(int platz) {
 		// Es wird hier noch nicht gespielt, daher tut die Methode nichts.
 		Log.w(TAG, "Aufforderung zum Raten empfangen, keine Verwendung");
 	}
@@ -326,6 +356,29 @@ public class Lobby extends ListActivity implements MemoryActivity {
 		Log.w(TAG, "Nachricht über Spielende empfangen, keine Verwendung");
 	}
 	
+	/**
+	 * Erzeugt den Listen-Adapter für die Spielerliste.
+	 * 
+	 * Ist die Round-Trip-Time zu einem Spieler bekannt (s. ClientStrategie.getRtt()), wird sie
+	 * samt Schwankung hinter dem Namen angezeigt. Die Liste selbst enthält weiterhin nur die Namen.
+	 * 
+	 * @return Der Adapter.
+	 */
+	private ArrayAdapter<String> erzeugeAdapter() {
+		return new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, this.spielerListe) {
+			@Override
+			public View getView(int position, View convertView, ViewGroup parent) {
+				TextView view = (TextView) super.getView(position, convertView, parent);
+				
+				String name = getItem(position);
+				int rtt = (komm != null) ? komm.getRtt(name) : -1;
+				if (rtt >= 0) view.setText(getString(R.string.lobby_rtt, name, rtt, komm.getJitter(name)));
+				
+				return view;
+			}
+		};
+	}
+	
 	/**
 	 * Aktiviert / Deaktiviert den Button zum Starten des Spiels.
 	 * 
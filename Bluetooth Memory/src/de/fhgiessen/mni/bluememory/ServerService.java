@@ -1,29 +1,61 @@
 package de.fhgiessen.mni.bluememory;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import android.app.Service;
 import android.content.Intent;
+import android.os.Handler;
 import android.os.IBinder;
 import android.util.Log;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
 import de.fhgiessen.mni.bluememory.datentypen.Spielfeld;
+import de.fhgiessen.mni.bluememory.netzwerk.BluetoothTransportServer;
+import de.fhgiessen.mni.bluememory.netzwerk.Protokoll;
+import de.fhgiessen.mni.bluememory.netzwerk.PufferPool;
+import de.fhgiessen.mni.bluememory.netzwerk.NioTransportServer;
+import de.fhgiessen.mni.bluememory.netzwerk.SpeicherTransportServer;
+import de.fhgiessen.mni.bluememory.netzwerk.TcpTransportServer;
+import de.fhgiessen.mni.bluememory.netzwerk.TransportServer;
+import de.fhgiessen.mni.bluememory.server.Postfach;
+import de.fhgiessen.mni.bluememory.server.Raum;
 import de.fhgiessen.mni.bluememory.server.ServerBT;
 import de.fhgiessen.mni.bluememory.server.ServerLokal;
-import de.fhgiessen.mni.bluememory.server.ServerStrategie;
+import de.fhgiessen.mni.bluememory.server.ServerRemote;
+import de.fhgiessen.mni.bluememory.server.Verteiler;
 
 /**
  * Agiert als Server für das Memory-Spiel
  * 
- * Der Server-Service hält eine Liste von Verbindungen zu Spielern (repräsentiert durch
- * ServerStrategie), koordiniert den Spielablauf und verteilt oder bearbeitet die Nachrichten
- * an bzw. von den Spieler-Geräten.
+ * Der Server-Service nimmt die Verbindungen zu Spielern (repräsentiert durch ServerStrategie)
+ * entgegen und verteilt sie auf Räume. Jeder Raum ist ein eigenes Spiel mit eigener
+ * Spielerliste, eigenem Spielfeld und eigenem Spielablauf (s. Raum). Ein Client wählt seinen
+ * Raum mit HELO (s. Protokoll), nach einem Verbindungsabbruch wird er über seine Sitzung wieder
+ * dem richtigen Raum zugeordnet. Räume werden beim ersten HELO angelegt.
  * 
- * Es gibt genau einen lokalen Spieler, welcher immer der erste Spieler in der Liste ist und
- * durch ein ServerLokal-Objekt repräsentiert wird. Alle anderen Spieler sind über ein entferntes
- * Gerät verbunden und werden durch eine andere Server-Strategie repräsentiert (in diesem Fall
- * ServerBT).
+ * Im Raum LOKALER_RAUM spielt der lokale Spieler, er ist dort immer der erste Spieler in der
+ * Liste und wird durch ein ServerLokal-Objekt repräsentiert. Alle anderen Spieler sind über ein
+ * entferntes Gerät verbunden und werden durch ein ServerRemote-Objekt repräsentiert. Über
+ * welchen Transport diese Spieler verbunden sind (Bluetooth, TCP oder innerhalb der JVM), legt
+ * das Intent-Extra "transport" fest (s. GlobalValues.TRANSPORT_*), Standard ist Bluetooth.
+ * 
+ * Mit dem Intent-Extra "headless" läuft der Service als reiner Spielserver ohne lokalen
+ * Spieler, Standard-Transport ist dann TCP. Ein Raum startet sein Spiel selbst, sobald
+ * "spieler" Spieler beigetreten sind (Standard: GlobalValues.MAX_PLAYERS), und wird
+ * geschlossen, wenn alle Spieler ihn verlassen haben. Neue Räume können jederzeit entstehen,
+ * der Transport-Server bleibt deshalb offen. Für viele Räume empfiehlt sich der Transport
+ * GlobalValues.TRANSPORT_NIO, der alle Verbindungen in wenigen Threads bedient.
+ * 
+ * Die Spiellogik läuft nicht im UI-Thread, sondern in Postfächern (s. Postfach), die der
+ * Verteiler des Service auf alle Kerne verteilt: Jeder Raum hat sein eigenes, die Raumliste und
+ * die Verbindungsverwaltung liegen im Postfach des Service. Die Methoden des Service müssen
+ * deshalb dort aufgerufen werden (s. getPostfach()), ausgenommen sind nur die
+ * Lifecycle-Methoden, die Getter, onSpielStarten(), sitzungWartet() und sitzungBeendet().
  * 
  * Der ServerService ist als Singleton implementiert, alle ServerStrategien können direkt mit dem
  * ServerService-Objekt kommunizieren. Die Singleton-Instanz wird mit den Lifecycle-Methoden
@@ -37,32 +69,47 @@ public class ServerService extends Service {
 	/** Logcat-Tag der Klasse */
 	private static final String TAG = "BlueMemory.ServerService";
 	
+	/** Die Nummer des Raums, in dem der lokale Spieler spielt und den ältere Clients betreten */
+	public static final int LOKALER_RAUM = Protokoll.STANDARD_RAUM;
+	
 	/** Das ServerService-Singleton-Objekt */
 	private static ServerService singleton = null;
 	
+	/** Verteilt die Postfächer der Räume und des Service auf die Kerne */
+	private Verteiler verteiler;
+	
+	/** Das Postfach des Service, darin laufen Raumliste und Verbindungsverwaltung */
+	private Postfach postfach;
+	
+	/** Führt Aufgaben im UI-Thread aus (z.B. Toasts) */
+	private Handler ui;
+	
 	/** Der Socket, auf dem aktuell auf neue Spielern gewartet wird. */
-	private ServerBT serverSocket;
+	private ServerRemote serverSocket;
+	
+	/** Die Transport-Art der entfernten Spieler (s. GlobalValues.TRANSPORT_*) */
+	private String transportArt;
 	
-	/** Die Nummer des zur Zeit aktiven Spielers */
-	private int spielerAktiv;
+	/** Der Server, auf dem neue Verbindungen entgegengenommen werden, solange die Lobby offen ist */
+	private TransportServer transportServer;
 	
-	/** Zähler für die erfolgreich empfangenen Spielfelder */
-	private int spielfeldOk;
+	/** true, wenn der Service ohne lokalen Spieler als reiner Spielserver läuft */
+	private boolean headless;
 	
-	/** Zähler für die erfolgreich empfangenen Spielzüge */
-	private int zugOk;
+	/** Im Headless-Betrieb: Ab dieser Spielerzahl startet ein Raum sein Spiel */
+	private int spielerProRaum;
 	
-	/** Alle bisher getätigten Spielzüge */
-	private int zuege;
+	/** Die Räume nach ihrer Nummer */
+	private Map<Integer, Raum> raeume;
 	
-	/** Hält fest, ob das Spiel schon gestartet wurde oder noch nicht */
-	private boolean spielGestartet;
+	/** Der Raum des lokalen Spielers, null im Headless-Betrieb */
+	private volatile Raum lokalerRaum;
 	
-	/** Die mit dem Server verbundenen Spieler */
-	public List<ServerStrategie> connections;
+	/** Angenommene Verbindungen, die noch keinem Raum zugeordnet sind (vor HELO bzw. FORTSETZEN) */
+	private List<ServerRemote> neueVerbindungen;
 	
-	/** Das aktuelle Spielfeld */
-	public Spielfeld spielfeld;
+	/** Die Räume, in denen ein abgebrochener Spieler wartet, nach dem Token seiner Sitzung */
+	private final Map<String, Raum> wartendeSitzungen = new ConcurrentHashMap<String, Raum>();
 	
 	/** Die Höhe des Spielfelds des letzten Spiels */
 	private int spielfeldHoehe;
@@ -89,6 +136,9 @@ public class ServerService extends Service {
 	public void onCreate() {
 		Log.d(TAG, "========== onCreate() ==========");
 		
+		ui = new Handler();
+		verteiler = new Verteiler();
+		postfach = new Postfach(verteiler);
 		singleton = this;
 		
 		super.onCreate();
@@ -118,29 +168,38 @@ public class ServerService extends Service {
 			Log.d(TAG, "Start mit Intent, aber ohne Extras.");
 		}
 		
-		// Spiel ist noch nicht gestartet
-		spielGestartet = false;
-		
-		// Spielfeld-OK-Counter resetten
-		spielfeldOk = 0;
+		// Betriebsart auswerten
+		headless = (intent != null) && intent.getBooleanExtra("headless", false);
+		spielerProRaum = (intent != null) ? intent.getIntExtra("spieler", GlobalValues.MAX_PLAYERS) : GlobalValues.MAX_PLAYERS;
 		
-		// Verbindungsliste initialisieren
-		connections = new ArrayList<ServerStrategie>();
+		// Transport-Art auswerten
+		transportArt = headless ? GlobalValues.TRANSPORT_TCP : GlobalValues.TRANSPORT_BT;
+		if ((intent != null) && intent.hasExtra("transport")) transportArt = intent.getStringExtra("transport");
+		Log.d(TAG, "Transport: " + transportArt + (headless ? ", headless mit " + spielerProRaum + " Spielern pro Raum" : ""));
 		
-		// Lokalen Spieler erstellen und in die Liste einfügen
-		connections.add(new ServerLokal());
-		
-		// Ggf. Spielfeld generieren
-		try {
-			Log.d(TAG, "Spielfeld wird generiert . . .");
-			spielfeld = Spielfeld.generate(this, spielfeldBreite, spielfeldHoehe, spielfeldDeck, spielfeldPause);
-			Log.d(TAG, spielfeld.toJSON());
-		} catch (FileNotFoundException e) {
-			spielfeld = null;
-		}
+		// Der lokale Spieler wird aus dem UI-Thread benachrichtigt
+		final ServerLokal lokalerSpieler = headless ? null : new ServerLokal();
 		
-		// Suche nach neuen Spielern starten.
-		sucheSpieler();
+		postfach.einstellen(new Runnable() {
+			@Override
+			public void run() {
+				// Räume und Verbindungsliste initialisieren
+				raeume = new HashMap<Integer, Raum>();
+				neueVerbindungen = new ArrayList<ServerRemote>();
+				
+				// Raum des lokalen Spielers erstellen, der lokale Spieler ist immer der erste
+				lokalerRaum = null;
+				if (lokalerSpieler != null) {
+					Raum lokal = erzeugeRaum(LOKALER_RAUM);
+					lokal.getSpielerliste().hinzufuegen(lokalerSpieler, null);
+					raeume.put(LOKALER_RAUM, lokal);
+					lokalerRaum = lokal;
+				}
+				
+				// Suche nach neuen Spielern starten.
+				sucheSpieler();
+			}
+		});
 		
 		return super.onStartCommand(intent, flags, startId);
 	}
@@ -150,41 +209,211 @@ public class ServerService extends Service {
 		Log.d(TAG, "========== onDestroy() ==========");
 		
 		singleton = null;
-		connections = null;
-		spielfeld = null;
-		serverSocket = null;
+		lokalerRaum = null;
+		postfach.einstellen(new Runnable() {
+			@Override
+			public void run() {
+				if (raeume != null) {
+					for (Raum raum: raeume.values()) schliessen(raum);
+					for (ServerRemote conn: neueVerbindungen) conn.trenneVerbindung();
+				}
+				raeume = null;
+				serverSocket = null;
+				schliesseTransportServer();
+				Log.d(TAG, "Puffer-Pool: " + PufferPool.getTreffer() + " Treffer, " + PufferPool.getFehlschlaege() + " Fehlschläge");
+			}
+		});
+		verteiler.beenden();
 		
-		ServerBT.cleanUp(this);
+		if (GlobalValues.TRANSPORT_BT.equals(transportArt)) ServerBT.cleanUp(this);
 		
 		super.onDestroy();
 	}
 	
+	/**
+	 * Liefert das Postfach des Service.
+	 * 
+	 * Alle Aufrufe an den Service aus anderen Threads und aus den Räumen werden dort eingestellt.
+	 * 
+	 * @return Das Postfach.
+	 */
+	public Postfach getPostfach() {
+		return postfach;
+	}
+	
+	/**
+	 * Liefert den Verteiler, der die Postfächer abarbeitet.
+	 * 
+	 * @return Der Verteiler.
+	 */
+	public Verteiler getVerteiler() {
+		return verteiler;
+	}
+	
+	/**
+	 * Erzeugt einen Raum mit einem neuen Spielfeld nach den Spieldaten des Service.
+	 * 
+	 * @param id Die Nummer des Raums.
+	 * @return Der Raum, sein Spielfeld ist null, wenn das Deck nicht installiert ist.
+	 */
+	private Raum erzeugeRaum(int id) {
+		Spielfeld spielfeld;
+		try {
+			Log.d(TAG, "Spielfeld für Raum " + id + " wird generiert . . .");
+			spielfeld = Spielfeld.generate(this, spielfeldBreite, spielfeldHoehe, spielfeldDeck, spielfeldPause);
+			Log.d(TAG, spielfeld.toJSON());
+		} catch (FileNotFoundException e) {
+			spielfeld = null;
+		}
+		
+		return new Raum(this, id, spielfeld, headless ? spielerProRaum : 0);
+	}
+	
+	/**
+	 * Schließt einen Raum in seinem Postfach.
+	 * 
+	 * @param raum Der Raum.
+	 */
+	private void schliessen(final Raum raum) {
+		raum.getPostfach().einstellen(new Runnable() {
+			@Override
+			public void run() {
+				raum.schliessen();
+			}
+		});
+	}
+	
+	/**
+	 * Liefert einen Raum.
+	 * 
+	 * @param id Die Nummer des Raums.
+	 * @return Der Raum oder null, wenn es ihn (noch) nicht gibt.
+	 */
+	public Raum getRaum(int id) {
+		return (raeume != null) ? raeume.get(id) : null;
+	}
+	
+	/**
+	 * Liefert den Raum, in dem der lokale Spieler spielt. Darf aus jedem Thread aufgerufen
+	 * werden, verändert werden darf der Raum aber nur in seinem Postfach.
+	 * 
+	 * @return Der Raum oder null, solange der Service nicht gestartet ist oder headless läuft.
+	 */
+	public Raum getLokalerRaum() {
+		return lokalerRaum;
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn der letzte Spieler einen Raum verlassen hat.
+	 * 
+	 * Der Raum wird geschlossen und aus der Liste entfernt, seine Nummer kann danach für ein
+	 * neues Spiel verwendet werden. Der Raum des lokalen Spielers meldet sich nicht.
+	 * 
+	 * @param raum Der leere Raum, er nimmt bereits keine Spieler mehr auf.
+	 */
+	public void onRaumLeer(Raum raum) {
+		if ((raeume == null) || (raeume.get(raum.getId()) != raum)) return;
+		
+		schliessen(raum);
+		raeume.remove(raum.getId());
+		Log.d(TAG, "Raum " + raum.getId() + " geschlossen, " + raeume.size() + " Räume.");
+	}
+	
 	/**
 	 * Erstellt einen Server-Socket, auf dem nach neuen Spielern gehört wird.
+	 * 
+	 * Wird bereits auf einen Spieler gewartet, passiert nichts.
 	 */
 	public void sucheSpieler() {
-		serverSocket = new ServerBT();
+		if (serverSocket != null) return;
+		
+		// Transport-Server beim ersten Mal öffnen
+		if (transportServer == null) {
+			try {
+				transportServer = erzeugeTransportServer();
+			} catch (IOException e) {
+				Log.e(TAG, "Transport-Server konnte nicht geöffnet werden: " + e.getMessage());
+				onVerbindungFehlgeschlagen();
+				return;
+			}
+		}
+		
+		if (GlobalValues.TRANSPORT_BT.equals(transportArt)) serverSocket = new ServerBT(transportServer);
+		else serverSocket = new ServerRemote(transportServer);
+		serverSocket.starteSuche();
 	}
 	
 	/**
-	 * Veranlasst den Start des Spiels.
+	 * Erzeugt den Transport-Server passend zur Transport-Art.
+	 * 
+	 * @return Der Transport-Server.
+	 * @throws IOException Wenn der Server nicht geöffnet werden kann.
 	 */
-	public void onSpielStarten() {
-		spielGestartet = true;
+	private TransportServer erzeugeTransportServer() throws IOException {
+		if (GlobalValues.TRANSPORT_TCP.equals(transportArt)) return new TcpTransportServer(GlobalValues.TCP_PORT);
+		if (GlobalValues.TRANSPORT_NIO.equals(transportArt)) return new NioTransportServer(GlobalValues.TCP_PORT);
+		if (GlobalValues.TRANSPORT_SPEICHER.equals(transportArt)) return new SpeicherTransportServer(GlobalValues.SDP_NAME);
+		
+		return new BluetoothTransportServer();
+	}
+	
+	/**
+	 * Schließt den Transport-Server, es können danach keine neuen Spieler mehr beitreten.
+	 */
+	private void schliesseTransportServer() {
+		if (transportServer == null) return;
 		
-		// Hören auf neue Spieler beenden
-		serverSocket.trenneVerbindung();
+		try {
+			transportServer.close();
+		} catch (IOException e) {
+			Log.e(TAG, "Fehler beim Schließen des Transport-Servers");
+		}
+		transportServer = null;
+	}
+	
+	/**
+	 * Schließt den Transport-Server, sobald in keinem Raum mehr Spieler beitreten oder sich
+	 * wieder verbinden können.
+	 * 
+	 * Wird von den Räumen nach dem Start des Spiels und nach dem Ende einer Frist aufgerufen.
+	 */
+	public void pruefeTransportServer() {
+		if ((raeume == null) || headless) return;
+		for (Raum raum: raeume.values()) {
+			if (!raum.istGestartet() || raum.wartetAufWiederverbindung()) return;
+		}
+		
+		for (ServerRemote conn: neueVerbindungen) conn.trenneVerbindung();
+		neueVerbindungen.clear();
+		if (serverSocket != null) serverSocket.trenneVerbindung();
 		serverSocket = null;
+		schliesseTransportServer();
+	}
+	
+	/**
+	 * Veranlasst den Start des Spiels im Raum des lokalen Spielers. Darf aus jedem Thread
+	 * aufgerufen werden.
+	 */
+	public void onSpielStarten() {
+		final Raum raum = getLokalerRaum();
+		if (raum == null) return;
 		
-		// Startsignal an alle senden
-		for (ServerStrategie conn: connections) conn.sendeSpielStarten();
+		raum.getPostfach().einstellen(new Runnable() {
+			@Override
+			public void run() {
+				raum.onSpielStarten();
+			}
+		});
 	}
 	
 	/**
 	 * Wird aufgerufen, wenn der Server-Socket einen neuen Spieler empfangen hat.
+	 * 
+	 * Die Verbindung wird erst mit HELO oder FORTSETZEN einem Raum zugeordnet.
 	 */
 	public void onNeueVerbindung() {
-		connections.add(serverSocket);
+		neueVerbindungen.add(serverSocket);
+		serverSocket = null;
 		sucheSpieler();
 	}
 	
@@ -193,155 +422,218 @@ public class ServerService extends Service {
 	 */
 	public void onVerbindungFehlgeschlagen() {
 		Log.e(TAG, "Verbindung fehlgeschlagen!");
+		serverSocket = null;
 		
-		ServerBT.cleanUp(this);
+		if (GlobalValues.TRANSPORT_BT.equals(transportArt)) {
+			// Toasts nur im UI-Thread
+			ui.post(new Runnable() {
+				@Override
+				public void run() {
+					ServerBT.cleanUp(ServerService.this);
+				}
+			});
+		}
 	}
 	
 	/**
-	 * Wird aufgerufen, wenn ein neuer Spieler zum Spiel hinzugekommen ist.
+	 * Wird aufgerufen, wenn sich ein Client mit HELO anmeldet.
 	 * 
-	 * @param name Der Name des neuen Spielers.
+	 * Die Verbindung wird an das Postfach des gewünschten Raums übergeben, der den Namen prüft
+	 * (s. Raum.onNeuerSpieler()). Gibt es den Raum noch nicht, wird er angelegt.
+	 * 
+	 * @param verbindung Die Verbindung des Clients.
+	 * @param raumId Die Nummer des gewünschten Raums.
+	 * @param name Der Name des Spielers.
 	 */
-	public void onNeuerSpieler(ServerStrategie connection, String name) {
-		// Prüfen, ob der Spielername schon belegt ist
-		boolean frei = true;
-		for (ServerStrategie conn: connections) {
-			if ((conn.toString() != null) && conn.toString().equals(name)) frei = false;
-		}
-		
-		if (frei) { // Spielername ist noch frei
-			if (connection == null) { // Lokaler Client
-				connections.get(0).setName(name);
-				connections.get(0).sendeHello();
-			} else { // Remote Client
-				connection.setName(name);
-				connection.sendeHello();
-				
-				// Den anderen Clients den neuen Mitspieler zeigen
-				for (ServerStrategie conn: connections)
-					if (!conn.equals(connection)) conn.sendeNeuerSpieler(name);
-			}
-		} else { // Spielername nicht frei (geht nur bei Remote)
-			connection.sendeFehlerHelo();
+	public void onHelo(ServerRemote verbindung, int raumId, String name) {
+		if ((raeume == null) || !neueVerbindungen.remove(verbindung)) {
+			verbindung.sendeFehlerHelo();
 			return;
 		}
+		
+		zuordnen(verbindung, raumId, name);
 	}
 	
 	/**
-	 * Wird aufgerufen, wenn ein Spieler das Spielfeld erfolgreich empfangen hat.
+	 * Wird aufgerufen, wenn ein Raum einen neuen Spieler abgelehnt hat.
+	 * 
+	 * Die Verbindung ist wieder eine neue Verbindung und kann es mit HELO erneut versuchen.
+	 * 
+	 * @param verbindung Die abgelehnte Verbindung.
 	 */
-	public void onSpielfeldOk() {
-		spielfeldOk++;
-		
-		// Wenn noch nicht alle OKs vorliegen, hier abbrechen
-		if (spielfeldOk < (connections.size())) return;
-		
-		// Allen Spielern den Namen des Spielers senden, der beginnen darf
-		String ersterSpieler = connections.get(ersterSpieler()).toString();
-		for (ServerStrategie conn: connections) conn.sendeRate(ersterSpieler);
+	public void onHeloAbgelehnt(ServerRemote verbindung) {
+		if ((raeume != null) && verbindung.istVerbunden()) neueVerbindungen.add(verbindung);
 	}
 	
 	/**
-	 * Wird aufgerufen, wenn ein Spielzug empfangen wurde.
+	 * Wird aufgerufen, wenn der Raum eines neuen Spielers geschlossen wurde, bevor er ihn
+	 * aufnehmen konnte. Der Spieler kommt in einen neuen Raum mit derselben Nummer.
 	 * 
-	 * @param zug Der Spielzug als String.
+	 * @param verbindung Die Verbindung des Clients.
+	 * @param raumId Die Nummer des gewünschten Raums.
+	 * @param name Der Name des Spielers.
 	 */
-	public void onZug(String zug) {
-		zuege++;
-		zugOk = 0;
+	public void onHeloWiederholen(ServerRemote verbindung, int raumId, String name) {
+		if (raeume == null) {
+			verbindung.sendeFehlerHelo();
+			return;
+		}
 		
-		for (ServerStrategie conn: connections) conn.sendeZug(zug);
+		zuordnen(verbindung, raumId, name);
 	}
 	
 	/**
-	 * Wird aufgerufen, wenn ein Client den Spielzug erfolgreich umgesetzt hat.
+	 * Übergibt eine Verbindung an das Postfach ihres Raums, der Raum wird bei Bedarf angelegt.
+	 * 
+	 * Die Verbindung wird erst nach dem Einstellen umgeleitet, damit kein Ereignis der Verbindung
+	 * vor Raum.onNeuerSpieler() im Raum ankommt.
+	 * 
+	 * @param verbindung Die Verbindung des Clients.
+	 * @param raumId Die Nummer des gewünschten Raums.
+	 * @param name Der Name des Spielers.
 	 */
-	public void onZugOk() {
-		// Wenn noch nicht alle OKs vorliegen, hier abbrechen
-		zugOk++;
-		if (zugOk < (connections.size())) return;
-		
-		// Testen, ob alle Karten aufgedeckt wurden (== Spiel ist zuende)
-		if (spielfeld.isSpielZuende()) {
-			Log.d(TAG, "Spiel zuende.");
-			for (ServerStrategie conn: connections) conn.sendeBeenden();
-			return;
-		}
-		
-		// Nächsten Spieler ermitteln
-		String name;
-		if (((zuege % 2) != 0) || (((zuege % 2) == 0) && spielfeld.lastFoundPair)) {
-			name = connections.get(spielerAktiv).toString();
-		} else {
-			spielerAktiv = (spielerAktiv + 1) % connections.size();
-			name = connections.get(spielerAktiv).toString();
+	private void zuordnen(final ServerRemote verbindung, int raumId, final String name) {
+		Raum neu = raeume.get(raumId);
+		if (neu == null) {
+			neu = erzeugeRaum(raumId);
+			if (neu.spielfeld == null) {
+				Log.w(TAG, "Raum " + raumId + " kann nicht angelegt werden.");
+				neueVerbindungen.add(verbindung);
+				verbindung.sendeFehlerHelo();
+				return;
+			}
+			raeume.put(raumId, neu);
+			Log.d(TAG, "Raum " + raumId + " angelegt, " + raeume.size() + " Räume.");
 		}
 		
-		// Allen Spielern den Namen des Spielers senden, der als nächstes dran ist
-		for (ServerStrategie conn: connections) conn.sendeRate(name);
+		final Raum raum = neu;
+		raum.getPostfach().einstellen(new Runnable() {
+			@Override
+			public void run() {
+				raum.onNeuerSpieler(verbindung, name);
+			}
+		});
+		verbindung.weiterleiten(raum.getPostfach());
 	}
 	
 	/**
 	 * Wird aufgerufen, wenn ein Client die Verbindung getrennt hat.
 	 * 
-	 * @param spieler Der Name des Spielers, der die Verbindung getrennt hat.
+	 * Hat der Spieler einen Raum, läuft der Aufruf bereits im Postfach des Raums (s.
+	 * ServerRemote.weiterleiten()), sonst in dem des Service.
+	 * 
+	 * @param spieler Die Verbindung, die getrennt wurde.
 	 */
-	public void onVerbindungGetrennt(ServerStrategie spieler) {
-		Log.d(TAG, "Spieler " + spieler + " hat das Spiel verlassen.");
-		
-		if ((connections == null) || (connections.size() == 0)) return;
-		
-		// Wenn null übergeben wurde, handelt es sich um den lokalen Spieler
-		if (spieler == null) spieler = connections.get(0);
-		
-		// Möglicherweise ist die Liste schon leer, dann abbrechen.
-		if ((spieler == null) || (spieler.toString() == null)) return;
+	public void onVerbindungGetrennt(ServerRemote spieler) {
+		if (spieler.getRaum() != null) {
+			spieler.getRaum().onVerbindungGetrennt(spieler);
+			return;
+		}
 		
-		Integer id = getPositionOf(spieler.toString());
-		if (id == null) return;
+		// Verbindung ohne Raum
+		Log.d(TAG, "Verbindung " + spieler + " ohne Raum getrennt.");
+		if (neueVerbindungen != null) neueVerbindungen.remove(spieler);
 		spieler.trenneVerbindung();
-		connections.remove(id);
-		
-		connections.size();
-		
-		for (ServerStrategie conn: connections) conn.sendeSpielerWeg(spieler.toString());
-		if (!spielGestartet) sucheSpieler();
+		pruefeTransportServer();
 	}
 	
 	/**
-	 * Wird aufgerufen, wenn der Server die Verbindung zu allen Clients schließen soll.
+	 * Wird aufgerufen, wenn die Verbindung zu einem Client unerwartet abgebrochen ist (im
+	 * Postfach wie bei onVerbindungGetrennt()).
+	 * 
+	 * @param spieler Die abgebrochene Verbindung.
 	 */
-	public void onKillAll() {
-		Log.d(TAG, "Spielabbruch! Alle Sockets schließen.");
+	public void onVerbindungAbgebrochen(ServerRemote spieler) {
+		if (spieler.getRaum() != null) spieler.getRaum().onVerbindungAbgebrochen(spieler);
+		else onVerbindungGetrennt(spieler);
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein Client über eine neue Verbindung seine Sitzung fortsetzen möchte.
+	 * 
+	 * Der Raum mit der Sitzung steht in wartendeSitzungen, die neue Verbindung wird an sein
+	 * Postfach übergeben (s. Raum.onFortsetzen()).
+	 * 
+	 * @param verbindung Die neue Verbindung.
+	 * @param token Das Token der Sitzung.
+	 * @param letzteSequenz Die Nummer der letzten Nachricht, die der Client empfangen hat.
+	 */
+	public void onFortsetzen(final ServerRemote verbindung, final String token, final int letzteSequenz) {
+		// Raum mit dieser Sitzung suchen
+		Raum gefunden = null;
+		if ((raeume != null) && neueVerbindungen.remove(verbindung)) gefunden = wartendeSitzungen.get(token);
 		
-		for (ServerStrategie conn: connections) {
-			conn.trenneVerbindung();
-			connections.remove(conn);
+		if (gefunden == null) {
+			Log.w(TAG, "Sitzung kann nicht fortgesetzt werden.");
+			if (neueVerbindungen != null) neueVerbindungen.remove(verbindung);
+			verbindung.sendeFehlerFortsetzen();
+			verbindung.trenneVerbindung();
+			pruefeTransportServer();
+			return;
 		}
+		
+		final Raum raum = gefunden;
+		raum.getPostfach().einstellen(new Runnable() {
+			@Override
+			public void run() {
+				raum.onFortsetzen(verbindung, token, letzteSequenz);
+			}
+		});
+		verbindung.weiterleiten(raum.getPostfach());
 	}
 	
 	/**
-	 * Liest die Position eines Spielers in der Verbindungsliste anhand des Spielernamens aus.
+	 * Merkt sich den Raum, in dem ein abgebrochener Spieler auf seine Wiederverbindung wartet.
+	 * Darf aus jedem Thread aufgerufen werden.
 	 * 
-	 * @param spieler Der Name des gesuchten Spielers.
-	 * @return Die Position des Spielers, falls er in der Liste ist. Ansonsten null.
+	 * @param token Das Token der Sitzung.
+	 * @param raum Der Raum.
 	 */
-	private Integer getPositionOf(String spieler) {
-		Integer pos = null;
-		for (int i = 0; i < connections.size(); i++)
-			if (connections.get(i).toString().equals(spieler)) pos = i;
-		
-		return pos;
+	public void sitzungWartet(String token, Raum raum) {
+		if (token != null) wartendeSitzungen.put(token, raum);
+	}
+	
+	/**
+	 * Vergisst eine wartende Sitzung, weil sie fortgesetzt wurde oder ihre Frist abgelaufen ist.
+	 * Darf aus jedem Thread aufgerufen werden.
+	 * 
+	 * @param token Das Token der Sitzung.
+	 */
+	public void sitzungBeendet(String token) {
+		if (token != null) wartendeSitzungen.remove(token);
 	}
 	
 	/**
-	 * Ermittelt per Zufall den Spieler, der das Spiel beginnen darf.
+	 * Liefert die geglättete Round-Trip-Time zu einem Spieler im Raum des lokalen Spielers.
 	 * 
-	 * @return Die Position des ersten Spielers in der Liste.
-	 * @post this.spielerAktiv == return
+	 * @param spieler Der Name des Spielers.
+	 * @return Die RTT in ms oder -1, wenn sie nicht bekannt ist (z.B. beim lokalen Spieler).
 	 */
-	private int ersterSpieler() {
-		spielerAktiv = (int) (Math.round((connections.size()-1)*Math.random()));
-		return spielerAktiv;
+	public int getRtt(String spieler) {
+		Raum raum = getLokalerRaum();
+		return (raum != null) ? raum.getRtt(spieler) : -1;
+	}
+	
+	/**
+	 * Liefert die Schwankung der Round-Trip-Time zu einem Spieler im Raum des lokalen Spielers.
+	 * 
+	 * @param spieler Der Name des Spielers.
+	 * @return Der Jitter in ms oder -1, wenn er nicht bekannt ist.
+	 */
+	public int getJitter(String spieler) {
+		Raum raum = getLokalerRaum();
+		return (raum != null) ? raum.getJitter(spieler) : -1;
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn der Server die Verbindung zu allen Clients schließen soll.
+	 */
+	public void onKillAll() {
+		Log.d(TAG, "Spielabbruch! Alle Sockets schließen.");
+		
+		if (raeume == null) return;
+		for (Raum raum: raeume.values()) schliessen(raum);
+		for (ServerRemote conn: neueVerbindungen) conn.trenneVerbindung();
+		neueVerbindungen.clear();
 	}
-}
\ No newline at end of file
+}
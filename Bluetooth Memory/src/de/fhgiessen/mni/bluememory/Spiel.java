@@ -1,23 +1,21 @@
 package de.fhgiessen.mni.bluememory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.DialogInterface;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.GridView;
 import android.widget.AdapterView.OnItemClickListener;
-import de.fhgiessen.mni.bluememory.client.ClientBT;
 import de.fhgiessen.mni.bluememory.client.ClientLokal;
+import de.fhgiessen.mni.bluememory.client.ClientRemote;
 import de.fhgiessen.mni.bluememory.client.ClientStrategie;
 import de.fhgiessen.mni.bluememory.client.MemoryActivity;
 import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
@@ -35,21 +33,41 @@ import de.fhgiessen.mni.bluememory.datentypen.StringTools;
  * Ist das Spielfeld erfolgreich empfangen worden, wird dies dem Server mitgeteilt. Wenn
  * alle Clients ihr "OK" gesendet haben, beginnt das Spiel.
  * 
- * Der Callback onRate(String) erhält den Spielernamen, der als nächstes einen Zug machen darf.
- * Dieser Name wird mit dem Namen des aktuellen Spielers an diesem Gerät verglichen. Stimmen
- * sie überein, ist man am Zug und das Spielfeld wird freigegeben. Ansonsten bleibt das
+ * Der Callback onRate(int) erhält den Platz des Spielers, der als nächstes einen Zug machen darf.
+ * Dieser Platz wird mit dem Platz des Spielers an diesem Gerät verglichen. Stimmen sie überein,
+ * ist man am Zug und das Spielfeld wird freigegeben. Ansonsten bleibt das
  * Spielfeld gesperrt und es wird auf den Zug eines Mitspielers gewartet.
  * 
  * Tätigt man einen Zug, wird dieser an den Server gesendet. Der Server wiederum teilt diesen
  * Zug allen Clients mit, die den Zug auf dem Spielfeld darstellen, einen Moment warten
  * (abhängig vom Schwierigkeitsgrad) und dann den Erhalt bestätigen. Liegt dem Server die
- * Empfangsbestätigung vor, sendet er den Namen des nächsten Spielers, der am Zug ist.
+ * Empfangsbestätigung vor, sendet er den nächsten Spieler, der am Zug ist.
+ * 
+ * Im Pipeline-Modus (GlobalValues.ZUG_PIPELINE) sendet der Server mit dem Zug gleich den nächsten
+ * Spieler und die Zeit bis zum Zudecken. Der Zug wird sofort dargestellt und bestätigt, der nächste
+ * Spieler wird erst nach dem Zudecken freigegeben. Auf die Bestätigungen wartet der Server nicht.
+ * Führt der Server die Pause (GlobalValues.SERVER_PAUSE), wird erst zugedeckt, wenn sein RATE
+ * eintrifft, so decken alle Geräte im Takt des Servers zu. Kennt der Client den Versatz zur Uhr
+ * des Servers (s. netzwerk.Uhrabgleich), deckt er ohne RATE genau zum Zeitpunkt des Servers zu.
+ * 
+ * Gewartet wird immer mit dem Handler im UI-Thread, kein Zug belegt einen eigenen Thread.
+ * 
+ * Mit Zugpaaren (GlobalValues.ZUG_PAARE) wird die erste Karte nur auf diesem Gerät aufgedeckt und
+ * erst mit der zweiten an den Server gesendet. Das Ergebnis des ganzen Zugs kommt wie im
+ * Pipeline-Modus samt dem nächsten Spieler zurück.
+ * 
+ * Mit GlobalValues.OPTIMISTISCH deckt der aktive Spieler seine Karten sofort auf, ohne auf den
+ * Server zu warten. Der Server nimmt den Zug dann nur noch an (s. onZugAngenommen()), kommt er
+ * zu einem anderen Ergebnis, wird das Spielfeld abgeglichen. Lehnt er den Zug mit RATE ab, werden
+ * die ausstehenden Züge zurückgenommen (s. Spielfeld.zuruecknehmen()).
  * 
  * Erhält ein Client einen Zug, der auf der eigenen Kopie des Spielfelds ungültig ist, sind die
- * Spielfelder nicht mehr synchron. Die Activity wird dann beendet.
+ * Spielfelder nicht mehr synchron. Die Activity fordert dann die Änderungen seit dem eigenen
+ * Stand des Spielfelds beim Server an und bestätigt den Zug, sobald sie übernommen wurden.
  * 
  * Für jeden Spieler wird während des Spiels eine Statistik mit der Anzahl der Züge und der Anzahl
- * der gefundenen Paare geführt.
+ * der gefundenen Paare geführt. Sie ist nach den Plätzen der Spieler geordnet, die Namen (s.
+ * ClientStrategie.getPlaetze()) werden nur für die Anzeige gebraucht.
  * 
  * Sind alle Karten aufgedeckt, ist das Spiel zuende. Der Server sendet das entsprechende Signal an
  * alle Clients. Die Spiel-Activity ermittelt dann den (bzw. bei einem Unentschieden: die) Gewinner,
@@ -72,8 +90,41 @@ public class Spiel extends Activity implements MemoryActivity {
 	/** true, wenn ein Dialog im Vordergrund ist, ansonsten false. */
 	private boolean dialogImVordergrund;
 	
+	/** true, wenn wegen eines ungültigen Zugs auf den Abgleich des Spielfelds gewartet wird. */
+	private boolean abgleichAusstehend;
+	
+	/** Der Platz des Spielers, der nach einem Abgleich an der Reihe ist (nur im Pipeline-Modus), sonst -1. */
+	private int naechsterNachAbgleich;
+	
+	/** Handler für das verzögerte Zudecken und Bestätigen */
+	private Handler handler;
+	
+	/** Das geplante bzw. vom Server erwartete Zudecken samt Freigabe des nächsten Spielers oder null. */
+	private Runnable zudeckenAusstehend;
+	
+	/** Die erste Karte des eigenen Zugs, solange sie nur lokal aufgedeckt ist (nur mit Zugpaaren), sonst -1. */
+	private int ersteKarte;
+	
+	/** Die Anzahl eigener Züge, die schon angezeigt, aber vom Server noch nicht angenommen wurden (nur mit OPTIMISTISCH, höchstens die beiden Karten einer Runde). */
+	private int zuegeAusstehend;
+	
+	/** Der Stand des Spielfelds vor dem ersten ausstehenden Zug. */
+	private int standVorZug;
+	
+	/** Die eigene Statistik vor dem ersten ausstehenden Zug, sonst null. */
+	private int[] statistikVorZug;
+	
+	/** Der Stand des Spielfelds vor dem zweiten ausstehenden Zug, gilt nach der Annahme des ersten. */
+	private int standVorFolgezug;
+	
+	/** Die eigene Statistik vor dem zweiten ausstehenden Zug, sonst null. */
+	private int[] statistikVorFolgezug;
+	
+	/** Die Namen der Spieler nach ihrem Platz, null für freie Plätze. */
+	private String[] plaetze;
+	
 	/**
-	 * HashMap mit den Spielern und ihrer Statistik.
+	 * Die Statistik der Spieler nach ihrem Platz.
 	 * 
 	 * Die Statistik ist ein 4 Werte langer Integer-Array der Form:
 	 * [0] Spielzüge gesamt
@@ -81,13 +132,16 @@ public class Spiel extends Activity implements MemoryActivity {
 	 * [2] der jeweils erste Zug in einer Runde
 	 * [3] der jeweils zweite Zug in einer Runde
 	 */
-	private Map<String, Integer[]> spielerListe;
+	private int[][] statistik;
 	
 	/** Name des Spielers am Gerät. */
 	private String spielerLokal;
 	
-	/** Der Spieler, der gerade an der Reihe ist. */
-	private String spielerAktiv;
+	/** Platz des Spielers am Gerät. */
+	private int platzLokal;
+	
+	/** Der Platz des Spielers, der gerade an der Reihe ist, -1 vor dem ersten Zug. */
+	private int spielerAktiv;
 	
 	/** Die View für das Spielfeld */
 	private GridView gridView;
@@ -98,12 +152,28 @@ public class Spiel extends Activity implements MemoryActivity {
 			Log.d(TAG, "Klick auf Position: " + position);
 			
 			// Dem Server den Zug senden, wenn er darf
-			if (spielfeld.check(position, false)) {
+			if (spielfeld.check(position, false) && (position != ersteKarte)) {
+				// Mit Zugpaaren die erste Karte nur anzeigen, sie wird mit der zweiten gesendet
+				if (komm.hatZugPaare() && (ersteKarte < 0)) {
+					ersteKarte = position;
+					((ImageAdapter) gridView.getAdapter()).feld[position] = spielfeld.getVorderseite(position);
+					((ImageAdapter) gridView.getAdapter()).notifyDataSetChanged();
+					return;
+				}
+				
+				// Optimistisch den Zug sofort selbst umsetzen, der Server nimmt ihn nur noch an
+				if (komm.istOptimistisch()) {
+					zugVorausnehmen(position);
+					return;
+				}
+				
 				// Spielfeld lokal sofort sperren, damit keine weiteren Klicks möglich sind
 				spielfeld.locked = true;
 				
 				// Dem Server den Zug senden
-				komm.sendeZug(position);
+				if (ersteKarte >= 0) komm.sendeZugPaar(ersteKarte, position);
+				else komm.sendeZug(position);
+				ersteKarte = -1;
 			} else {
 				Log.d(TAG, "Ungültiger Zug. locked = " + spielfeld.locked);
 			}
@@ -123,11 +193,15 @@ public class Spiel extends Activity implements MemoryActivity {
 	protected void onStart() {
 		super.onStart();
 		dialogImVordergrund = false;
-		
-		// HashMap für Spieler-Stats zusammenbauen
-		spielerListe = new HashMap<String, Integer[]>();
-		for (String spieler: getIntent().getStringArrayListExtra("spielerListe"))
-			spielerListe.put(spieler, new Integer[] {0, 0, 0, 0});
+		abgleichAusstehend = false;
+		naechsterNachAbgleich = -1;
+		handler = new Handler();
+		zudeckenAusstehend = null;
+		ersteKarte = -1;
+		zuegeAusstehend = 0;
+		statistikVorZug = null;
+		statistikVorFolgezug = null;
+		spielerAktiv = -1;
 		
 		// Eigenen Spielernamen setzen
 		spielerLokal = getIntent().getStringExtra("spielerLokal");
@@ -136,8 +210,15 @@ public class Spiel extends Activity implements MemoryActivity {
 		if (getIntent().getAction().equals(GlobalValues.START_SERVER)) {
 			komm = ClientLokal.getInstance();
 		} else {
-			komm = ClientBT.getInstance();
+			komm = ClientRemote.getInstance(getIntent().getStringExtra("transport"));
 		}
+		
+		// Statistik nach den Plätzen der Spieler anlegen und den eigenen Platz suchen
+		plaetze = komm.getPlaetze();
+		statistik = new int[plaetze.length][4];
+		platzLokal = -1;
+		for (int platz = 0; platz < plaetze.length; platz++)
+			if (spielerLokal.equals(plaetze[platz])) platzLokal = platz;
 
 		// Spielfeld abrufen
 		komm.setActivity(this);
@@ -148,6 +229,9 @@ public class Spiel extends Activity implements MemoryActivity {
 	
 	@Override
 	protected void onDestroy() {
+		// Geplantes Zudecken und Bestätigen verwerfen
+		handler.removeCallbacksAndMessages(null);
+		
 		if (isFinishing()) {
 			Log.d(TAG, "Verbindung wird getrennt.");
 			komm.trenneVerbindung();
@@ -216,6 +300,28 @@ public class Spiel extends Activity implements MemoryActivity {
 
 	@Override
 	public void onSpielfeldEmpfangen(Spielfeld spielfeld) {
+		// Abgleich während des Spiels: Nur die Darstellung aktualisieren
+		if (this.spielfeld != null) {
+			Log.d(TAG, "Spielfeld abgeglichen, Stand " + spielfeld.getStand());
+			spielfeld.locked = true;
+			this.spielfeld = spielfeld;
+			((ImageAdapter) gridView.getAdapter()).feld = spielfeld.getKarten();
+			((ImageAdapter) gridView.getAdapter()).notifyDataSetChanged();
+			
+			// Den Zug, der den Abgleich ausgelöst hat, bestätigen
+			if (abgleichAusstehend) {
+				abgleichAusstehend = false;
+				if (naechsterNachAbgleich >= 0) {
+					komm.sendeZugOK();
+					onRate(naechsterNachAbgleich);
+					naechsterNachAbgleich = -1;
+				} else {
+					zugBestaetigenNachPause();
+				}
+			}
+			return;
+		}
+		
 		Log.d(TAG, "Spielfeld erfolgreich empfangen.");
 		
 		// Spielfeld setzen
@@ -244,13 +350,213 @@ public class Spiel extends Activity implements MemoryActivity {
 
 	@Override
 	public void onSpielzugEmpfangen(int zug) {
+		// Kurz warten, dann okay an Server senden
+		if (zugAusfuehren(zug)) zugBestaetigenNachPause();
+	}
+	
+	/**
+	 * Bestätigt einen Zug nach der Pause, die der Schwierigkeitsgrad vorgibt (ohne Pipeline).
+	 */
+	private void zugBestaetigenNachPause() {
+		handler.postDelayed(new Runnable() {
+			@Override
+			public void run() {
+				komm.sendeZugOK();
+			}
+		}, spielfeld.pause);
+	}
+	
+	@Override
+	public void onSpielzugErgebnis(int zug, int zudeckenNach, int naechster, long zudeckenUm) {
+		// Noch geplantes Zudecken sofort ausführen, der Server ist schon weiter
+		if (zudeckenAusstehend != null) {
+			handler.removeCallbacks(zudeckenAusstehend);
+			zudeckenAusstehend.run();
+		}
+		
+		if (!zugAusfuehren(zug)) {
+			// Nach dem Abgleich geht es mit dem nächsten Spieler weiter
+			naechsterNachAbgleich = naechster;
+			return;
+		}
+		
+		naechsterNachZudecken(zudeckenNach, naechster, zudeckenUm);
+	}
+	
+	@Override
+	public void onZugPaarErgebnis(int erste, int zweite, boolean paar, int zudeckenNach, int naechster, long zudeckenUm) {
+		// Noch geplantes Zudecken sofort ausführen, der Server ist schon weiter
+		if (zudeckenAusstehend != null) {
+			handler.removeCallbacks(zudeckenAusstehend);
+			zudeckenAusstehend.run();
+		}
+		
+		// Beide Karten umsetzen, nach einem Abgleich geht es mit dem nächsten Spieler weiter
+		if (!zugAusfuehren(erste)) {
+			// Die zweite Karte trotzdem zählen, damit die Runden stimmen
+			statistik[spielerAktiv][0]++;
+			naechsterNachAbgleich = naechster;
+			return;
+		}
+		if (!zugAusfuehren(zweite)) {
+			naechsterNachAbgleich = naechster;
+			return;
+		}
+		
+		// Kommt der Server zu einem anderen Ergebnis, sind die Spielfelder nicht mehr synchron
+		if (spielfeld.lastFoundPair != paar) {
+			Log.e(TAG, "Paar stimmt nicht mit dem Server überein. Abgleich wird angefordert.");
+			abgleichAusstehend = true;
+			naechsterNachAbgleich = naechster;
+			komm.getSpielfeldNeu();
+			return;
+		}
+		
+		naechsterNachZudecken(zudeckenNach, naechster, zudeckenUm);
+	}
+	
+	@Override
+	public void onZugAngenommen(int zudeckenNach, int naechster, long zudeckenUm) {
+		// Der Server hat einen Zug angenommen, den dieses Gerät schon zurückgenommen hat
+		if (zuegeAusstehend == 0) {
+			Log.e(TAG, "Annahme ohne ausstehenden Zug. Abgleich wird angefordert.");
+			abgleichAusstehend = true;
+			naechsterNachAbgleich = naechster;
+			komm.getSpielfeld();
+			return;
+		}
+		
+		// Die erste Karte der Runde ist angenommen, die zweite aber schon unterwegs: zurückgenommen
+		// wird ab jetzt nur noch die zweite
+		zuegeAusstehend--;
+		if (zuegeAusstehend > 0) {
+			standVorZug = standVorFolgezug;
+			statistikVorZug = statistikVorFolgezug;
+			statistikVorFolgezug = null;
+			komm.sendeZugOK();
+			return;
+		}
+		statistikVorZug = null;
+		
+		// Kommt der Server am Ende der Runde zu einem anderen Ergebnis, sind die Spielfelder nicht mehr synchron
+		boolean rundeZuende = (statistik[platzLokal][0] % 2) == 0;
+		if (rundeZuende && (spielfeld.lastFoundPair == (zudeckenNach > 0))) {
+			Log.e(TAG, "Paar stimmt nicht mit dem Server überein. Abgleich wird angefordert.");
+			abgleichAusstehend = true;
+			naechsterNachAbgleich = naechster;
+			komm.getSpielfeldNeu();
+			return;
+		}
+		
+		naechsterNachZudecken(zudeckenNach, naechster, zudeckenUm);
+	}
+	
+	/**
+	 * Setzt einen eigenen Zug sofort um und sendet ihn erst danach an den Server (nur mit
+	 * OPTIMISTISCH). Bis zur Annahme (s. onZugAngenommen()) gilt der Zug als ausstehend.
+	 * 
+	 * @param karte Die angeklickte Karte, mit Zugpaaren die zweite.
+	 */
+	private void zugVorausnehmen(int karte) {
+		// Den Stand vor dem ersten ausstehenden Zug merken, um abgelehnte Züge zurückzunehmen
+		if (zuegeAusstehend == 0) {
+			standVorZug = spielfeld.getStand();
+			statistikVorZug = statistik[platzLokal].clone();
+		} else {
+			standVorFolgezug = spielfeld.getStand();
+			statistikVorFolgezug = statistik[platzLokal].clone();
+		}
+		zuegeAusstehend++;
+		
+		if (ersteKarte >= 0) {
+			int erste = ersteKarte;
+			ersteKarte = -1;
+			zugAusfuehren(erste);
+			zugAusfuehren(karte);
+			spielfeld.locked = true;
+			komm.sendeZugPaar(erste, karte);
+			return;
+		}
+		
+		zugAusfuehren(karte);
+		
+		// Nach der ersten Karte einer Runde darf gleich die zweite folgen
+		if ((statistik[platzLokal][0] % 2) != 0) setTitle(GlobalValues.TITEL + getString(R.string.toast_dein_zug));
+		else spielfeld.locked = true;
+		komm.sendeZug(karte);
+	}
+	
+	/**
+	 * Nimmt die eigenen Züge zurück, die der Server abgelehnt hat (s. zugVorausnehmen()).
+	 * 
+	 * @return false, wenn der alte Stand nicht mehr im Änderungsprotokoll steht und das Spielfeld abgeglichen werden muss.
+	 */
+	private boolean zuegeZuruecknehmen() {
+		Log.w(TAG, "Eigene Züge abgelehnt: " + zuegeAusstehend + ". Werden zurückgenommen.");
+		zuegeAusstehend = 0;
+		statistik[platzLokal] = statistikVorZug;
+		statistikVorZug = null;
+		statistikVorFolgezug = null;
+		if (!spielfeld.zuruecknehmen(standVorZug)) return false;
+		
+		// GridView aktualisieren
+		((ImageAdapter) gridView.getAdapter()).feld = spielfeld.getKarten();
+		((ImageAdapter) gridView.getAdapter()).notifyDataSetChanged();
+		return true;
+	}
+	
+	/**
+	 * Bestätigt einen Zug mit Ergebnis und gibt den nächsten Spieler nach dem Zudecken frei.
+	 * 
+	 * @param zudeckenNach Die Zeit in ms bis zum Zudecken, 0 wenn nichts zuzudecken ist.
+	 * @param naechster Der Platz des Spielers, der danach am Zug ist.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens auf der Uhr des Servers oder -1.
+	 */
+	private void naechsterNachZudecken(int zudeckenNach, final int naechster, long zudeckenUm) {
+		// Sofort bestätigen, der Server wartet nicht darauf
+		komm.sendeZugOK();
+		
+		// Nächsten Spieler erst nach dem Zudecken freigeben: zum Zeitpunkt des Servers, wenn der
+		// Versatz der Uhren bekannt ist, mit Server-Pause beim RATE, sonst nach der Verzögerung
+		if (zudeckenNach > 0) {
+			zudeckenAusstehend = new Runnable() {
+				@Override
+				public void run() {
+					zudeckenAusstehend = null;
+					onRate(naechster);
+				}
+			};
+			long lokal = (zudeckenUm >= 0) ? komm.lokaleZeit(zudeckenUm) : -1;
+			if (lokal >= 0) handler.postAtTime(zudeckenAusstehend, lokal);
+			else if (!komm.hatServerPause()) handler.postDelayed(zudeckenAusstehend, zudeckenNach);
+		} else {
+			onRate(naechster);
+		}
+	}
+	
+	/**
+	 * Setzt einen empfangenen Zug auf dem Spielfeld um und führt die Statistik.
+	 * 
+	 * Ist der Zug auf dem eigenen Spielfeld ungültig, weicht es von dem des Servers ab. Dann wird
+	 * das ganze Spielfeld neu angefordert, die Änderungen seit dem eigenen Stand passen nicht mehr.
+	 * 
+	 * @param zug Die Karte, die aufgedeckt wurde.
+	 * @return true, wenn der Zug umgesetzt wurde, false, wenn auf den Abgleich gewartet wird.
+	 */
+	private boolean zugAusfuehren(int zug) {
 		setTitle(GlobalValues.TITEL + "Warten . . .");
 		if (!spielfeld.check(zug, true)) {
-			Log.e(TAG, "Ungültiger Zug empfangen. Spielfelder unterschiedlich?");
-			finish();
+			Log.e(TAG, "Ungültiger Zug empfangen. Spielfelder unterschiedlich? Abgleich wird angefordert.");
+			
+			// Zug trotzdem zählen, damit die Runden stimmen
+			statistik[this.spielerAktiv][0]++;
+			
+			abgleichAusstehend = true;
+			komm.getSpielfeldNeu();
+			return false;
 		} else {
 			// Aktiven Spieler holen - den brauchen wir noch öfter
-			Integer[] spielerAktiv = spielerListe.get(this.spielerAktiv);
+			int[] spielerAktiv = statistik[this.spielerAktiv];
 			
 			// Anzahl der Züge des aktuellen Spielers inkrementieren
 			spielerAktiv[0]++;
@@ -279,20 +585,46 @@ public class Spiel extends Activity implements MemoryActivity {
 				}
 			}
 			
-			// Kurz warten, dann okay an Server senden
-			new Warten().execute();
+			return true;
 		}
 	}
 
 	@Override
-	public void onRate(String name) {
+	public void onRate(int platz) {
+		// Der Server gibt den Takt vor, ein noch geplantes Zudecken entfällt
+		if (zudeckenAusstehend != null) {
+			handler.removeCallbacks(zudeckenAusstehend);
+			zudeckenAusstehend = null;
+		}
+		
+		// Der Server hat eigene, schon angezeigte Züge abgelehnt: zurücknehmen, notfalls abgleichen
+		if ((zuegeAusstehend > 0) && !zuegeZuruecknehmen()) {
+			abgleichAusstehend = true;
+			naechsterNachAbgleich = platz;
+			komm.getSpielfeld();
+			return;
+		}
+		
+		// Eine nur lokal aufgedeckte erste Karte verwerfen, z.B. wenn der Server den Zug abgelehnt hat
+		if (ersteKarte >= 0) {
+			ersteKarte = -1;
+			((ImageAdapter) gridView.getAdapter()).feld = spielfeld.getKarten();
+			((ImageAdapter) gridView.getAdapter()).notifyDataSetChanged();
+		}
+		
+		// Ist ein Spieler nach seiner ersten Karte gegangen, bricht der Server die Runde ab (s. Raum.onVerbindungGetrennt())
+		if ((spielerAktiv >= 0) && (platz != spielerAktiv) && ((statistik[spielerAktiv][0] % 2) != 0)) {
+			Log.d(TAG, "Runde von " + plaetze[spielerAktiv] + " abgebrochen.");
+			statistik[spielerAktiv][0]++;
+		}
+		
 		/*
 		 * Wenn es nicht der allererste Zug im gesamten Spiel ist (spielerAktiv wurde schonmal gesetzt)
 		 * oder wenn der es sich um den ersten Zug einer neuen Runde handelt:
 		 * 
 		 * Letzten beiden Züge zudecken (falls es kein Paar ist) und die GridView aktualisieren.
 		 */
-		if ((spielerAktiv != null) && (spielerListe.get(spielerAktiv)[0] % 2) == 0) {
+		if ((spielerAktiv >= 0) && (statistik[spielerAktiv][0] % 2) == 0) {
 			Log.d(TAG, "Karten zudecken.");
 			spielfeld.zudecken();
 			
@@ -302,19 +634,19 @@ public class Spiel extends Activity implements MemoryActivity {
 		}
 		
 		// Nachsehen, ob man selbst oder ein anderer Spieler an der Reihe ist
-		if (name.equals(spielerLokal)) {
+		if (platz == platzLokal) {
 			spielfeld.locked = false;
 			setTitle(GlobalValues.TITEL + getString(R.string.toast_dein_zug));
 			Log.d(TAG, "Juhu! Ich darf!");
 		} else {
 			spielfeld.locked = true;
-			String titel = getString(R.string.toast_warten_auf) + " " + name;
+			String titel = getString(R.string.toast_warten_auf) + " " + plaetze[platz];
 			setTitle(GlobalValues.TITEL + titel);
-			Log.d(TAG, name + " ist am Zug.");
+			Log.d(TAG, plaetze[platz] + " ist am Zug.");
 		}
 		
 		// Aktiven Spieler setzen
-		spielerAktiv = name;
+		spielerAktiv = platz;
 	}
 
 	@Override
@@ -326,18 +658,18 @@ public class Spiel extends Activity implements MemoryActivity {
 	public void onSpielZuende() {
 		// Maximale Anzahl gefundener Paare ermitteln
 		int paare = -1;
-		for (String spieler: spielerListe.keySet())
-			if (spielerListe.get(spieler)[1] > paare)
-				paare = spielerListe.get(spieler)[1];
+		for (int[] werte: statistik)
+			if (werte[1] > paare)
+				paare = werte[1];
 		
 		// Die Gewinner ermitteln
 		ArrayList<String> gewinner = new ArrayList<String>();
-		for (String spieler: spielerListe.keySet())
-			if (spielerListe.get(spieler)[1] == paare)
-				gewinner.add(spieler);
+		for (int platz = 0; platz < statistik.length; platz++)
+			if ((plaetze[platz] != null) && (statistik[platz][1] == paare))
+				gewinner.add(plaetze[platz]);
 		
 		// Eigene Statistik aktualisieren
-		Integer[] spielerStats = spielerListe.get(spielerLokal);
+		int[] spielerStats = statistik[platzLokal];
 		if (gewinner.contains(spielerLokal) && (gewinner.size() == 1))
 			Statistik.getInstance(this).updateStats(spielerStats[0], spielerStats[1], Statistik.GEWONNEN);
 		else if (gewinner.contains(spielerLokal) && (gewinner.size() > 1))
@@ -417,35 +749,4 @@ public class Spiel extends Activity implements MemoryActivity {
 		// Das Spiel ist schon gestartet, daher tut die Methode hier nichts.
 		Log.w(TAG, "Spiel starten empfangen, keine Verwendung");
 	}
-	
-	/**
-	 * Wartet, bevor dem Server SPIELZUG_OK gesendet wird.
-	 * 
-	 * Die Zeitspanne ist in GlobalValues.PAUSE definiert.
-	 * 
-	 * Params: Void
-	 * Progress: Void
-	 * Result: Void
-	 * 
-	 * @see http://developer.android.com/reference/android/os/AsyncTask.html
-	 * @author Timo Ebel
-	 */
-	private class Warten extends AsyncTask<Void, Void, Void> {
-
-		@Override
-		protected Void doInBackground(Void... params) {
-			try {
-				Thread.sleep(spielfeld.pause);
-			} catch (InterruptedException e) {
-				return null;
-			}
-			
-			return null;
-		}
-		
-		@Override
-		protected void onPostExecute(Void result) {
-			komm.sendeZugOK();
-		}
-	}
 }
\ No newline at end of file
@@ -149,6 +149,7 @@ public class SpielErstellen extends Activity {
 		intent.putExtra("deck", deckOrdner);
 		intent.putExtra("pause", pause);
 		intent.setAction(GlobalValues.START_SERVER);
+		if (getIntent().hasExtra("transport")) intent.putExtra("transport", getIntent().getStringExtra("transport"));
 		
 		// Intent absenden
 		startActivity(intent);
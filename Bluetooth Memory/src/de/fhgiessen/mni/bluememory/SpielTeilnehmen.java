@@ -12,7 +12,7 @@ import android.util.Log;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
-import de.fhgiessen.mni.bluememory.client.ClientBT;
+import de.fhgiessen.mni.bluememory.client.ClientRemote;
 import de.fhgiessen.mni.bluememory.client.ClientStrategie;
 import de.fhgiessen.mni.bluememory.client.MemoryActivity;
 import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
@@ -51,7 +51,7 @@ public class SpielTeilnehmen extends ListActivity implements MemoryActivity{
 		super.onStart();
 		
 		// Kommunikations-Objekt holen, Spieleliste abrufen
-		komm = ClientBT.getInstance();
+		komm = ClientRemote.getInstance(getIntent().getStringExtra("transport"));
 		komm.setActivity(this);
 		komm.getSpieleListe();
 		
@@ -87,6 +87,7 @@ public class SpielTeilnehmen extends ListActivity implements MemoryActivity{
 		Intent intent = new Intent(this, Lobby.class);
 		intent.setAction(GlobalValues.START_CLIENT_BT);
 		intent.putExtra(ClientStrategie.EXTRA_SPIEL, spieleListe.getItem(position));
+		if (getIntent().hasExtra("transport")) intent.putExtra("transport", getIntent().getStringExtra("transport"));
 		startActivity(intent);
 	}
 	
@@ -209,9 +210,27 @@ public class SpielTeilnehmen extends ListActivity implements MemoryActivity{
 		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
 		Log.w(TAG, "Spielzug empfangen, keine Verwendung");
 	}
+	
+	@Override
+	public void onSpielzugErgebnis(int zug, int zudeckenNach, int naechster, long zudeckenUm) {
+		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
+		Log.w(TAG, "Spielzug empfangen, keine Verwendung");
+	}
+	
+	@Override
+	public void onZugPaarErgebnis(int erste, int zweite, boolean paar, int zudeckenNach, int naechster, long zudeckenUm) {
+		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
+		Log.w(TAG, "Spielzug empfangen, keine Verwendung");
+	}
 
 	@Override
-	public void onRate(String name) {
+	public void onZugAngenommen(int zudeckenNach, int naechster, long zudeckenUm) {
+		// Es werden hier noch nicht gespielt, daher tut die Methode nichts.
+		Log.w(TAG, "Annahme eines Spielzugs empfangen, keine Verwendung");
+	}
+	
+	@Override
+	public void onRate(int platz) {
 		// Es wird hier noch nicht gespielt, daher tut die Methode nichts.
 		Log.w(TAG, "Aufforderung zum Raten empfangen, keine Verwendung");
 	}
@@ -1,20 +1,28 @@
 package de.fhgiessen.mni.bluememory.client;
 
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.List;
 
 import android.app.Activity;
 import android.content.Intent;
 import android.os.AsyncTask;
+import android.os.Handler;
 import android.util.Log;
 import de.fhgiessen.mni.bluememory.R;
 import de.fhgiessen.mni.bluememory.ServerService;
 import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
-import de.fhgiessen.mni.bluememory.server.ServerStrategie;
+import de.fhgiessen.mni.bluememory.datentypen.Spielfeld;
+import de.fhgiessen.mni.bluememory.netzwerk.Protokoll;
+import de.fhgiessen.mni.bluememory.server.Raum;
 
 /**
  * Kommunikations-Schnittstelle für den lokalen Memory-Client.
  * 
+ * Der lokale Spieler spielt immer im Raum ServerService.LOKALER_RAUM.
+ * 
+ * Die Spiellogik des Servers läuft im Postfach des Raums, alle Aufrufe an den Raum werden
+ * deshalb dort eingestellt. Die Antworten kommen über ServerLokal wieder im UI-Thread an.
+ * 
  * @author Timo Ebel
  */
 public class ClientLokal implements ClientStrategie {
@@ -33,10 +41,15 @@ public class ClientLokal implements ClientStrategie {
 	/** Der Name des Spielers an diesem Gerät */
 	String name;
 	
+	/** Führt Ergebnisse aus dem Postfach des Raums im UI-Thread aus */
+	private final Handler ui;
+	
 	/**
 	 * Konstruktor unsichtbar wegen Singleton.
 	 */
-	private ClientLokal() { }
+	private ClientLokal() {
+		ui = new Handler();
+	}
 	
 	/**
 	 * Factory (Singleton) für ClientLokal.
@@ -71,6 +84,8 @@ public class ClientLokal implements ClientStrategie {
 			serviceIntent.putExtra("hoehe", ((Activity) aktuelleActivity).getIntent().getStringExtra("hoehe"));
 			serviceIntent.putExtra("deck", ((Activity) aktuelleActivity).getIntent().getStringExtra("deck"));
 			serviceIntent.putExtra("pause", ((Activity) aktuelleActivity).getIntent().getIntExtra("pause", 1000));
+			if (((Activity) aktuelleActivity).getIntent().hasExtra("transport"))
+				serviceIntent.putExtra("transport", ((Activity) aktuelleActivity).getIntent().getStringExtra("transport"));
 		}
 		((Activity) aktuelleActivity).startService(serviceIntent);
 		
@@ -90,17 +105,38 @@ public class ClientLokal implements ClientStrategie {
 		singleton = null;
 	}
 
+	/**
+	 * Liefert den Raum des lokalen Spielers.
+	 * 
+	 * @return Der Raum.
+	 */
+	private Raum raum() {
+		return server.getLokalerRaum();
+	}
+	
+	/**
+	 * Stellt eine Aufgabe in das Postfach des Raums.
+	 * 
+	 * @param aufgabe Die Aufgabe.
+	 */
+	private void imRaum(Runnable aufgabe) {
+		raum().getPostfach().einstellen(aufgabe);
+	}
+	
 	@Override
-	public void sendeHelo(String name) {
-		server.onNeuerSpieler(null, name);
+	public void sendeHelo(final String name) {
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				raum().onNeuerSpieler(null, name);
+			}
+		});
 	}
 
 	@Override
 	public void getLobby() {
-		List<String> lobby = new ArrayList<String>();
-		for (ServerStrategie spieler: server.connections) lobby.add(spieler.toString());
-		
-		aktuelleActivity.onLobbyEmpfangen(lobby);
+		// Die Lobby ist eine Kopie, sie kann direkt gelesen werden
+		aktuelleActivity.onLobbyEmpfangen(new ArrayList<String>(raum().getLobby()));
 	}
 	
 	@Override
@@ -116,34 +152,133 @@ public class ClientLokal implements ClientStrategie {
 
 	@Override
 	public void getSpielfeld() {
-		if (server.spielfeld != null) {
-			aktuelleActivity.onSpielfeldEmpfangen(server.spielfeld);
+		// Das Spielfeld des Servers verändert nur der Raum, in seinem Postfach wird es kopiert
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				final byte[] binaer = (raum().spielfeld != null) ? raum().spielfeld.toBinary() : null;
+				ui.post(new Runnable() {
+					@Override
+					public void run() {
+						onSpielfeldKopie(binaer);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Baut aus der Kopie des Server-Spielfelds das eigene Spielfeld und meldet es der Activity.
+	 * 
+	 * @param binaer Das Spielfeld binär kodiert (s. Spielfeld.toBinary()) oder null.
+	 */
+	private void onSpielfeldKopie(byte[] binaer) {
+		if (binaer != null) {
+			try {
+				aktuelleActivity.onSpielfeldEmpfangen(Spielfeld.createFromBinary((Activity) aktuelleActivity, binaer, 0, binaer.length));
+			} catch (FileNotFoundException e) {
+				aktuelleActivity.onSpielfeldEmpfangenFehler(((Activity) aktuelleActivity).getString(R.string.toast_deck_nicht_installiert));
+			}
 		} else {
 			aktuelleActivity.onSpielfeldEmpfangenFehler(((Activity) aktuelleActivity).getString(R.string.toast_deck_nicht_installiert));
 		}
 	}
 
+	@Override
+	public void getSpielfeldNeu() {
+		// Der lokale Client erhält ohnehin immer eine Kopie des ganzen Spielfelds
+		getSpielfeld();
+	}
+	
 	@Override
 	public void sendeSpielfeldOK() {
-		server.onSpielfeldOk();
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				raum().onSpielfeldOk(raum().getSpielerliste().get(Raum.LOKALER_PLATZ));
+			}
+		});
 	}
 
 	@Override
-	public void sendeZug(int zug) {
+	public void sendeZug(final int zug) {
 		Log.d(TAG, "Klick auf " + zug);
-		server.onZug(String.valueOf(zug));
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				raum().onZug(raum().getSpielerliste().get(Raum.LOKALER_PLATZ), String.valueOf(zug));
+			}
+		});
 	}
 
+	@Override
+	public void sendeZugPaar(final int erste, final int zweite) {
+		Log.d(TAG, "Klick auf " + erste + " und " + zweite);
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				raum().onZugPaar(raum().getSpielerliste().get(Raum.LOKALER_PLATZ), erste, zweite);
+			}
+		});
+	}
+	
+	@Override
+	public boolean hatZugPaare() {
+		return raum().hatZugPaare();
+	}
+	
+	@Override
+	public boolean hatServerPause() {
+		// Der Raum läuft im selben Programm und nennt den Zeitpunkt des Zudeckens (UHRZEIT)
+		return GlobalValues.SERVER_PAUSE && ((Protokoll.EIGENE & Protokoll.UHRZEIT) == 0);
+	}
+	
+	@Override
+	public boolean istOptimistisch() {
+		return ((Protokoll.EIGENE & Protokoll.OPTIMISTISCH) != 0) && (((Protokoll.EIGENE & Protokoll.ZUG_PIPELINE) != 0) || raum().hatZugPaare());
+	}
+	
+	@Override
+	public long lokaleZeit(long serverZeit) {
+		// Dieselbe Uhr
+		return serverZeit;
+	}
+	
 	@Override
 	public void sendeZugOK() {
-		server.onZugOk();
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				raum().onZugOk(raum().getSpielerliste().get(Raum.LOKALER_PLATZ));
+			}
+		});
 	}
 
 	@Override
 	public void sendeBye() {
-		server.onVerbindungGetrennt(null);
+		imRaum(new Runnable() {
+			@Override
+			public void run() {
+				raum().onVerbindungGetrennt(null);
+			}
+		});
 	}
 
+	@Override
+	public int getRtt(String spieler) {
+		return (server != null) ? server.getRtt(spieler) : -1;
+	}
+	
+	@Override
+	public int getJitter(String spieler) {
+		return (server != null) ? server.getJitter(spieler) : -1;
+	}
+	
+	@Override
+	public String[] getPlaetze() {
+		return raum().getSpielerliste().getPlatzNamen();
+	}
+	
 	@Override
 	public void setActivity(MemoryActivity aktuelleActivity) {
 		// Den Spielernamen auslesen, falls noch nicht gesetzt
@@ -168,8 +303,8 @@ public class ClientLokal implements ClientStrategie {
 	private class Verbinde extends AsyncTask<Void, Void, Void> {
 		@Override
 		protected Void doInBackground(Void... arg0) {
-			// Warten, bis der Server-Service gestartet hat und verbunden ist.
-			while (server == null) server = ServerService.getInstance();
+			// Warten, bis der Server-Service gestartet hat und der Raum angelegt ist.
+			while ((server == null) || (server.getLokalerRaum() == null)) server = ServerService.getInstance();
 			return null;
 		}
 		
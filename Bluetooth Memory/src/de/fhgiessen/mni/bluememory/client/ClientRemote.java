@@ -0,0 +1,843 @@
+package de.fhgiessen.mni.bluememory.client;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.app.Activity;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+import de.fhgiessen.mni.bluememory.R;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+import de.fhgiessen.mni.bluememory.datentypen.Spielfeld;
+import de.fhgiessen.mni.bluememory.datentypen.StatusCodes;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameCodec;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameDecoder;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameWriter;
+import de.fhgiessen.mni.bluememory.netzwerk.Herzschlag;
+import de.fhgiessen.mni.bluememory.netzwerk.Protokoll;
+import de.fhgiessen.mni.bluememory.netzwerk.PufferPool;
+import de.fhgiessen.mni.bluememory.netzwerk.Transport;
+
+/**
+ * Kommunikations-Schnittstelle für einen Memory-Client, der mit einem entfernten Server verbunden ist.
+ * 
+ * Die Klasse wickelt das Spielprotokoll über einen Transport ab. Unterklassen legen nur fest,
+ * wie die Verbindung zum gewählten Spiel hergestellt wird (s. oeffneTransport()) und wie
+ * die Liste der Spiele zustande kommt.
+ * 
+ * Mit HELO bietet der Client seine Fähigkeiten an, HELLO enthält die mit dem Server vereinbarten
+ * (s. Protokoll). Kompression, Herzschlag, Spielfeld-Änderungen und Sitzung werden erst danach
+ * und nur bei Bedarf beider Seiten genutzt.
+ * 
+ * Bricht die Verbindung während des Spiels ab, wird sie im Hintergrund neu aufgebaut und die
+ * Sitzung beim Server fortgesetzt (s. StatusCodes.FORTSETZEN). Der Server sendet dann nur die
+ * verpassten Nachrichten, das Spiel läuft ohne neue Lobby weiter.
+ * 
+ * Der Client führt die Namen der Spieler nach ihren Plätzen (s. getPlaetze()). Mit
+ * Protokoll.PLATZ_NUMMERN übernimmt er die Plätze des Servers, ältere Server nennen die Spieler
+ * beim Namen, dann vergibt der Client die Plätze selbst.
+ */
+public abstract class ClientRemote implements ClientStrategie {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.ClientRemote";
+	
+	/** Die Verbindung zum Server oder null, solange keine besteht */
+	private Transport transport;
+	
+	/** Task, der auf neue Nachrichten hört */
+	private MessageListener listeningTask;
+	
+	/** Sendet die Nachrichten an den Server, sobald die Verbindung besteht */
+	private FrameWriter writer;
+	
+	/** Überwacht die Verbindung und misst die Round-Trip-Time, sobald die Verbindung besteht */
+	private Herzschlag herzschlag;
+	
+	/** Der Name, mit dem sich der Spieler beim Server angemeldet hat */
+	private String spielerName;
+	
+	/** Der Raum, den der Client mit HELO betreten möchte (s. Protokoll) */
+	private int raum = Protokoll.STANDARD_RAUM;
+	
+	/** Die mit dem Server vereinbarten Fähigkeiten (s. Protokoll), 0 bis zum HELLO */
+	private int faehigkeiten;
+	
+	/** Die aktuell aktive Activity, deren Callbacks bei eingehenden Nachrichten aufgerufen werden */
+	protected MemoryActivity aktuelleActivity;
+	
+	/** true, wenn die Verbindung hergestellt wurde, sonst false */
+	private boolean connected;
+	
+	/** Zählt die fehlerhaften Übertragungen der Lobby. */
+	private int errorCounterLobby;
+	
+	/** Zählt die fehlerhaften Übertragungen des Spielfelds. */
+	private int errorCounterSpielfeld;
+	
+	/** Die Namen der Spieler nach ihrem Platz, null für freie Plätze */
+	private String[] plaetze = new String[0];
+	
+	/** Das zuletzt empfangene Spielfeld, Basis für den Empfang von Änderungen */
+	private Spielfeld spielfeld;
+	
+	/** Das gewählte Spiel, wird für eine Wiederverbindung gebraucht */
+	private String spiel;
+	
+	/** Das Token der Sitzung beim Server (aus HELLO) oder null */
+	private String sitzungToken;
+	
+	/** Die Sequenznummer der letzten verarbeiteten Nachricht des Servers, -1 für keine */
+	private int letzteSequenz;
+	
+	/** true, wenn im laufenden Spiel beide Karten eines Zugs zusammen gesendet werden (aus STARTEN) */
+	private boolean zugPaare;
+	
+	/** true zwischen STARTEN und BEENDEN, nur dann wird nach einem Abbruch neu verbunden */
+	private boolean spielLaeuft;
+	
+	/** Task, der nach einem Abbruch die Verbindung neu aufbaut, oder null */
+	private Wiederverbinden wiederverbindenTask;
+	
+	/**
+	 * Konstruktor
+	 */
+	protected ClientRemote() {
+		errorCounterLobby = 0;
+		errorCounterSpielfeld = 0;
+	}
+	
+	/**
+	 * Liefert die Kommunikations-Strategie für eine Transport-Art, wie sie der Server mit dem
+	 * Intent-Extra "transport" erhält (s. GlobalValues.TRANSPORT_*).
+	 * 
+	 * @param transportArt Die Transport-Art oder null für Bluetooth.
+	 * @return Das Singleton von ClientTCP (auch für einen NIO-Server), ClientSpeicher oder ClientBT.
+	 */
+	public static ClientStrategie getInstance(String transportArt) {
+		if (GlobalValues.TRANSPORT_TCP.equals(transportArt) || GlobalValues.TRANSPORT_NIO.equals(transportArt)) return ClientTCP.getInstance();
+		if (GlobalValues.TRANSPORT_SPEICHER.equals(transportArt)) return ClientSpeicher.getInstance();
+		
+		return ClientBT.getInstance();
+	}
+	
+	/**
+	 * Stellt die Verbindung zum gewählten Spiel her.
+	 * 
+	 * Die Methode wird im Hintergrund aufgerufen und darf blockieren.
+	 * 
+	 * @param spiel Das Spiel, wie es in der Spiele-Liste angezeigt wurde.
+	 * @return Die hergestellte Verbindung.
+	 * @throws IOException Wenn die Verbindung nicht hergestellt werden kann.
+	 */
+	protected abstract Transport oeffneTransport(String spiel) throws IOException;
+	
+	@Override
+	public void verbinde(String spiel) {
+		this.spiel = spiel;
+		sitzungToken = null;
+		faehigkeiten = 0;
+		letzteSequenz = -1;
+		spielLaeuft = false;
+		zugPaare = false;
+		plaetze = new String[0];
+		new VerbindungHerstellen().execute(spiel);
+	}
+	
+	@Override
+	public void trenneVerbindung() {
+		if (herzschlag != null) herzschlag.stoppen();
+		if (wiederverbindenTask != null) {
+			wiederverbindenTask.cancel(true);
+			wiederverbindenTask = null;
+		}
+		if (transport != null) {
+			Log.d(TAG, "Verbindung wird beendet.");
+			if (listeningTask != null) listeningTask.cancel(true);
+			connected = false;
+			
+			// Noch wartende Nachrichten (z.B. BYE) senden, danach schließt der Writer die Verbindung
+			writer.schliessen();
+			writer = null;
+			transport = null;
+		} else {
+			Log.d(TAG, "Verbindung ist bereits beendet.");
+		}
+	}
+	
+	@Override
+	public void sendeHelo(String name) {
+		Log.d(TAG, ">>> HELO " + name);
+		spielerName = name;
+		messageOut(StatusCodes.HELO, Protokoll.schreiben(Protokoll.EIGENE, raum, name));
+	}
+	
+	/**
+	 * Legt fest, welchen Raum der Client mit dem nächsten HELO betritt.
+	 * 
+	 * @param raum Die Nummer des Raums, Standard ist Protokoll.STANDARD_RAUM.
+	 */
+	public void setRaum(int raum) {
+		this.raum = raum;
+	}
+	
+	@Override
+	public void getLobby() {
+		Log.d(TAG, ">>> GET_LOBBY");
+		messageOut(StatusCodes.GET_LOBBY);
+	}
+	
+	@Override
+	public void sendeLobbyOK() {
+		Log.d(TAG, ">>> OK_LOBBY");
+		messageOut(StatusCodes.OK_LOBBY);
+	}
+	
+	@Override
+	public void sendeSpielStarten() {
+		// Entfernte Clients starten keine Spiele, nur der Server kann das.
+		return;
+	}
+	
+	@Override
+	public void getSpielfeld() {
+		// Ist schon ein Spielfeld vorhanden, reichen die Änderungen seit dessen Stand
+		if ((spielfeld != null) && ((faehigkeiten & Protokoll.SPIELFELD_DELTA) != 0)) {
+			Log.d(TAG, ">>> GET_SPIELFELD " + spielfeld.getStand());
+			messageOut(StatusCodes.GET_SPIELFELD, String.valueOf(spielfeld.getStand()));
+		} else {
+			Log.d(TAG, ">>> GET_SPIELFELD");
+			messageOut(StatusCodes.GET_SPIELFELD);
+		}
+	}
+	
+	@Override
+	public void getSpielfeldNeu() {
+		Log.d(TAG, ">>> GET_SPIELFELD");
+		messageOut(StatusCodes.GET_SPIELFELD);
+	}
+	
+	@Override
+	public void sendeSpielfeldOK() {
+		Log.d(TAG, ">>> OK_SPIELFELD");
+		messageOut(StatusCodes.OK_SPIELFELD);
+	}
+	
+	@Override
+	public void sendeZug(int zug) {
+		Log.d(TAG, ">>> ZUG " + zug);
+		messageOut(StatusCodes.ZUG, String.valueOf(zug));
+	}
+	
+	@Override
+	public void sendeZugPaar(int erste, int zweite) {
+		Log.d(TAG, ">>> ZUG_PAAR " + erste + ";" + zweite);
+		messageOut(StatusCodes.ZUG_PAAR, erste + ";" + zweite);
+	}
+	
+	@Override
+	public boolean hatZugPaare() {
+		return zugPaare;
+	}
+	
+	@Override
+	public boolean hatServerPause() {
+		// Mit UHRZEIT deckt der Client zum Zeitpunkt des Servers selbst zu
+		return ((faehigkeiten & Protokoll.SERVER_PAUSE) != 0) && ((faehigkeiten & Protokoll.UHRZEIT) == 0);
+	}
+	
+	@Override
+	public boolean istOptimistisch() {
+		// Nur mit Zügen, deren Ergebnis der Server ohnehin sofort sendet
+		return ((faehigkeiten & Protokoll.OPTIMISTISCH) != 0) && (((faehigkeiten & Protokoll.ZUG_PIPELINE) != 0) || zugPaare);
+	}
+	
+	@Override
+	public long lokaleZeit(long serverZeit) {
+		return (herzschlag != null) ? herzschlag.getUhr().zuLokal(serverZeit) : -1;
+	}
+	
+	@Override
+	public void sendeZugOK() {
+		Log.d(TAG, ">>> OK_ZUG");
+		messageOut(StatusCodes.OK_ZUG);
+	}
+	
+	@Override
+	public void sendeBye() {
+		Log.d(TAG, ">>> BYE");
+		messageOut(StatusCodes.BYE);
+	}
+	
+	@Override
+	public int getRtt(String spieler) {
+		// Gemessen wird nur die eigene Verbindung zum Server
+		if ((herzschlag == null) || !spieler.equals(spielerName)) return -1;
+		return herzschlag.getRtt();
+	}
+	
+	@Override
+	public int getJitter(String spieler) {
+		if ((herzschlag == null) || !spieler.equals(spielerName)) return -1;
+		return herzschlag.getJitter();
+	}
+	
+	@Override
+	public String[] getPlaetze() {
+		return plaetze.clone();
+	}
+	
+	@Override
+	public void setActivity(MemoryActivity aktuelleActivity) {
+		Log.d(TAG, "Aktuelle Activity: " + aktuelleActivity.getClass().getSimpleName());
+		this.aktuelleActivity = aktuelleActivity;
+	}
+	
+	/**
+	 * Startet den Thread zum Abhören von Nachrichten auf der Verbindung.
+	 * 
+	 * Die Methode wird aufgerufen, sobald die Verbindung hergestellt wurde.
+	 */
+	private void startListening() {
+		Log.d(TAG, "Message-Listener wird gestartet.");
+		listeningTask = new MessageListener();
+		listeningTask.execute();
+	}
+	
+	/**
+	 * Versendet einen Statuscode über die Verbindung.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 */
+	private void messageOut(byte status) {
+		messageOut(status, null);
+	}
+	
+	/**
+	 * Versendet eine Nachricht mit Statuscode und Parametern über die Verbindung.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param message Die Parameter als String.
+	 */
+	private void messageOut(byte status, String params) {
+		if ((writer == null) || !writer.senden(status, params)) Log.e(TAG, "Nachricht konnte nicht gesendet werden.");
+	}
+	
+	/**
+	 * Verarbeitet eingehende Nachrichten der Verbindung.
+	 * 
+	 * Nach dem Empfang und der Auswertung einer Nachricht werden ggf. notwendige
+	 * Aktionen durchgeführt, bspw. der Aufruf eines Callbacks der aktuellen Actitvity.
+	 * 
+	 * @param msg Die eingehende Nachricht inkl. Längenpräfix (s. FrameCodec.laenge()).
+	 */
+	private void onMessageIn(byte[] msg) {
+		// Speichert, ob ein Fehler aufgetreten ist
+		boolean error = false;
+		
+		// Statuscode und ggf. Parameter auslesen (Spielfelder sind binär und werden direkt aus dem Puffer gelesen)
+		int laenge = FrameCodec.laenge(msg);
+		int status = msg[FrameCodec.PRAEFIX_LAENGE];
+		String params = null;
+		boolean binaer = (status == StatusCodes.POST_SPIELFELD) || (status == StatusCodes.POST_SPIELFELD_AENDERUNGEN);
+		int paramOffset = FrameCodec.PARAM_OFFSET;
+		int paramLaenge = laenge - 1;
+		
+		// Mit Protokoll.PLATZ_NUMMERN steht vor den Parametern ggf. der Platz eines Spielers (ein Byte)
+		int platz = -1;
+		if (((faehigkeiten & Protokoll.PLATZ_NUMMERN) != 0) && Protokoll.mitPlatz(status) && (paramLaenge > 0)) {
+			platz = msg[paramOffset] & 0xFF;
+			paramOffset++;
+			paramLaenge--;
+		}
+		if ((paramLaenge > 0) && !binaer) params = new String(msg, paramOffset, paramLaenge);
+		Log.d(TAG, "Nachricht empfangen. Status-Code: " + status + ((platz >= 0) ? "; Platz: " + platz : "") + ((params != null) ? "; Parameter: " + params : "; Länge: " + laenge));
+		
+		switch (status) {
+			// Anmeldung erfolgreich
+			case StatusCodes.HELLO:
+				Protokoll protokoll = Protokoll.lesen(params);
+				faehigkeiten = protokoll.getGemeinsame();
+				Log.d(TAG, "Server: Version " + protokoll.getVersion() + ", Fähigkeiten " + faehigkeiten);
+				if ((faehigkeiten & Protokoll.SITZUNG) != 0) sitzungToken = protokoll.getWert();
+				faehigkeitenAnwenden();
+				aktuelleActivity.onSpielerNameOk();
+			break;
+			
+			// Die Sitzung wird nach einem Abbruch fortgesetzt, die verpassten Nachrichten folgen
+			case StatusCodes.FORTGESETZT:
+				Log.d(TAG, "Sitzung fortgesetzt ab Nachricht " + (letzteSequenz + 1));
+			break;
+			
+			// Die Sitzung ist verloren, der Server trennt danach die Verbindung
+			case StatusCodes.FEHLER_FORTSETZEN:
+				Log.w(TAG, "Sitzung kann nicht fortgesetzt werden.");
+				sitzungToken = null;
+				spielLaeuft = false;
+			break;
+			
+			// Der Server kann komprimierte Nachrichten entpacken (nur noch ältere Server)
+			case StatusCodes.KOMPRESSION:
+				Log.d(TAG, "Server unterstützt Kompression.");
+				if (writer != null) writer.setKompression(true);
+			break;
+			
+			// Anmeldung fehlgeschlagen (Spielername belegt)
+			case StatusCodes.FEHLER_HELO:
+				aktuelleActivity.onSpielernameBelegt();
+			break;
+			
+			// Verbindung beendet
+			case StatusCodes.BYE:
+				aktuelleActivity.onVerbindungBeendet();
+			break;
+			
+			// Der Server prüft, ob der Client noch erreichbar ist
+			case StatusCodes.PING:
+				messageOut(StatusCodes.PONG, params);
+			break;
+			
+			// Antwort auf das eigene PING
+			case StatusCodes.PONG:
+				if (herzschlag != null) herzschlag.onPong(params);
+			break;
+			
+			//  Lobby empfangen
+			case StatusCodes.POST_LOBBY:
+				List<String> spielerListe = new ArrayList<String>();
+				if (params != null) {
+					try {
+						// Spieler auslesen, ohne Plätze (ältere Server) gilt die Reihenfolge der Lobby
+						JSONObject lobby = new JSONObject(params);
+						JSONArray json = lobby.getJSONArray("lobby");
+						JSONArray lobbyPlaetze = lobby.optJSONArray("plaetze");
+						plaetze = new String[0];
+						for (int i = 0; i < json.length(); i++) {
+							spielerListe.add(json.getString(i));
+							platzBelegen((lobbyPlaetze != null) ? lobbyPlaetze.getInt(i) : i, json.getString(i));
+						}
+						
+						// Spielfeld an Activity übermitteln
+						aktuelleActivity.onLobbyEmpfangen(spielerListe);
+					} catch (JSONException e) {
+						error = true;
+					}
+				} else {
+					error = true;
+				}
+				
+				// Fehler:
+				if (error) {
+					// Fehler-Zähler inkrementieren
+					errorCounterLobby++;
+					
+					// Bei 3 Fehlversuchen abbrechen, ansonsten Lobby erneut anfordern
+					if (errorCounterLobby >= 3) {
+						aktuelleActivity.onLobbyEmpfangenFehler();
+					} else {
+						Log.w(TAG, "Fehler beim Empfangen der Lobby! " + errorCounterLobby + ". Versuch");
+						getLobby();
+					}
+				}
+			break;
+			
+			// Ein Spieler hat die Lobby betreten
+			case StatusCodes.PLAYER_JOINED: 
+				if (platz >= 0) platzBelegen(platz, params);
+				else platzVon(params);
+				aktuelleActivity.onNeuerSpieler(params);
+			break;
+			
+			// Ein Spieler hat die Lobby verlassen
+			case StatusCodes.PLAYER_LEFT: 
+				platzBelegen((platz >= 0) ? platz : platzVon(params), null);
+				aktuelleActivity.onSpielerWeg(params);
+			break;
+			
+			// Das Spiel wird gestartet
+			case StatusCodes.STARTEN: 
+				spielLaeuft = true;
+				zugPaare = (params != null) && ((Integer.parseInt(params) & Protokoll.ZUG_PAKETE) != 0);
+				aktuelleActivity.onSpielStarten();
+			break;
+			
+			// Das Spielfeld wurde empfangen
+			case StatusCodes.POST_SPIELFELD:
+				if (laenge > 1) {
+					try {
+						// Spielfeld (binär oder JSON)
+						spielfeld = Spielfeld.createFromBytes((Activity) aktuelleActivity, msg, FrameCodec.PARAM_OFFSET, laenge - 1);
+						aktuelleActivity.onSpielfeldEmpfangen(spielfeld);
+					} catch (JSONException e) {
+						error = true;
+					} catch (IllegalArgumentException e) {
+						error = true;
+					} catch (FileNotFoundException e) {
+						aktuelleActivity.onSpielfeldEmpfangenFehler(((Activity) aktuelleActivity).getString(R.string.toast_deck_nicht_installiert));
+					}
+				} else {
+					error = true;
+				}
+				
+				// Fehler:
+				if (error) {
+					// Fehler-Zähler inkrementieren
+					errorCounterSpielfeld++;
+					
+					// Bei 3 Fehlversuchen abbrechen, ansonsten Spielfeld erneut anfordern
+					if (errorCounterSpielfeld >= 3) {
+						aktuelleActivity.onSpielfeldEmpfangenFehler(null);
+					} else {
+						Log.w(TAG, "Fehler beim Empfangen des Spielfelds! " + errorCounterSpielfeld + ". Versuch");
+						getSpielfeld();
+					}
+				}
+			break;
+			
+			// Änderungen am Spielfeld wurden empfangen
+			case StatusCodes.POST_SPIELFELD_AENDERUNGEN:
+				if ((spielfeld != null) && spielfeld.applyDelta(msg, FrameCodec.PARAM_OFFSET, laenge - 1)) {
+					aktuelleActivity.onSpielfeldEmpfangen(spielfeld);
+				} else {
+					// Änderungen passen nicht zum eigenen Stand, ganzes Spielfeld anfordern
+					Log.w(TAG, "Änderungen am Spielfeld passen nicht, Spielfeld wird neu angefordert.");
+					spielfeld = null;
+					getSpielfeld();
+				}
+			break;
+			
+			// Client am Zug
+			case StatusCodes.RATE: 
+				aktuelleActivity.onRate((platz >= 0) ? platz : platzVon(params));
+			break;
+			
+			// Client wartet
+			case StatusCodes.WARTE:
+				aktuelleActivity.onWarten();
+			break;
+			
+			// Ein anderer Client hat einen Zug gemacht
+			case StatusCodes.POST_ZUG:
+				aktuelleActivity.onSpielzugEmpfangen(Integer.parseInt(params));
+			break;
+			
+			// Ein Zug samt nächstem Spieler
+			case StatusCodes.POST_ZUG_ERGEBNIS:
+				// Mit Platznummern ggf. gefolgt vom Zeitpunkt des Zudeckens, sonst endet die Nachricht mit dem Namen
+				boolean mitPlatz = (faehigkeiten & Protokoll.PLATZ_NUMMERN) != 0;
+				String[] ergebnis = mitPlatz ? params.split(";") : params.split(";", 3);
+				int naechster = mitPlatz ? Integer.parseInt(ergebnis[2]) : platzVon(ergebnis[2]);
+				long zudeckenUm = (ergebnis.length > 3) ? Long.parseLong(ergebnis[3]) : -1;
+				aktuelleActivity.onSpielzugErgebnis(Integer.parseInt(ergebnis[0]), Integer.parseInt(ergebnis[1]), naechster, zudeckenUm);
+			break;
+			
+			// Ein ganzer Zug samt Ergebnis und nächstem Spieler
+			case StatusCodes.POST_ZUG_PAAR:
+				boolean paarMitPlatz = (faehigkeiten & Protokoll.PLATZ_NUMMERN) != 0;
+				String[] paar = paarMitPlatz ? params.split(";") : params.split(";", 5);
+				int naechsterNachPaar = paarMitPlatz ? Integer.parseInt(paar[4]) : platzVon(paar[4]);
+				long paarZudeckenUm = (paar.length > 5) ? Long.parseLong(paar[5]) : -1;
+				aktuelleActivity.onZugPaarErgebnis(Integer.parseInt(paar[0]), Integer.parseInt(paar[1]), paar[2].equals("1"), Integer.parseInt(paar[3]), naechsterNachPaar, paarZudeckenUm);
+			break;
+			
+			// Der eigene, schon angezeigte Zug wurde angenommen (nur mit OPTIMISTISCH, also immer mit Platznummern)
+			case StatusCodes.ZUG_ANGENOMMEN:
+				String[] annahme = params.split(";");
+				long annahmeZudeckenUm = (annahme.length > 2) ? Long.parseLong(annahme[2]) : -1;
+				aktuelleActivity.onZugAngenommen(Integer.parseInt(annahme[0]), Integer.parseInt(annahme[1]), annahmeZudeckenUm);
+			break;
+			
+			// Das Spiel ist zuende
+			case StatusCodes.BEENDEN:
+				spielLaeuft = false;
+				sendeBye();
+				aktuelleActivity.onSpielZuende();
+			break;
+			
+			// Unbekannter Statuscode
+			default: Log.w(TAG, "Unbekannter Statuscode: " + String.valueOf(status));
+		}
+	}
+	
+	/**
+	 * Trägt einen Spieler auf einem Platz ein oder gibt den Platz frei.
+	 * 
+	 * @param platz Der Platz.
+	 * @param name Der Name des Spielers oder null, um den Platz freizugeben.
+	 */
+	private void platzBelegen(int platz, String name) {
+		if (platz >= plaetze.length) {
+			if (name == null) return;
+			String[] neu = new String[platz + 1];
+			System.arraycopy(plaetze, 0, neu, 0, plaetze.length);
+			plaetze = neu;
+		}
+		
+		plaetze[platz] = name;
+	}
+	
+	/**
+	 * Ermittelt den Platz eines Spielers, den ein älterer Server beim Namen nennt.
+	 * 
+	 * Ein unbekannter Spieler bekommt den kleinsten freien Platz.
+	 * 
+	 * @param name Der Name des Spielers.
+	 * @return Der Platz.
+	 */
+	private int platzVon(String name) {
+		int frei = -1;
+		for (int i = 0; i < plaetze.length; i++) {
+			if ((plaetze[i] == null) && (frei < 0)) frei = i;
+			else if ((plaetze[i] != null) && plaetze[i].equals(name)) return i;
+		}
+		
+		if (frei < 0) frei = plaetze.length;
+		platzBelegen(frei, name);
+		
+		return frei;
+	}
+	
+	/**
+	 * Stellt die Verbindung mit dem Spielserver her.
+	 * 
+	 * Nach erfolgreicher Herstellung der Verbindung wird ClientRemote.transport auf die
+	 * Verbindung gesetzt, ClientRemote.connected auf "true" und per Aufruf von
+	 * ClientRemote.startListening() das Abhören auf Nachrichten gestartet.
+	 * 
+	 * Params: Das gewählte Spiel (s. oeffneTransport())
+	 * Progress: Void
+	 * Result: Die Verbindung für die weitere Kommunikation oder null bei einem Fehler
+	 * 
+	 * @see http://developer.android.com/reference/android/os/AsyncTask.html
+	 * @author Timo Ebel
+	 */
+	private class VerbindungHerstellen extends AsyncTask<String, Void, Transport> {
+		
+		@Override
+		protected Transport doInBackground(String... spiel) {
+			try {
+				return oeffneTransport(spiel[0]);
+			} catch (IOException ioe) {
+				Log.d(TAG, "Fehler beim Herstellen der Verbindung: " + ioe.getMessage());
+			}
+			
+			return null;
+		}
+		
+		@Override
+		protected void onPostExecute(Transport result) {
+			if (result != null) {
+				verbindungAufbauen(result);
+				aktuelleActivity.onVerbunden();
+			} else {
+				aktuelleActivity.onVerbindungBeendet();
+			}
+		}
+	}
+	
+	/**
+	 * Baut nach einem Abbruch die Verbindung zum Server neu auf.
+	 * 
+	 * Bis GlobalValues.WIEDERVERBINDEN_TIMEOUT wird im Abstand von GlobalValues.PING_INTERVALL
+	 * versucht, das Spiel erneut zu öffnen. Gelingt das, wird die Sitzung fortgesetzt.
+	 * 
+	 * Params: Void
+	 * Progress: Void
+	 * Result: Die neue Verbindung oder null, wenn die Zeit abgelaufen ist.
+	 * 
+	 * @see http://developer.android.com/reference/android/os/AsyncTask.html
+	 */
+	private class Wiederverbinden extends AsyncTask<Void, Void, Transport> {
+		
+		@Override
+		protected Transport doInBackground(Void... params) {
+			long ende = SystemClock.uptimeMillis() + GlobalValues.WIEDERVERBINDEN_TIMEOUT;
+			while (!isCancelled() && (SystemClock.uptimeMillis() < ende)) {
+				try {
+					return oeffneTransport(spiel);
+				} catch (IOException ioe) {
+					Log.d(TAG, "Wiederverbindung fehlgeschlagen: " + ioe.getMessage());
+				}
+				
+				try {
+					Thread.sleep(GlobalValues.PING_INTERVALL);
+				} catch (InterruptedException e) {
+					return null;
+				}
+			}
+			
+			return null;
+		}
+		
+		@Override
+		protected void onPostExecute(Transport result) {
+			wiederverbindenTask = null;
+			if (result == null) {
+				Toast.makeText((Activity) aktuelleActivity, R.string.toast_verbindung_beendet, Toast.LENGTH_SHORT).show();
+				aktuelleActivity.onVerbindungBeendet();
+				return;
+			}
+			
+			verbindungAufbauen(result);
+			Log.d(TAG, ">>> FORTSETZEN " + letzteSequenz);
+			messageOut(StatusCodes.FORTSETZEN, sitzungToken + ";" + letzteSequenz);
+		}
+		
+		@Override
+		protected void onCancelled() {
+			wiederverbindenTask = null;
+		}
+	}
+	
+	/**
+	 * Richtet eine neu hergestellte Verbindung ein.
+	 * 
+	 * Startet Writer und Listener. Sind die Fähigkeiten schon vereinbart (Wiederverbindung),
+	 * werden sie gleich eingeschaltet, sonst erst mit HELLO.
+	 * 
+	 * @param neu Die neue Verbindung.
+	 */
+	private void verbindungAufbauen(Transport neu) {
+		transport = neu;
+		connected = true;
+		writer = new FrameWriter(transport, TAG + ".Writer");
+		herzschlag = new Herzschlag(new Herzschlag.Callback() {
+			@Override
+			public void sendePing(String zeitstempel) {
+				messageOut(StatusCodes.PING, zeitstempel);
+			}
+			
+			@Override
+			public void onZeitueberschreitung() {
+				// Verbindung hart schließen, der Listener meldet dann den Abbruch
+				Log.w(TAG, "Server antwortet nicht mehr.");
+				try {
+					if (transport != null) transport.close();
+				} catch (IOException e) {
+					Log.e(TAG, "Fehler beim Schließen der Verbindung");
+				}
+			}
+		});
+		startListening();
+		faehigkeitenAnwenden();
+	}
+	
+	/**
+	 * Schaltet die mit dem Server vereinbarten Fähigkeiten auf der Verbindung ein.
+	 */
+	private void faehigkeitenAnwenden() {
+		if (writer != null) writer.setKompression((faehigkeiten & Protokoll.KOMPRESSION) != 0);
+		if ((herzschlag != null) && ((faehigkeiten & Protokoll.HERZSCHLAG) != 0)) {
+			herzschlag.setMitUhrzeit((faehigkeiten & Protokoll.UHRZEIT) != 0);
+			herzschlag.starten();
+		}
+	}
+	
+	/**
+	 * Hört auf eingehende Nachrichten vom Server.
+	 * 
+	 * Der Task bricht ab, wenn keine Verbindung besteht, es muss
+	 * also sichergestellt werden, dass die Verbindung bereits hergestellt wurde.
+	 * 
+	 * Empfangene Nachrichten werden über einen Handler an den Callback "onMessageIn()"
+	 * weitergegeben und ihre Puffer danach an den PufferPool zurückgegeben (s. ServerRemote).
+	 * Nachrichten, deren Sequenznummer schon verarbeitet wurde (Wiederholung nach einem
+	 * Abbruch), werden verworfen.
+	 * 
+	 * Params: Void
+	 * Progress: Void
+	 * Result: Void
+	 * 
+	 * @see http://developer.android.com/reference/android/os/AsyncTask.html
+	 * @author Timo Ebel
+	 */
+	private class MessageListener extends AsyncTask<Void, Void, Void> {
+		/** Stellt die empfangenen Nachrichten im UI-Thread zu */
+		private final Handler empfang = new Handler() {
+			@Override
+			public void handleMessage(Message nachricht) {
+				byte[] msg = (byte[]) nachricht.obj;
+				int sequenz = nachricht.arg1;
+				try {
+					// Message-Callback aufrufen, doppelte Nachrichten überspringen
+					if ((sequenz < 0) || (sequenz > letzteSequenz)) onMessageIn(msg);
+					if (sequenz >= 0) letzteSequenz = Math.max(letzteSequenz, sequenz);
+				} finally {
+					PufferPool.zurueckgeben(msg);
+				}
+			}
+		};
+		
+		@Override
+		protected Void doInBackground(Void... params) {
+			// InputStream holen
+			InputStream is;
+			try {
+				is = transport.getInputStream();
+			} catch (IOException e) {
+				Log.d(TAG, "Fehler beim Initialisieren des Input-Streams");				
+				is = null;
+				e.printStackTrace();
+			}
+			
+			// Empfangspuffer, setzt die Frames wieder zusammen
+			FrameDecoder decoder = new FrameDecoder();
+			
+			// Listener-Schleife
+			while (connected) {
+				try {
+					// Auf Nachrichten hören
+					if (decoder.lese(is) < 0) throw new IOException("Input-Stream beendet");
+					herzschlag.empfangen();
+					
+					// Alle vollständig empfangenen Nachrichten weiterleiten
+					byte[] msg;
+					while ((msg = decoder.naechsterFrame()) != null) empfang.obtainMessage(0, decoder.getSequenz(), 0, msg).sendToTarget();
+				} catch (IOException ioe) {
+					// Verbindung wurde beendet
+					Log.d(TAG, "Verbindungsabbruch (IOException).");
+					connected = false;
+				}
+			}
+			
+			// Ende
+			return null;
+		}
+		
+		@Override
+		protected void onPostExecute(Void result) {
+			herzschlag.stoppen();
+			
+			// Während des Spiels die Verbindung neu aufbauen und die Sitzung fortsetzen
+			if ((sitzungToken != null) && spielLaeuft) {
+				Log.w(TAG, "Verbindung abgebrochen, versuche Wiederverbindung.");
+				writer.schliessen();
+				writer = null;
+				transport = null;
+				Toast.makeText((Activity) aktuelleActivity, R.string.toast_verbindung_unterbrochen, Toast.LENGTH_SHORT).show();
+				wiederverbindenTask = new Wiederverbinden();
+				wiederverbindenTask.execute();
+				return;
+			}
+			
+			Toast.makeText((Activity) aktuelleActivity, R.string.toast_verbindung_beendet, Toast.LENGTH_SHORT).show();
+			aktuelleActivity.onVerbindungBeendet();
+		}
+		
+		@Override
+		protected void onCancelled() {
+			// Die Verbindung schließt der Writer, sobald alles gesendet ist
+			listeningTask = null;
+		}
+	}
+}
\ No newline at end of file
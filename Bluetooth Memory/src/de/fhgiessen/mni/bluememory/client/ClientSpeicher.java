@@ -0,0 +1,69 @@
+package de.fhgiessen.mni.bluememory.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.util.Log;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+import de.fhgiessen.mni.bluememory.netzwerk.SpeicherTransportServer;
+import de.fhgiessen.mni.bluememory.netzwerk.Transport;
+
+/**
+ * Kommunikations-Schnittstelle für einen Memory-Client im selben Prozess wie der Server.
+ * 
+ * Die Verbindung läuft über einen SpeicherTransport, das Protokoll ist aber dasselbe wie bei
+ * Bluetooth oder TCP. Damit lassen sich mehrere Clients ohne Funkstrecke gegen einen Server
+ * betreiben, etwa um den Protokoll-Overhead allein zu messen.
+ */
+public class ClientSpeicher extends ClientRemote {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.ClientSpeicher";
+	
+	/** Singleton-Objekt der Kommunikations-Strategie */
+	private static ClientStrategie singleton = null;
+	
+	/**
+	 * Konstruktor unsichtbar wegen Singleton.
+	 */
+	private ClientSpeicher() {
+		super();
+	}
+	
+	/**
+	 * Factory (Singleton) für ClientSpeicher.
+	 * 
+	 * @return Instanz von ClientStrategie
+	 */
+	public static ClientStrategie getInstance() {
+		if (singleton == null) singleton = new ClientSpeicher();
+		return singleton;
+	}
+	
+	@Override
+	public void getSpieleListe() {
+		// Es gibt nur den Server im eigenen Prozess
+		List<String> spieleListe = new ArrayList<String>();
+		spieleListe.add(GlobalValues.SDP_NAME);
+		aktuelleActivity.onSpielelisteEmpfangen(spieleListe);
+	}
+	
+	@Override
+	public void onSpielGewaehlt() {
+		return;
+	}
+	
+	@Override
+	protected Transport oeffneTransport(String spiel) throws IOException {
+		Log.d(TAG, "Verbinde mit Server im Prozess: " + spiel);
+		return SpeicherTransportServer.verbinde(spiel);
+	}
+	
+	@Override
+	public void trenneVerbindung() {
+		super.trenneVerbindung();
+		
+		// Singleton-Instanz dereferenzieren
+		singleton = null;
+	}
+}
@@ -87,6 +87,12 @@ public interface ClientStrategie {
 	 * Fordert das Spielfeld vom Server an.
 	 */
 	public void getSpielfeld();
+	
+	/**
+	 * Fordert das ganze Spielfeld vom Server an, auch wenn schon eines vorhanden ist. Nach einem
+	 * Zug, der auf dem eigenen Spielfeld ungültig war, ist dessen Stand nicht mehr vergleichbar.
+	 */
+	public void getSpielfeldNeu();
 
 	/**
 	 * Teilt dem Server mit, dass der Empfang des Spielfelds erfolgreich war.
@@ -100,6 +106,45 @@ public interface ClientStrategie {
 	 */
 	public void sendeZug(int zug);
 	
+	/**
+	 * Sendet einen ganzen Spielzug, den der Client gemacht hat, zum Server (nur wenn
+	 * hatZugPaare() gilt).
+	 * 
+	 * @param erste Die Nummer der ersten angeklickten Karte.
+	 * @param zweite Die Nummer der zweiten angeklickten Karte.
+	 */
+	public void sendeZugPaar(int erste, int zweite);
+	
+	/**
+	 * Prüft, ob im laufenden Spiel beide Karten eines Spielzugs zusammen gesendet werden (s.
+	 * GlobalValues.ZUG_PAARE).
+	 * 
+	 * @return true, wenn Züge mit sendeZugPaar() statt sendeZug() gesendet werden.
+	 */
+	public boolean hatZugPaare();
+	
+	/**
+	 * Prüft, ob der Server die Pause nach einem Spielzug führt (s. GlobalValues.SERVER_PAUSE).
+	 * 
+	 * @return true, wenn nach POST_ZUG_ERGEBNIS bzw. POST_ZUG_PAAR erst RATE zudeckt.
+	 */
+	public boolean hatServerPause();
+	
+	/**
+	 * Prüft, ob eigene Züge sofort angezeigt werden (s. GlobalValues.OPTIMISTISCH).
+	 * 
+	 * @return true, wenn der Server eigene Züge nur mit ZUG_ANGENOMMEN bestätigt oder mit RATE ablehnt.
+	 */
+	public boolean istOptimistisch();
+	
+	/**
+	 * Rechnet eine Uhrzeit des Servers in die eigene um (s. netzwerk.Uhrabgleich).
+	 * 
+	 * @param serverZeit Die Uhrzeit des Servers, z.B. der Zeitpunkt des Zudeckens.
+	 * @return Der Zeitpunkt für SystemClock.uptimeMillis() bzw. Handler.postAtTime() oder -1, solange der Versatz nicht bekannt ist.
+	 */
+	public long lokaleZeit(long serverZeit);
+	
 	/**
 	 * Teilt dem Server mit, dass der Spielzug empfangen und umgesetzt wurde.
 	 */
@@ -110,6 +155,34 @@ public interface ClientStrategie {
 	 */
 	public void sendeBye();
 	
+	/**
+	 * Liefert die geglättete Round-Trip-Time zu einem Spieler, soweit dieses Gerät sie kennt.
+	 * 
+	 * Der Server kennt die RTT aller Spieler, ein entfernter Client nur seine eigene.
+	 * 
+	 * @param spieler Der Name des Spielers.
+	 * @return Die RTT in ms oder -1, wenn sie nicht bekannt ist.
+	 */
+	public int getRtt(String spieler);
+	
+	/**
+	 * Liefert die Schwankung der Round-Trip-Time zu einem Spieler, soweit dieses Gerät sie kennt.
+	 * 
+	 * @param spieler Der Name des Spielers.
+	 * @return Der Jitter in ms oder -1, wenn er nicht bekannt ist.
+	 */
+	public int getJitter(String spieler);
+	
+	/**
+	 * Liefert die Namen der Spieler nach ihren Plätzen im Raum.
+	 * 
+	 * Während des Spiels werden Spieler nur mit ihrem Platz genannt (s. MemoryActivity.onRate()),
+	 * die Namen stehen nach dem Start fest.
+	 * 
+	 * @return Ein neues Feld mit dem Namen für jeden Platz, null für freie Plätze.
+	 */
+	public String[] getPlaetze();
+	
 	/**
 	 * Setzt die Activity an die Nachrichten zurückübermittelt werden sollen.
 	 * 
@@ -0,0 +1,71 @@
+package de.fhgiessen.mni.bluememory.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.app.Activity;
+import android.util.Log;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+import de.fhgiessen.mni.bluememory.netzwerk.TcpTransport;
+import de.fhgiessen.mni.bluememory.netzwerk.Transport;
+
+/**
+ * Kommunikations-Schnittstelle für einen Memory-Client über TCP.
+ * 
+ * Spiele werden nicht gesucht, das Spiel ist die Adresse des Servers in der Form
+ * "host:port" (ohne Port wird GlobalValues.TCP_PORT verwendet). Sie wird der Activity, die die
+ * Spiele auflistet, als Intent-Extra ClientStrategie.EXTRA_SPIEL übergeben.
+ */
+public class ClientTCP extends ClientRemote {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.ClientTCP";
+	
+	/** Singleton-Objekt der Kommunikations-Strategie */
+	private static ClientStrategie singleton = null;
+	
+	/**
+	 * Konstruktor unsichtbar wegen Singleton.
+	 */
+	private ClientTCP() {
+		super();
+	}
+	
+	/**
+	 * Factory (Singleton) für ClientTCP.
+	 * 
+	 * @return Instanz von ClientStrategie
+	 */
+	public static ClientStrategie getInstance() {
+		if (singleton == null) singleton = new ClientTCP();
+		return singleton;
+	}
+	
+	@Override
+	public void getSpieleListe() {
+		// Über TCP gibt es keine Suche, die Adresse kommt als Intent-Extra EXTRA_SPIEL mit
+		List<String> spieleListe = new ArrayList<String>();
+		String adresse = ((Activity) aktuelleActivity).getIntent().getStringExtra(EXTRA_SPIEL);
+		if (adresse != null) spieleListe.add(adresse);
+		aktuelleActivity.onSpielelisteEmpfangen(spieleListe);
+	}
+	
+	@Override
+	public void onSpielGewaehlt() {
+		return;
+	}
+	
+	@Override
+	protected Transport oeffneTransport(String spiel) throws IOException {
+		Log.d(TAG, "Verbinde mit TCP-Server: " + spiel);
+		return TcpTransport.verbinde(spiel, GlobalValues.TCP_PORT);
+	}
+	
+	@Override
+	public void trenneVerbindung() {
+		super.trenneVerbindung();
+		
+		// Singleton-Instanz dereferenzieren
+		singleton = null;
+	}
+}
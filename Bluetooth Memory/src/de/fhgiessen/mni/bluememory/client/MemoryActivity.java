@@ -102,9 +102,10 @@ public interface MemoryActivity {
 	/**
 	 * Wird aufgerufen, wenn ein Spieler an der Reihe ist und seinen Zug machen soll. (RATE)
 	 * 
-	 * @param name Der Spieler, der an der Reihe ist. Die Activity prüft, ob sie selbst der Spieler ist.
+	 * @param platz Der Platz des Spielers, der an der Reihe ist (s. ClientStrategie.getPlaetze()).
+	 *        Die Activity prüft, ob sie selbst der Spieler ist.
 	 */
-	public void onRate(String name);
+	public void onRate(int platz);
 	
 	/**
 	 * Wird aufgerufen, wenn der Spielzug eines anderen Spielers empfangen wurde. (POST_ZUG)
@@ -113,6 +114,44 @@ public interface MemoryActivity {
 	 */
 	public void onSpielzugEmpfangen(int zug);
 	
+	/**
+	 * Wird aufgerufen, wenn ein Spielzug samt seinen Folgen empfangen wurde. (POST_ZUG_ERGEBNIS)
+	 * 
+	 * Der Zug wird sofort umgesetzt und bestätigt. Der nächste Spieler ist erst nach dem Zudecken
+	 * an der Reihe.
+	 * 
+	 * @param zug Die Karte, die der Spieler angeklickt hat.
+	 * @param zudeckenNach Die Zeit in ms, nach der die Karten der Runde zugedeckt werden, 0 wenn nichts zuzudecken ist.
+	 * @param naechster Der Platz des Spielers, der nach dem Zug an der Reihe ist.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens auf der Uhr des Servers (s. ClientStrategie.lokaleZeit()) oder -1.
+	 */
+	public void onSpielzugErgebnis(int zug, int zudeckenNach, int naechster, long zudeckenUm);
+	
+	/**
+	 * Wird aufgerufen, wenn ein ganzer Spielzug samt seinen Folgen empfangen wurde. (POST_ZUG_PAAR)
+	 * 
+	 * Wie bei onSpielzugErgebnis() wird der Zug sofort umgesetzt und bestätigt, der nächste
+	 * Spieler ist erst nach dem Zudecken an der Reihe.
+	 * 
+	 * @param erste Die erste Karte, die der Spieler angeklickt hat.
+	 * @param zweite Die zweite Karte, die der Spieler angeklickt hat.
+	 * @param paar true, wenn die Karten ein Paar sind.
+	 * @param zudeckenNach Die Zeit in ms, nach der die Karten zugedeckt werden, 0 bei einem Paar.
+	 * @param naechster Der Platz des Spielers, der nach dem Zug an der Reihe ist.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens auf der Uhr des Servers oder -1.
+	 */
+	public void onZugPaarErgebnis(int erste, int zweite, boolean paar, int zudeckenNach, int naechster, long zudeckenUm);
+	
+	/**
+	 * Wird aufgerufen, wenn der Server einen eigenen Zug angenommen hat, der schon angezeigt wird.
+	 * (ZUG_ANGENOMMEN, s. ClientStrategie.istOptimistisch())
+	 * 
+	 * @param zudeckenNach Die Zeit in ms, nach der die Karten der Runde zugedeckt werden, 0 wenn nichts zuzudecken ist.
+	 * @param naechster Der Platz des Spielers, der nach dem Zug an der Reihe ist.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens auf der Uhr des Servers oder -1.
+	 */
+	public void onZugAngenommen(int zudeckenNach, int naechster, long zudeckenUm);
+	
 	/**
 	 * Wird aufgerufen, wenn alle Karten aufgedeckt wurden. (BEENDEN)
 	 */
@@ -41,9 +41,88 @@ public abstract class GlobalValues {
 	/** UUID für die BT-Verbindung zwischen Server und Clients */
 	public static final UUID BT_UUID = UUID.fromString("507e8240-bbba-49bc-830d-b1fef7008621");
 	
+	/** Transport-Art: Bluetooth (RFCOMM) */
+	public static final String TRANSPORT_BT = "bt";
+	
+	/** Transport-Art: TCP */
+	public static final String TRANSPORT_TCP = "tcp";
+	
+	/** Transport-Art: TCP, alle Verbindungen in wenigen Ereignisschleifen (s. NioTransportServer) */
+	public static final String TRANSPORT_NIO = "nio";
+	
+	/** Transport-Art: Innerhalb der JVM (für Tests und Messungen ohne Funkstrecke) */
+	public static final String TRANSPORT_SPEICHER = "speicher";
+	
+	/** Port, auf dem der Server bei TCP-Transport wartet */
+	public static final int TCP_PORT = 4711;
+	
 	/** Minimale Anzahl von Spielern in einem Spiel */
 	public static final int MIN_PLAYERS = 1;
 	
 	/** Maximale Anzahl von Spielern in einem Spiel */
 	public static final int MAX_PLAYERS = 6;
+	
+	/**
+	 * Züge ohne Warten auf alle OK_ZUG abwickeln.
+	 * 
+	 * Der Server sendet mit jedem Zug gleich den nächsten Spieler und den Zeitpunkt des Zudeckens
+	 * (POST_ZUG_ERGEBNIS), statt nach POST_ZUG auf die Bestätigungen aller Clients zu warten. Ältere
+	 * Clients im selben Raum erhalten weiterhin POST_ZUG und RATE.
+	 */
+	public static final boolean ZUG_PIPELINE = true;
+	
+	/**
+	 * Beide Karten eines Spielzugs in einer Nachricht senden.
+	 * 
+	 * Der Client deckt die erste Karte nur bei sich auf und sendet sie zusammen mit der zweiten
+	 * (ZUG_PAAR). Der Server antwortet mit dem Ergebnis des ganzen Spielzugs (POST_ZUG_PAAR), statt
+	 * jede Karte einzeln zu verteilen. Gilt nur, wenn alle Spieler im Raum es beherrschen.
+	 */
+	public static final boolean ZUG_PAARE = true;
+	
+	/**
+	 * Die Pause nach einem Spielzug führt der Server.
+	 * 
+	 * Statt dass jeder Client nach dem Zug selbst wartet, plant der Server das Zudecken samt dem
+	 * nächsten Spieler auf seinem Zeitgeber und sendet dann RATE. Die Clients decken erst damit zu,
+	 * alle im selben Takt. Gilt nur zusammen mit ZUG_PIPELINE bzw. ZUG_PAARE. Clients mit
+	 * Protokoll.UHRZEIT erhalten stattdessen den Zeitpunkt des Zudeckens auf der Uhr des Servers
+	 * und decken ohne RATE selbst zu.
+	 */
+	public static final boolean SERVER_PAUSE = true;
+	
+	/**
+	 * Eigene Züge sofort anzeigen.
+	 * 
+	 * Der aktive Client deckt eine angeklickte Karte gleich selbst auf und sendet den Zug erst
+	 * danach. Der Server schickt ihm das Ergebnis nicht mehr zurück, sondern nur noch die Annahme
+	 * (ZUG_ANGENOMMEN) mit dem nächsten Spieler. Lehnt er den Zug ab (RATE), nimmt der Client ihn
+	 * zurück. Gilt nur zusammen mit ZUG_PIPELINE bzw. ZUG_PAARE.
+	 */
+	public static final boolean OPTIMISTISCH = true;
+	
+	/** Der Gegenstelle anbieten, große Nachrichten komprimiert zu senden (s. StatusCodes.KOMPRESSION) */
+	public static final boolean KOMPRESSION = true;
+	
+	/** Abstand zwischen zwei PING-Nachrichten an die Gegenstelle in ms (s. Herzschlag) */
+	public static final int PING_INTERVALL = 2000;
+	
+	/** Abstand zwischen zwei PING-Nachrichten in ms, solange der Versatz der Uhren noch ungenau ist (s. netzwerk.Uhrabgleich) */
+	public static final int UHR_ABGLEICH_INTERVALL = 250;
+	
+	/** Nach dieser Zeit in ms ohne Nachricht gilt die Gegenstelle als tot und wird getrennt */
+	public static final int VERBINDUNG_TIMEOUT = 10000;
+	
+	/** So lange in ms hält der Server die Sitzung eines abgebrochenen Spielers für eine Wiederverbindung */
+	public static final int WIEDERVERBINDEN_TIMEOUT = 30000;
+	
+	/**
+	 * So lange in ms wartet ein Raum höchstens auf die Bestätigungen eines Schritts (Spielfeld oder
+	 * Zug, bei Zügen zusätzlich zur Pause). Danach geht das Spiel weiter, die fehlenden Spieler
+	 * erhalten das Spielfeld neu (s. server.Bestaetigungen).
+	 */
+	public static final int BESTAETIGUNG_TIMEOUT = 8000;
+	
+	/** Spielfeld als JSON statt binär übertragen (nur zum Debuggen) */
+	public static final boolean SPIELFELD_ALS_JSON = false;
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package de.fhgiessen.mni.bluememory.datentypen;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -39,6 +40,27 @@ public class Spielfeld {
 	/** Kartenstatus: aufgedeckt, permanent */
 	private static final int AUFGEDECKT_PERMANENT = 2;
 	
+	/** Version der Binärkodierung (s. toBinary()) */
+	public static final int BINAER_VERSION = 2;
+	
+	/** Länge des festen Teils des Binär-Headers: Version, Stand, dim, pause, Länge des Decknamens */
+	private static final int BINAER_HEADER = 10;
+	
+	/** Länge des Binär-Headers in Version 1 (ohne Stand) */
+	private static final int BINAER_HEADER_V1 = 6;
+	
+	/** Anzahl der Änderungen, die im Änderungsprotokoll gehalten werden */
+	private static final int AENDERUNGEN_KAPAZITAET = 256;
+	
+	/** Länge des Headers einer Änderungsliste: Stand von, Stand bis, Anzahl */
+	private static final int DELTA_HEADER = 10;
+	
+	/** Länge eines Eintrags in einer Änderungsliste: Position, alter Status, neuer Status */
+	private static final int DELTA_EINTRAG = 4;
+	
+	/** Bits pro Kartenstatus in der Binärkodierung */
+	private static final int BITS_STATUS = 2;
+	
 	/** Die Pause zwischen zwei Spielzügen (hängt vom gewählten Schwierigkeitsgrad ab) */
 	public int pause;
 	
@@ -48,6 +70,9 @@ public class Spielfeld {
 	/** Name des Kartendecks */
 	private String deck;
 	
+	/** Der Deckname in UTF-8, wird für die Binärkodierung einmalig erzeugt */
+	private byte[] deckBinaer;
+	
 	/** Array mit den Nummern der Karten */
 	private int[] feld;
 	
@@ -60,6 +85,20 @@ public class Spielfeld {
 	/** Array mit den Feldstati */
 	private int[] feldStatus;
 	
+	/** Stand des Spielfelds, wird bei jeder Änderung eines Feldstatus um 1 erhöht */
+	private int stand;
+	
+	/** Der Stand, mit dem dieses Objekt erzeugt wurde. Ältere Änderungen sind nicht protokolliert. */
+	private int protokollStart;
+	
+	/**
+	 * Ringpuffer mit den letzten Änderungen der Feldstati.
+	 * 
+	 * Die Änderung von Stand n auf n + 1 steht an Position n % AENDERUNGEN_KAPAZITAET und ist
+	 * kodiert als (Position << 16) | (alter Status << 8) | neuer Status.
+	 */
+	private int[] aenderungen;
+	
 	/** True, wenn das Spielfeld gesperrt ist (keine Interaktionen möglich), sonst false */
 	public boolean locked;
 	
@@ -102,6 +141,9 @@ public class Spielfeld {
 		this.deck = deck;
 		this.pause = pause;
 		this.lastFoundPair = false;
+		this.stand = 0;
+		this.protokollStart = 0;
+		this.aenderungen = new int[AENDERUNGEN_KAPAZITAET];
 		
 		// Feldstatus setzen und Drawables erzeugen
 		feldStatus = new int[dim];
@@ -181,6 +223,8 @@ public class Spielfeld {
 		// Das Spielfeld generieren, Feld-Stati setzen und das neue Spielfeld zurückgeben
 		Spielfeld spielfeld = new Spielfeld(ctx, json.getInt("dim"), feld, json.getString("deck"), json.getInt("pause"));
 		spielfeld.feldStatus = feldStatus;
+		spielfeld.stand = json.optInt("stand", 0);
+		spielfeld.protokollStart = spielfeld.stand;
 		
 		return spielfeld;
 	}
@@ -191,6 +235,8 @@ public class Spielfeld {
 	 * Aus der Stringrepräsentation des JSON-Objekts kann mit Spielfeld.createFromJSON() wieder
 	 * das Spielfeld erstellt werden. Voraussetzung ist, dass das Kartendeck auf dem Gerät existiert.
 	 * 
+	 * Übertragen wird das Spielfeld normalerweise binär (s. toBinary()), JSON dient zum Debuggen.
+	 * 
 	 * @return Die String-Repräsentation des JSON-Objekts, welches das Spielfeld enthält.
 	 */
 	public String toJSON() {
@@ -209,6 +255,7 @@ public class Spielfeld {
 			json.put("feld", new JSONArray(feld));
 			json.put("feldStatus", new JSONArray(feldStatus));
 			json.put("pause", pause);
+			json.put("stand", stand);
 		} catch (JSONException e) {
 			json = new JSONObject();
 		}
@@ -216,6 +263,293 @@ public class Spielfeld {
 		return json.toString();
 	}
 	
+	/**
+	 * Erzeugt das Spielfeld aus empfangenen Bytes.
+	 * 
+	 * Das Format wird am ersten Byte erkannt: Ein JSON-Objekt beginnt mit '{', alles andere
+	 * wird als Binärkodierung (s. toBinary()) gelesen.
+	 * 
+	 * @param ctx Application Context.
+	 * @param daten Puffer mit dem kodierten Spielfeld.
+	 * @param offset Position des ersten Bytes im Puffer.
+	 * @param laenge Anzahl der Bytes.
+	 * @return Das Spielfeld-Objekt.
+	 * @throws JSONException Wenn ein Fehler bei der Verarbeitung der JSON-Daten auftritt.
+	 * @throws FileNotFoundException Wenn das Deck nicht installiert ist.
+	 * @throws IllegalArgumentException Wenn die Binärdaten fehlerhaft sind.
+	 */
+	public static Spielfeld createFromBytes(Context ctx, byte[] daten, int offset, int laenge) throws JSONException, FileNotFoundException {
+		if ((laenge > 0) && (daten[offset] == '{')) return createFromJSON(ctx, new String(daten, offset, laenge));
+		return createFromBinary(ctx, daten, offset, laenge);
+	}
+	
+	/**
+	 * Erzeugt das Spielfeld aus der Binärkodierung.
+	 * 
+	 * Karten-IDs und Feldstati werden direkt in die int-Arrays des Spielfelds dekodiert.
+	 * 
+	 * @param ctx Application Context.
+	 * @param daten Puffer mit dem kodierten Spielfeld.
+	 * @param offset Position des ersten Bytes im Puffer.
+	 * @param laenge Anzahl der Bytes.
+	 * @return Das Spielfeld-Objekt.
+	 * @throws FileNotFoundException Wenn das Deck nicht installiert ist.
+	 * @throws IllegalArgumentException Wenn die Daten fehlerhaft sind oder die Version unbekannt ist.
+	 * @see #toBinary(byte[], int)
+	 */
+	public static Spielfeld createFromBinary(Context ctx, byte[] daten, int offset, int laenge) throws FileNotFoundException {
+		if (laenge < 1) throw new IllegalArgumentException("Spielfeld leer");
+		
+		// Version 1 kannte noch keinen Stand
+		int version = daten[offset] & 0xFF;
+		int header;
+		switch (version) {
+			case 1: header = BINAER_HEADER_V1; break;
+			case BINAER_VERSION: header = BINAER_HEADER; break;
+			default: throw new IllegalArgumentException("Unbekannte Spielfeld-Version: " + version);
+		}
+		if (laenge < header) throw new IllegalArgumentException("Spielfeld-Header unvollständig");
+		
+		// Header auslesen
+		int stand = 0;
+		int pos = offset + 1;
+		if (version >= 2) {
+			stand = leseInt(daten, pos);
+			pos += 4;
+		}
+		int dim = ((daten[pos] & 0xFF) << 8) | (daten[pos + 1] & 0xFF);
+		int pause = ((daten[pos + 2] & 0xFF) << 8) | (daten[pos + 3] & 0xFF);
+		int deckLaenge = daten[pos + 4] & 0xFF;
+		
+		int bitsKarte = bitsKarte(dim);
+		int bitfeld = offset + header + deckLaenge;
+		if (laenge < (header + deckLaenge + bitfeldLaenge(dim, bitsKarte)))
+			throw new IllegalArgumentException("Spielfeld unvollständig");
+		
+		String deck;
+		try {
+			deck = new String(daten, offset + header, deckLaenge, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalArgumentException("UTF-8 nicht unterstützt");
+		}
+		
+		// Karten-IDs und Feldstati auslesen
+		int[] feld = new int[dim];
+		int[] feldStatus = new int[dim];
+		int bit = 0;
+		for (int i = 0; i < dim; i++) {
+			feld[i] = leseBits(daten, bitfeld, bit, bitsKarte);
+			bit += bitsKarte;
+			feldStatus[i] = leseBits(daten, bitfeld, bit, BITS_STATUS);
+			bit += BITS_STATUS;
+		}
+		
+		// Das Spielfeld generieren, Feld-Stati setzen und das neue Spielfeld zurückgeben
+		Spielfeld spielfeld = new Spielfeld(ctx, dim, feld, deck, pause);
+		spielfeld.feldStatus = feldStatus;
+		spielfeld.stand = stand;
+		spielfeld.protokollStart = stand;
+		
+		return spielfeld;
+	}
+	
+	/**
+	 * Ermittelt die Länge der Binärkodierung des Spielfelds.
+	 * 
+	 * @return Die Anzahl der Bytes, die toBinary() schreibt.
+	 */
+	public int binaerLaenge() {
+		return BINAER_HEADER + getDeckBinaer().length + bitfeldLaenge(dim, bitsKarte(dim));
+	}
+	
+	/**
+	 * Kodiert das Spielfeld binär in einen vorhandenen Puffer.
+	 * 
+	 * Das Format (Version 2) ist:
+	 * 
+	 * <pre>
+	 * [Version: 1 Byte][Stand: 4 Byte][dim: 2 Byte][pause: 2 Byte][Länge Deckname: 1 Byte][Deckname: UTF-8]
+	 * [je Karte: Karten-ID (so viele Bits wie für dim / 2 - 1 nötig), Feldstatus (2 Bit)]
+	 * </pre>
+	 * 
+	 * Alle Zahlen sind Big Endian, die Bits werden vom höchstwertigen Bit an gefüllt. Bei
+	 * 20 Karten belegt das Feld so 15 Byte statt mehrerer hundert Zeichen JSON.
+	 * 
+	 * Im Puffer muss ab offset Platz für binaerLaenge() Bytes sein. Der Puffer wird nicht
+	 * vergrößert, die Kodierung selbst erzeugt also keine Objekte.
+	 * 
+	 * @param ziel Der Puffer.
+	 * @param offset Die Position, an die das Spielfeld geschrieben wird.
+	 * @return Die Anzahl geschriebener Bytes.
+	 */
+	public int toBinary(byte[] ziel, int offset) {
+		byte[] deckBinaer = getDeckBinaer();
+		int bitsKarte = bitsKarte(dim);
+		int bitfeld = offset + BINAER_HEADER + deckBinaer.length;
+		int bitfeldLaenge = bitfeldLaenge(dim, bitsKarte);
+		
+		// Header schreiben
+		ziel[offset]     = (byte) BINAER_VERSION;
+		schreibeInt(ziel, offset + 1, stand);
+		ziel[offset + 5] = (byte) (dim >>> 8);
+		ziel[offset + 6] = (byte) dim;
+		ziel[offset + 7] = (byte) (pause >>> 8);
+		ziel[offset + 8] = (byte) pause;
+		ziel[offset + 9] = (byte) deckBinaer.length;
+		System.arraycopy(deckBinaer, 0, ziel, offset + BINAER_HEADER, deckBinaer.length);
+		
+		// Karten-IDs und Feldstati schreiben
+		for (int i = bitfeld; i < (bitfeld + bitfeldLaenge); i++) ziel[i] = 0;
+		int bit = 0;
+		for (int i = 0; i < dim; i++) {
+			schreibeBits(ziel, bitfeld, bit, feld[i], bitsKarte);
+			bit += bitsKarte;
+			schreibeBits(ziel, bitfeld, bit, feldStatus[i], BITS_STATUS);
+			bit += BITS_STATUS;
+		}
+		
+		return BINAER_HEADER + deckBinaer.length + bitfeldLaenge;
+	}
+	
+	/**
+	 * Kodiert das Spielfeld binär in einen neuen Puffer.
+	 * 
+	 * @return Das binär kodierte Spielfeld.
+	 * @see #toBinary(byte[], int)
+	 */
+	public byte[] toBinary() {
+		byte[] ziel = new byte[binaerLaenge()];
+		toBinary(ziel, 0);
+		
+		return ziel;
+	}
+	
+	/**
+	 * Liefert den aktuellen Stand des Spielfelds.
+	 * 
+	 * Der Stand wird bei jeder Änderung eines Feldstatus um 1 erhöht. Zwei Spielfelder mit
+	 * gleichem Stand, die aus demselben Spielfeld hervorgegangen sind, sind gleich.
+	 * 
+	 * @return Der Stand.
+	 */
+	public int getStand() {
+		return stand;
+	}
+	
+	/**
+	 * Prüft, ob die Änderungen seit einem Stand noch im Änderungsprotokoll stehen.
+	 * 
+	 * @param seit Der Stand, den der Empfänger kennt.
+	 * @return true, wenn toDelta() für diesen Stand möglich ist, sonst false (dann muss das
+	 *         ganze Spielfeld gesendet werden).
+	 */
+	public boolean hatAenderungenSeit(int seit) {
+		return (seit >= protokollStart) && (seit <= stand) && ((stand - seit) <= AENDERUNGEN_KAPAZITAET);
+	}
+	
+	/**
+	 * Nimmt die Änderungen seit einem früheren Stand zurück, z.B. einen eigenen Zug, den der
+	 * Server abgelehnt hat (s. GlobalValues.OPTIMISTISCH). Danach gilt wieder der frühere Stand,
+	 * spätere Änderungslisten des Servers setzen also dort an.
+	 * 
+	 * @param bis Der frühere Stand.
+	 * @return true, wenn die Änderungen noch im Änderungsprotokoll standen, sonst false (dann muss
+	 *         das ganze Spielfeld angefordert werden).
+	 */
+	public boolean zuruecknehmen(int bis) {
+		if (!hatAenderungenSeit(bis)) return false;
+		
+		while (stand > bis) {
+			stand--;
+			int aenderung = aenderungen[stand % AENDERUNGEN_KAPAZITAET];
+			feldStatus[aenderung >>> 16] = (aenderung >>> 8) & 0xFF;
+		}
+		lastFoundPair = false;
+		
+		return true;
+	}
+	
+	/**
+	 * Ermittelt die Länge der Änderungsliste seit einem Stand.
+	 * 
+	 * @param seit Der Stand, den der Empfänger kennt.
+	 * @return Die Anzahl der Bytes, die toDelta() schreibt.
+	 */
+	public int deltaLaenge(int seit) {
+		return DELTA_HEADER + ((stand - seit) * DELTA_EINTRAG);
+	}
+	
+	/**
+	 * Kodiert die Änderungen seit einem Stand in einen vorhandenen Puffer.
+	 * 
+	 * Das Format ist:
+	 * 
+	 * <pre>
+	 * [Stand von: 4 Byte][Stand bis: 4 Byte][Anzahl: 2 Byte]
+	 * [je Änderung: Position: 2 Byte, alter Status: 1 Byte, neuer Status: 1 Byte]
+	 * </pre>
+	 * 
+	 * Vorher muss mit hatAenderungenSeit() geprüft werden, ob die Änderungen noch vorliegen.
+	 * 
+	 * @param seit Der Stand, den der Empfänger kennt.
+	 * @param ziel Der Puffer.
+	 * @param offset Die Position, an die die Änderungen geschrieben werden.
+	 * @return Die Anzahl geschriebener Bytes.
+	 */
+	public int toDelta(int seit, byte[] ziel, int offset) {
+		int anzahl = stand - seit;
+		schreibeInt(ziel, offset, seit);
+		schreibeInt(ziel, offset + 4, stand);
+		ziel[offset + 8] = (byte) (anzahl >>> 8);
+		ziel[offset + 9] = (byte) anzahl;
+		
+		int pos = offset + DELTA_HEADER;
+		for (int n = seit; n < stand; n++, pos += DELTA_EINTRAG) {
+			int aenderung = aenderungen[n % AENDERUNGEN_KAPAZITAET];
+			ziel[pos]     = (byte) (aenderung >>> 24);
+			ziel[pos + 1] = (byte) (aenderung >>> 16);
+			ziel[pos + 2] = (byte) (aenderung >>> 8);
+			ziel[pos + 3] = (byte) aenderung;
+		}
+		
+		return DELTA_HEADER + (anzahl * DELTA_EINTRAG);
+	}
+	
+	/**
+	 * Übernimmt eine Änderungsliste (s. toDelta()).
+	 * 
+	 * Die Liste wird nur übernommen, wenn sie genau am aktuellen Stand ansetzt und der alte Status
+	 * jeder Änderung mit dem eigenen übereinstimmt. Weicht das eigene Spielfeld ab, werden schon
+	 * übernommene Änderungen zurückgenommen. Die Änderungen werden wie lokale Änderungen
+	 * protokolliert, so dass der Stand danach dem des Senders entspricht.
+	 * 
+	 * @param daten Puffer mit der Änderungsliste.
+	 * @param offset Position des ersten Bytes im Puffer.
+	 * @param laenge Anzahl der Bytes.
+	 * @return true, wenn die Änderungen übernommen wurden, sonst false (dann muss das ganze
+	 *         Spielfeld angefordert werden).
+	 */
+	public boolean applyDelta(byte[] daten, int offset, int laenge) {
+		if (laenge < DELTA_HEADER) return false;
+		
+		int von = leseInt(daten, offset);
+		int bis = leseInt(daten, offset + 4);
+		int anzahl = ((daten[offset + 8] & 0xFF) << 8) | (daten[offset + 9] & 0xFF);
+		if ((von != stand) || ((bis - von) != anzahl) || (laenge < (DELTA_HEADER + (anzahl * DELTA_EINTRAG)))) return false;
+		
+		int pos = offset + DELTA_HEADER;
+		for (int i = 0; i < anzahl; i++, pos += DELTA_EINTRAG) {
+			int karte = ((daten[pos] & 0xFF) << 8) | (daten[pos + 1] & 0xFF);
+			if ((karte >= dim) || (feldStatus[karte] != (daten[pos + 2] & 0xFF))) {
+				zuruecknehmen(von);
+				return false;
+			}
+			setStatus(karte, daten[pos + 3] & 0xFF);
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Erzeugt ein Drawable-Objekt mit der aktuellen Darstellung der Karte anhand
 	 * des Decks.
@@ -230,6 +564,19 @@ public class Spielfeld {
 			: untouched;
 	}
 	
+	/**
+	 * Liefert die Grafik einer Karte unabhängig davon, ob sie aufgedeckt ist.
+	 * 
+	 * Damit zeigt der Client die erste Karte eines Spielzugs an, bevor er den ganzen Zug sendet
+	 * (s. GlobalValues.ZUG_PAARE).
+	 * 
+	 * @param pos Die Position der Karte.
+	 * @return Das Drawable-Objekt mit der Vorderseite der Karte.
+	 */
+	public Drawable getVorderseite(int pos) {
+		return karten[pos];
+	}
+	
 	/**
 	 * Erzeugt einen Array mit den Drawables für das gesamte Spielfeld.
 	 * 
@@ -277,7 +624,7 @@ public class Spielfeld {
 				status = ZUGEDECKT;
 		}
 		
-		feldStatus[pos] = status;
+		setStatus(pos, status);
 	}
 	
 	/**
@@ -289,9 +636,11 @@ public class Spielfeld {
 	 * 
 	 * @param pos Die "geklickte" Karte.
 	 * @param lockOverride true, um die Spielfeldsperrung zu ignorieren, sonst false
-	 * @return true, wenn die Karte anklickbar ist, sonst false.
+	 * @return true, wenn die Karte anklickbar ist, sonst false (auch für Positionen außerhalb des Spielfelds).
 	 */
 	public boolean check(int pos, boolean lockOverride) {
+		if ((pos < 0) || (pos >= feldStatus.length)) return false;
+		
 		Log.d(TAG, "Klick auf " + pos + " mit Status " + feldStatus[pos] + " und locked == " + locked + "; lockOverride = " + lockOverride);
 		return ((!locked || lockOverride) && (feldStatus[pos] == ZUGEDECKT));
 	}
@@ -308,8 +657,8 @@ public class Spielfeld {
 		
 		// Paare permanent aufdecken
 		if (lastFoundPair) {
-			feldStatus[pos1] = AUFGEDECKT_PERMANENT;
-			feldStatus[pos2] = AUFGEDECKT_PERMANENT;
+			setStatus(pos1, AUFGEDECKT_PERMANENT);
+			setStatus(pos2, AUFGEDECKT_PERMANENT);
 		}
 		
 		return lastFoundPair;
@@ -325,9 +674,9 @@ public class Spielfeld {
 		// Felder wieder zudecken oder permanent aufgedeckt lassen
 		for (int i = 0; i < feldStatus.length; i++) {
 			switch (feldStatus[i]) {
-				case AUFGEDECKT_TEMPORARY: feldStatus[i] = ZUGEDECKT; break;
-				case AUFGEDECKT_PERMANENT: feldStatus[i] = AUFGEDECKT_PERMANENT; break;
-				case ZUGEDECKT: feldStatus[i] = ZUGEDECKT; break;
+				case AUFGEDECKT_TEMPORARY: setStatus(i, ZUGEDECKT); break;
+				case AUFGEDECKT_PERMANENT: setStatus(i, AUFGEDECKT_PERMANENT); break;
+				case ZUGEDECKT: setStatus(i, ZUGEDECKT); break;
 			}
 		}
 		lastFoundPair = false;
@@ -349,6 +698,125 @@ public class Spielfeld {
 		return zuende;
 	}
 
+	/**
+	 * Setzt den Status einer Karte und protokolliert die Änderung.
+	 * 
+	 * @param pos Die Karte.
+	 * @param status Der neue Status.
+	 */
+	private void setStatus(int pos, int status) {
+		int alt = feldStatus[pos];
+		if (alt == status) return;
+		
+		feldStatus[pos] = status;
+		aenderungen[stand % AENDERUNGEN_KAPAZITAET] = (pos << 16) | (alt << 8) | status;
+		stand++;
+	}
+	
+	/**
+	 * Liefert den Decknamen in UTF-8.
+	 * 
+	 * @return Der Deckname, höchstens 255 Byte lang.
+	 */
+	private byte[] getDeckBinaer() {
+		if (deckBinaer == null) {
+			try {
+				deckBinaer = deck.getBytes("UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				deckBinaer = deck.getBytes();
+			}
+			if (deckBinaer.length > 255) throw new IllegalStateException("Deckname zu lang: " + deck);
+		}
+		
+		return deckBinaer;
+	}
+	
+	/**
+	 * Ermittelt die Anzahl Bits, die für eine Karten-ID benötigt werden.
+	 * 
+	 * @param dim Breite * Höhe des Spielfelds.
+	 * @return Die Anzahl Bits für die größte Karten-ID (dim / 2 - 1), mindestens 1.
+	 */
+	private static int bitsKarte(int dim) {
+		int maxID = (dim / 2) - 1;
+		int bits = 1;
+		while ((maxID >>> bits) != 0) bits++;
+		
+		return bits;
+	}
+	
+	/**
+	 * Ermittelt die Länge des Bitfelds mit Karten-IDs und Feldstati.
+	 * 
+	 * @param dim Breite * Höhe des Spielfelds.
+	 * @param bitsKarte Bits pro Karten-ID.
+	 * @return Die Länge in Byte.
+	 */
+	private static int bitfeldLaenge(int dim, int bitsKarte) {
+		return ((dim * (bitsKarte + BITS_STATUS)) + 7) / 8;
+	}
+	
+	/**
+	 * Schreibt einen int-Wert (Big Endian) in einen Puffer.
+	 * 
+	 * @param ziel Der Puffer.
+	 * @param offset Die Position des ersten Bytes.
+	 * @param wert Der Wert.
+	 */
+	private static void schreibeInt(byte[] ziel, int offset, int wert) {
+		ziel[offset]     = (byte) (wert >>> 24);
+		ziel[offset + 1] = (byte) (wert >>> 16);
+		ziel[offset + 2] = (byte) (wert >>> 8);
+		ziel[offset + 3] = (byte) wert;
+	}
+	
+	/**
+	 * Liest einen int-Wert (Big Endian) aus einem Puffer.
+	 * 
+	 * @param quelle Der Puffer.
+	 * @param offset Die Position des ersten Bytes.
+	 * @return Der Wert.
+	 */
+	private static int leseInt(byte[] quelle, int offset) {
+		return ((quelle[offset] & 0xFF) << 24)
+			| ((quelle[offset + 1] & 0xFF) << 16)
+			| ((quelle[offset + 2] & 0xFF) << 8)
+			| (quelle[offset + 3] & 0xFF);
+	}
+	
+	/**
+	 * Schreibt einen Wert in ein Bitfeld. Die Zielbits müssen vorher 0 sein.
+	 * 
+	 * @param ziel Der Puffer.
+	 * @param offset Position des Bitfelds im Puffer.
+	 * @param bit Position des ersten Bits im Bitfeld.
+	 * @param wert Der Wert.
+	 * @param anzahl Anzahl der Bits.
+	 */
+	private static void schreibeBits(byte[] ziel, int offset, int bit, int wert, int anzahl) {
+		for (int i = anzahl - 1; i >= 0; i--, bit++) {
+			if (((wert >>> i) & 1) != 0) ziel[offset + (bit >>> 3)] |= (0x80 >>> (bit & 7));
+		}
+	}
+	
+	/**
+	 * Liest einen Wert aus einem Bitfeld.
+	 * 
+	 * @param quelle Der Puffer.
+	 * @param offset Position des Bitfelds im Puffer.
+	 * @param bit Position des ersten Bits im Bitfeld.
+	 * @param anzahl Anzahl der Bits.
+	 * @return Der Wert.
+	 */
+	private static int leseBits(byte[] quelle, int offset, int bit, int anzahl) {
+		int wert = 0;
+		for (int i = 0; i < anzahl; i++, bit++) {
+			wert = (wert << 1) | ((quelle[offset + (bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+		}
+		
+		return wert;
+	}
+	
 	/**
 	 * Fisher–Yates bzw. Knuth shuffle
 	 * 
@@ -15,18 +15,58 @@ public class StatusCodes {
 	/*
 	 * Verbindungsaufbau / Verbindungstrennung
 	 */
-	/** Der Client möchte sich mit seinem Namen anmelden. Parameter: Spielername (Client). */
+	/**
+	 * Der Client möchte sich mit seinem Namen anmelden. Parameter: "Version;Fähigkeiten;Spielername"
+	 * (s. Protokoll), ältere Clients senden nur den Spielernamen.
+	 */
 	public static final byte HELO = 0;
 	
-	/** Der Spielername wurde akzeptiert. Keine Parameter. */
+	/**
+	 * Der Spielername wurde akzeptiert. Parameter: "Version;Fähigkeiten;Token" mit den
+	 * vereinbarten Fähigkeiten und ggf. dem Token der Sitzung (s. FORTSETZEN). Ab dieser
+	 * Nachricht tragen dann alle Nachrichten des Servers eine Sequenznummer. Ältere Clients
+	 * erhalten keine Parameter.
+	 */
 	public static final byte HELLO = 1;
 	
 	/** Der Spielername wurde nicht akzeptiert. Keine Parameter. */
 	public static final byte FEHLER_HELO = 2;
 	
+	/**
+	 * Der Absender kann komprimierte Frames entpacken (s. FrameCodec.KOMPRIMIERT). Keine Parameter.
+	 * Wird nur noch von älteren Gegenstellen gesendet, inzwischen wird die Kompression mit
+	 * HELO und HELLO vereinbart (s. Protokoll.KOMPRESSION).
+	 */
+	public static final byte KOMPRESSION = 3;
+	
+	/**
+	 * Der Client setzt nach einem Verbindungsabbruch seine Sitzung fort (statt HELO).
+	 * Parameter: "Token;Sequenznummer" mit dem Token aus HELLO und der Nummer der letzten
+	 * empfangenen Nachricht.
+	 */
+	public static final byte FORTSETZEN = 4;
+	
+	/** Die Sitzung wird fortgesetzt, die verpassten Nachrichten folgen. Keine Parameter. */
+	public static final byte FORTGESETZT = 5;
+	
+	/** Die Sitzung kann nicht fortgesetzt werden, der Client muss aufgeben. Keine Parameter. */
+	public static final byte FEHLER_FORTSETZEN = 6;
+	
 	/** Beenden der Verbindung. */
 	public static final byte BYE = 10;
 	
+	/**
+	 * Prüft, ob die Gegenstelle noch erreichbar ist (s. Herzschlag). Parameter: Zeitstempel des
+	 * Absenders. Wird von beiden Seiten regelmäßig gesendet und muss mit PONG beantwortet werden.
+	 */
+	public static final byte PING = 11;
+	
+	/**
+	 * Antwort auf PING. Parameter: Der unveränderte Zeitstempel aus dem PING, vom Server mit
+	 * Protokoll.UHRZEIT gefolgt von ";" und seiner Uhrzeit (s. Uhrabgleich).
+	 */
+	public static final byte PONG = 12;
+	
 	
 	/*
 	 * Lobby
@@ -40,13 +80,16 @@ public class StatusCodes {
 	/** Die Liste der Spieler wurde korrekt empfangen. Keine Parameter. */
 	public static final byte OK_LOBBY = 22;
 	
-	/** Ein neuer Spieler hat die Lobby betreten. Parameter: Name des Spielers. */
+	/** Ein neuer Spieler hat die Lobby betreten. Parameter: Name des Spielers (mit Protokoll.PLATZ_NUMMERN: Platz und Name). */
 	public static final byte PLAYER_JOINED = 25;
 	
-	/** Ein Spieler hat die Lobby verlassen. Parameter: Name des Spielers. */
+	/** Ein Spieler hat die Lobby verlassen. Parameter: Name des Spielers (mit Protokoll.PLATZ_NUMMERN: Platz und Name). */
 	public static final byte PLAYER_LEFT = 26;
 	
-	/** Server hat Spiel gestartet. Keine Parameter. */
+	/**
+	 * Server hat Spiel gestartet. Parameter (optional): Die Fähigkeiten, die für das ganze Spiel
+	 * gelten (zur Zeit nur Protokoll.ZUG_PAKETE).
+	 */
 	public static final byte STARTEN = 27;
 	
 	
@@ -54,17 +97,28 @@ public class StatusCodes {
 	 * Spielablauf
 	 */
 	// Spielfeldübermittlung
-	/** Der Client fordert das Spielfeld an. Keine Parameter. */
+	/**
+	 * Der Client fordert das Spielfeld an. Parameter (optional): Der Stand des Spielfelds, das der
+	 * Client schon hat. Dann werden nur die Änderungen seit diesem Stand gesendet.
+	 */
 	public static final byte GET_SPIELFELD = 40;
 	
-	/** Das Spielfeld wird gesendet. Parameter: Das Spielfeld (JSON-Objekt). */
+	/** Das Spielfeld wird gesendet. Parameter: Das Spielfeld (binär, s. Spielfeld.toBinary(); zum Debuggen als JSON-Objekt). */
 	public static final byte POST_SPIELFELD = 41;
 	
 	/** Spielfeld empfangen. Keine Parameter. */
 	public static final byte OK_SPIELFELD = 42;
 	
+	/** Die Änderungen am Spielfeld werden gesendet. Parameter: Die Änderungsliste (binär, s. Spielfeld.toDelta()). */
+	public static final byte POST_SPIELFELD_AENDERUNGEN = 43;
+	
 	// Spielzüge
-	/** Der Client ist am Zug. Parameter: Name des Spielers, der am Zug ist. */
+	/**
+	 * Der Client ist am Zug. Parameter: Name des Spielers, der am Zug ist (mit Protokoll.PLATZ_NUMMERN:
+	 * sein Platz). Clients mit Protokoll.ZUG_PIPELINE erhalten RATE nur zu Beginn und zum Abgleich,
+	 * sonst steht der nächste Spieler in POST_ZUG_ERGEBNIS. Mit Protokoll.SERVER_PAUSE kommt RATE
+	 * außerdem am Ende der Pause, der Client deckt erst dann zu.
+	 */
 	public static final byte RATE = 50;
 	
 	/** Der Client sperrt das Spielfeld und wartet auf weitere Anweisungen. */
@@ -79,6 +133,42 @@ public class StatusCodes {
 	/** Der Spielzug wurde vom Client empfangen und umgesetzt, das Spiel kann weitergehen. Keine Parameter. */
 	public static final byte OK_ZUG = 54;
 	
+	/**
+	 * Der Zug eines Clients und seine Folgen werden übertragen (nur bei GlobalValues.ZUG_PIPELINE).
+	 * Parameter: "Karte;Verzögerung;Spieler" mit der Nummer der aufgedeckten Karte, der Zeit in ms,
+	 * nach der die Karten der Runde zugedeckt werden (0 = nichts zuzudecken), und dem Namen des
+	 * Spielers, der danach am Zug ist (mit Protokoll.PLATZ_NUMMERN: sein Platz). Der Client
+	 * bestätigt mit OK_ZUG, ohne dass der Server darauf wartet. Mit Protokoll.SERVER_PAUSE und
+	 * einer Verzögerung wartet der Client auf RATE, statt die Zeit selbst abzuwarten. Mit
+	 * Protokoll.UHRZEIT folgt auf den Platz ";" und der Zeitpunkt des Zudeckens auf der Uhr des
+	 * Servers, RATE entfällt dann.
+	 */
+	public static final byte POST_ZUG_ERGEBNIS = 55;
+	
+	/**
+	 * Der Client hat einen ganzen Spielzug gemacht (nur mit Protokoll.ZUG_PAKETE). Parameter:
+	 * "Karte1;Karte2" mit den Nummern der beiden Karten, die aufgedeckt wurden.
+	 */
+	public static final byte ZUG_PAAR = 56;
+	
+	/**
+	 * Ein ganzer Spielzug und seine Folgen werden übertragen (nur mit Protokoll.ZUG_PAKETE).
+	 * Parameter: "Karte1;Karte2;Paar;Verzögerung;Spieler" mit den Nummern der beiden Karten, 1
+	 * für ein gefundenes Paar (sonst 0), der Zeit in ms, nach der die Karten zugedeckt werden, und
+	 * dem Spieler, der danach am Zug ist (wie bei POST_ZUG_ERGEBNIS, auch mit dem Zeitpunkt des
+	 * Zudeckens). Der Client bestätigt mit OK_ZUG, ohne dass der Server darauf wartet.
+	 */
+	public static final byte POST_ZUG_PAAR = 57;
+	
+	/**
+	 * Der Zug des aktiven Clients wurde angenommen (nur mit Protokoll.OPTIMISTISCH, statt
+	 * POST_ZUG_ERGEBNIS bzw. POST_ZUG_PAAR an diesen Client). Parameter: "Verzögerung;Platz" wie
+	 * dort, mit Protokoll.UHRZEIT gefolgt vom Zeitpunkt des Zudeckens. Der Client hat den Zug schon
+	 * angezeigt und gleicht nur das Ergebnis ab. Einen ungültigen Zug lehnt der Server wie bisher
+	 * mit RATE ab, der Client nimmt ihn dann zurück.
+	 */
+	public static final byte ZUG_ANGENOMMEN = 58;
+	
 	// Beenden
 	/** Das Spiel wird beendet. Keine Parameter */
 	public static final byte BEENDEN = 60;
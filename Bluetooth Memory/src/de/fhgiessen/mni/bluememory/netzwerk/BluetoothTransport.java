@@ -0,0 +1,57 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+
+/**
+ * Transport über einen RFCOMM-Socket.
+ */
+public class BluetoothTransport implements Transport {
+	/** Der Bluetooth-Socket der Verbindung */
+	private BluetoothSocket btSocket;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param btSocket Der verbundene Bluetooth-Socket.
+	 */
+	public BluetoothTransport(BluetoothSocket btSocket) {
+		this.btSocket = btSocket;
+	}
+	
+	/**
+	 * Stellt die Verbindung zu einem Server-Gerät her.
+	 * 
+	 * Die Methode blockiert, bis die Verbindung steht.
+	 * 
+	 * @param server Das Bluetooth-Gerät des Servers.
+	 * @return Die Verbindung.
+	 * @throws IOException Wenn die Verbindung nicht hergestellt werden kann.
+	 */
+	public static BluetoothTransport verbinde(BluetoothDevice server) throws IOException {
+		BluetoothSocket btSocket = server.createRfcommSocketToServiceRecord(GlobalValues.BT_UUID);
+		btSocket.connect();
+		
+		return new BluetoothTransport(btSocket);
+	}
+	
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return btSocket.getInputStream();
+	}
+	
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return btSocket.getOutputStream();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		btSocket.close();
+	}
+}
@@ -0,0 +1,40 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothServerSocket;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+
+/**
+ * Nimmt Verbindungen über RFCOMM entgegen.
+ * 
+ * Der Server-Socket wird erst beim ersten accept() geöffnet, damit der Bluetooth-Adapter bis
+ * dahin aktiviert werden kann.
+ */
+public class BluetoothTransportServer implements TransportServer {
+	/** Der RFCOMM-Server-Socket oder null, solange noch nicht gewartet wurde */
+	private BluetoothServerSocket btServer;
+	
+	/** true, sobald der Server geschlossen wurde */
+	private boolean geschlossen;
+	
+	@Override
+	public Transport accept() throws IOException {
+		BluetoothServerSocket server;
+		synchronized (this) {
+			if (geschlossen) throw new IOException("Server wurde geschlossen");
+			if (btServer == null) btServer = BluetoothAdapter.getDefaultAdapter().listenUsingRfcommWithServiceRecord(GlobalValues.SDP_NAME, GlobalValues.BT_UUID);
+			server = btServer;
+		}
+		
+		return new BluetoothTransport(server.accept());
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		geschlossen = true;
+		if (btServer != null) btServer.close();
+		btServer = null;
+	}
+}
@@ -0,0 +1,242 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+/**
+ * Kodiert Nachrichten des Spielprotokolls als Frames mit Längenpräfix.
+ * 
+ * Ein Frame hat die Form:
+ * 
+ * <pre>
+ * [Länge: 4 Byte, Big Endian][Statuscode: 1 Byte][Parameter: Länge - 1 Byte]
+ * </pre>
+ * 
+ * Die Länge zählt Statuscode und Parameter, aber nicht das Präfix selbst. Dadurch kann der
+ * Empfänger jede Nachricht vollständig rekonstruieren, egal ob RFCOMM mehrere Nachrichten zu
+ * einem Paket zusammenfasst oder eine Nachricht auf mehrere Pakete verteilt (s. FrameDecoder).
+ * 
+ * Ist im Längenpräfix das Bit KOMPRIMIERT gesetzt, sind die Parameter mit Deflate komprimiert
+ * (s. FrameWriter). Vor den komprimierten Daten steht dann die ursprüngliche Länge der Parameter:
+ * 
+ * <pre>
+ * [Länge | KOMPRIMIERT: 4 Byte][Statuscode: 1 Byte][Parameterlänge: 4 Byte][Deflate-Daten]
+ * </pre>
+ * 
+ * Komprimierte Frames dürfen nur an Gegenstellen gesendet werden, die StatusCodes.KOMPRESSION
+ * gesendet haben.
+ * 
+ * Ist das Bit SEQUENZ gesetzt, folgt auf den Statuscode die Sequenznummer der Nachricht (s.
+ * server.Sitzung). Erst danach kommen die Parameter bzw. die Kompressionsdaten:
+ * 
+ * <pre>
+ * [Länge | SEQUENZ: 4 Byte][Statuscode: 1 Byte][Sequenznummer: 4 Byte][Parameter]
+ * </pre>
+ * 
+ * Beide Bits werden vom FrameDecoder ausgewertet, beim Empfänger kommen Frames immer in der
+ * einfachen Form an.
+ */
+public abstract class FrameCodec {
+	/** Länge des Längenpräfixes in Byte */
+	public static final int PRAEFIX_LAENGE = 4;
+	
+	/** Maximale Länge eines Frames (ohne Präfix). Längere Frames gelten als fehlerhaft. */
+	public static final int MAX_LAENGE = 1024 * 1024;
+	
+	/** Position des ersten Parameter-Bytes in einem fertigen Frame */
+	public static final int PARAM_OFFSET = PRAEFIX_LAENGE + 1;
+	
+	/** Bit im Längenpräfix, das einen komprimierten Frame kennzeichnet */
+	public static final int KOMPRIMIERT = 0x80000000;
+	
+	/** Länge der ursprünglichen Parameterlänge vor den komprimierten Daten */
+	public static final int KOMPRIMIERT_HEADER = 4;
+	
+	/** Bit im Längenpräfix, das einen Frame mit Sequenznummer kennzeichnet */
+	public static final int SEQUENZ = 0x40000000;
+	
+	/** Länge der Sequenznummer hinter dem Statuscode */
+	public static final int SEQUENZ_HEADER = 4;
+	
+	/** Alle Bits im Längenpräfix, die nicht zur Länge gehören */
+	public static final int FLAGS = KOMPRIMIERT | SEQUENZ;
+	
+	/** Parameter ab dieser Länge werden komprimiert, kürzere lohnen sich nicht */
+	public static final int KOMPRESSION_SCHWELLE = 256;
+	
+	/**
+	 * Kodiert eine Nachricht ohne Parameter.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @return Der fertige Frame inkl. Längenpräfix.
+	 */
+	public static byte[] encode(byte status) {
+		return encode(status, (byte[]) null);
+	}
+	
+	/**
+	 * Kodiert eine Nachricht mit Parametern als String.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter als String.
+	 * @return Der fertige Frame inkl. Längenpräfix.
+	 */
+	public static byte[] encode(byte status, String params) {
+		int paramLaenge = utf8Laenge(params);
+		byte[] frame = rahmen(status, paramLaenge);
+		schreibeUtf8(params, frame, PARAM_OFFSET);
+		
+		return frame;
+	}
+	
+	/**
+	 * Kodiert eine Nachricht mit Parametern.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter oder null, falls es keine gibt.
+	 * @return Der fertige Frame inkl. Längenpräfix.
+	 */
+	public static byte[] encode(byte status, byte[] params) {
+		int paramLaenge = (params != null) ? params.length : 0;
+		byte[] frame = rahmen(status, paramLaenge);
+		if (paramLaenge > 0) System.arraycopy(params, 0, frame, PARAM_OFFSET, paramLaenge);
+		
+		return frame;
+	}
+	
+	/**
+	 * Erzeugt einen Frame mit Präfix und Statuscode, dessen Parameter noch leer sind.
+	 * 
+	 * Die Parameter können anschließend ab PARAM_OFFSET direkt in den Frame geschrieben
+	 * werden, ohne sie vorher in einen eigenen Puffer zu kodieren.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param paramLaenge Die Länge der Parameter in Byte.
+	 * @return Der Frame.
+	 */
+	public static byte[] rahmen(byte status, int paramLaenge) {
+		byte[] frame = new byte[PARAM_OFFSET + paramLaenge];
+		schreibeKopf(frame, 0, status, paramLaenge);
+		
+		return frame;
+	}
+	
+	/**
+	 * Liefert die Länge eines Frames ohne Präfix.
+	 * 
+	 * Empfangene Frames liegen in geliehenen Puffern (s. PufferPool), die länger als der Frame
+	 * sein können. Maßgeblich ist daher immer diese Länge, nicht die Länge des Arrays.
+	 * 
+	 * @param frame Der Frame inkl. Längenpräfix.
+	 * @return Die Länge von Statuscode und Parametern.
+	 */
+	public static int laenge(byte[] frame) {
+		return leseLaenge(frame, 0) & ~FLAGS;
+	}
+	
+	/**
+	 * Ermittelt die Länge eines Strings in UTF-8.
+	 * 
+	 * @param s Der String oder null.
+	 * @return Die Anzahl Bytes, 0 für null.
+	 */
+	public static int utf8Laenge(String s) {
+		if (s == null) return 0;
+		
+		int laenge = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				laenge += 1;
+			} else if (c < 0x800) {
+				laenge += 2;
+			} else if (Character.isHighSurrogate(c) && ((i + 1) < s.length()) && Character.isLowSurrogate(s.charAt(i + 1))) {
+				laenge += 4;
+				i++;
+			} else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE)) {
+				laenge += 1;
+			} else {
+				laenge += 3;
+			}
+		}
+		
+		return laenge;
+	}
+	
+	/**
+	 * Schreibt einen String als UTF-8 in einen Puffer, ohne Zwischen-Array.
+	 * 
+	 * Einzelne Surrogate werden wie bei String.getBytes() als '?' geschrieben.
+	 * 
+	 * @param s Der String oder null.
+	 * @param ziel Der Puffer, er muss mindestens utf8Laenge(s) Bytes Platz bieten.
+	 * @param offset Die Position im Puffer.
+	 * @return Die Anzahl geschriebener Bytes.
+	 */
+	public static int schreibeUtf8(String s, byte[] ziel, int offset) {
+		if (s == null) return 0;
+		
+		int pos = offset;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				ziel[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				ziel[pos++] = (byte) (0xC0 | (c >> 6));
+				ziel[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && ((i + 1) < s.length()) && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				ziel[pos++] = (byte) (0xF0 | (cp >> 18));
+				ziel[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				ziel[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				ziel[pos++] = (byte) (0x80 | (cp & 0x3F));
+			} else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE)) {
+				ziel[pos++] = (byte) '?';
+			} else {
+				ziel[pos++] = (byte) (0xE0 | (c >> 12));
+				ziel[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				ziel[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		
+		return pos - offset;
+	}
+	
+	/**
+	 * Schreibt Längenpräfix und Statuscode eines Frames in einen Puffer.
+	 * 
+	 * @param ziel Der Puffer.
+	 * @param offset Die Position, an der der Frame beginnt.
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param paramLaenge Die Länge der Parameter in Byte.
+	 */
+	public static void schreibeKopf(byte[] ziel, int offset, byte status, int paramLaenge) {
+		schreibeLaenge(ziel, offset, 1 + paramLaenge);
+		ziel[offset + PRAEFIX_LAENGE] = status;
+	}
+	
+	/**
+	 * Schreibt ein Längenpräfix in einen Puffer.
+	 * 
+	 * @param ziel Der Puffer.
+	 * @param offset Die Position, an die das Präfix geschrieben wird.
+	 * @param laenge Die Länge des Frames (ohne Präfix).
+	 */
+	static void schreibeLaenge(byte[] ziel, int offset, int laenge) {
+		ziel[offset]     = (byte) (laenge >>> 24);
+		ziel[offset + 1] = (byte) (laenge >>> 16);
+		ziel[offset + 2] = (byte) (laenge >>> 8);
+		ziel[offset + 3] = (byte) laenge;
+	}
+	
+	/**
+	 * Liest ein Längenpräfix aus einem Puffer.
+	 * 
+	 * @param quelle Der Puffer.
+	 * @param offset Die Position, an der das Präfix beginnt.
+	 * @return Die Länge des Frames (ohne Präfix).
+	 */
+	static int leseLaenge(byte[] quelle, int offset) {
+		return ((quelle[offset] & 0xFF) << 24)
+			| ((quelle[offset + 1] & 0xFF) << 16)
+			| ((quelle[offset + 2] & 0xFF) << 8)
+			| (quelle[offset + 3] & 0xFF);
+	}
+}
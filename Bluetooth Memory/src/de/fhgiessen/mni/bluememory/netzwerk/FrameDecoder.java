@@ -0,0 +1,236 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Setzt empfangene Bytes wieder zu Frames zusammen (s. FrameCodec).
+ * 
+ * Der Decoder hält einen wiederverwendbaren Empfangspuffer, der bei Bedarf wächst. Aus einem
+ * einzigen read() können so mehrere Frames gelesen werden, und ein Frame, der über mehrere
+ * read()-Aufrufe verteilt ankommt, wird im Puffer gesammelt, bis er vollständig ist.
+ * Komprimierte Frames (s. FrameCodec.KOMPRIMIERT) werden dabei entpackt, die Sequenznummer
+ * (s. FrameCodec.SEQUENZ) wird entfernt und ist über getSequenz() abrufbar.
+ * 
+ * Die gelieferten Frames liegen in Puffern aus dem PufferPool. Der Empfänger gibt sie nach der
+ * Verarbeitung mit PufferPool.zurueckgeben() zurück, so wird im laufenden Betrieb pro
+ * Nachricht kein neuer Speicher angelegt.
+ * 
+ * Ein Decoder gehört zu genau einer Verbindung und ist nicht thread-sicher.
+ */
+public class FrameDecoder {
+	/** Anfangsgröße des Empfangspuffers */
+	private static final int ANFANGS_GROESSE = 1024;
+	
+	/** Minimaler freier Platz im Puffer vor einem read() */
+	private static final int MIN_FREI = 256;
+	
+	/** Der Empfangspuffer */
+	private byte[] puffer;
+	
+	/** Position des ersten noch nicht verarbeiteten Bytes im Puffer */
+	private int anfang;
+	
+	/** Position hinter dem letzten empfangenen Byte im Puffer */
+	private int ende;
+	
+	/** Entpackt komprimierte Frames, wird erst beim ersten komprimierten Frame erzeugt */
+	private Inflater inflater;
+	
+	/** Die Sequenznummer des zuletzt entnommenen Frames oder -1, wenn er keine hatte */
+	private int sequenz;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Erzeugt einen leeren Empfangspuffer.
+	 */
+	public FrameDecoder() {
+		puffer = new byte[ANFANGS_GROESSE];
+		anfang = 0;
+		ende = 0;
+		sequenz = -1;
+	}
+	
+	/**
+	 * Liest einmal vom Stream direkt in den Empfangspuffer.
+	 * 
+	 * Die Methode blockiert, bis Daten vorliegen.
+	 * 
+	 * @param is Der Input-Stream der Verbindung.
+	 * @return Die Anzahl gelesener Bytes oder -1, wenn der Stream beendet wurde.
+	 * @throws IOException Wenn beim Lesen ein Fehler auftritt.
+	 */
+	public int lese(InputStream is) throws IOException {
+		platzSchaffen(MIN_FREI);
+		
+		int laenge = is.read(puffer, ende, puffer.length - ende);
+		if (laenge > 0) ende += laenge;
+		
+		return laenge;
+	}
+	
+	/**
+	 * Fügt empfangene Bytes an den Empfangspuffer an.
+	 * 
+	 * @param daten Die empfangenen Bytes.
+	 * @param offset Position des ersten Bytes in daten.
+	 * @param laenge Anzahl der Bytes.
+	 */
+	public void append(byte[] daten, int offset, int laenge) {
+		platzSchaffen(laenge);
+		System.arraycopy(daten, offset, puffer, ende, laenge);
+		ende += laenge;
+	}
+	
+	/**
+	 * Fügt die restlichen Bytes eines ByteBuffers an den Empfangspuffer an.
+	 * 
+	 * @param daten Der Puffer, gelesen wird von position() bis limit().
+	 */
+	public void append(ByteBuffer daten) {
+		int laenge = daten.remaining();
+		platzSchaffen(laenge);
+		daten.get(puffer, ende, laenge);
+		ende += laenge;
+	}
+	
+	/**
+	 * Prüft, ob der Empfangspuffer noch unverarbeitete Bytes enthält.
+	 * 
+	 * @return true, wenn kein angefangener Frame mehr im Puffer liegt.
+	 */
+	public boolean istLeer() {
+		return anfang == ende;
+	}
+	
+	/**
+	 * Entnimmt den nächsten vollständigen Frame aus dem Empfangspuffer.
+	 * 
+	 * Solange die Methode nicht null liefert, sollte sie erneut aufgerufen werden, da ein
+	 * read() mehrere Frames enthalten kann.
+	 * 
+	 * @return Der Frame inkl. Längenpräfix (s. FrameCodec.laenge()) in einem geliehenen Puffer
+	 *         oder null, wenn noch kein vollständiger Frame vorliegt.
+	 * @throws IOException Wenn das Längenpräfix ungültig ist (Stream nicht mehr synchron).
+	 */
+	public byte[] naechsterFrame() throws IOException {
+		// Längenpräfix vollständig?
+		if ((ende - anfang) < FrameCodec.PRAEFIX_LAENGE) return null;
+		
+		int laenge = FrameCodec.leseLaenge(puffer, anfang);
+		boolean komprimiert = (laenge & FrameCodec.KOMPRIMIERT) != 0;
+		boolean mitSequenz = (laenge & FrameCodec.SEQUENZ) != 0;
+		laenge &= ~FrameCodec.FLAGS;
+		int kopf = mitSequenz ? (1 + FrameCodec.SEQUENZ_HEADER) : 1;
+		if ((laenge < kopf) || (laenge > FrameCodec.MAX_LAENGE)) throw new IOException("Ungültige Frame-Länge: " + laenge);
+		
+		// Frame vollständig?
+		if ((ende - anfang - FrameCodec.PRAEFIX_LAENGE) < laenge) return null;
+		
+		// Sequenznummer abtrennen
+		byte status = puffer[anfang + FrameCodec.PRAEFIX_LAENGE];
+		sequenz = mitSequenz ? FrameCodec.leseLaenge(puffer, anfang + FrameCodec.PARAM_OFFSET) : -1;
+		int datenOffset = anfang + FrameCodec.PRAEFIX_LAENGE + kopf;
+		int datenLaenge = laenge - kopf;
+		
+		byte[] frame;
+		if (komprimiert) {
+			frame = entpacken(status, datenOffset, datenLaenge);
+		} else {
+			frame = PufferPool.leihen(FrameCodec.PARAM_OFFSET + datenLaenge);
+			FrameCodec.schreibeKopf(frame, 0, status, datenLaenge);
+			System.arraycopy(puffer, datenOffset, frame, FrameCodec.PARAM_OFFSET, datenLaenge);
+		}
+		anfang += FrameCodec.PRAEFIX_LAENGE + laenge;
+		
+		// Puffer leer, wieder von vorne beginnen
+		if (anfang == ende) {
+			anfang = 0;
+			ende = 0;
+		}
+		
+		return frame;
+	}
+	
+	/**
+	 * Liefert die Sequenznummer des zuletzt mit naechsterFrame() entnommenen Frames.
+	 * 
+	 * @return Die Sequenznummer oder -1, wenn der Frame keine hatte (s. FrameCodec.SEQUENZ).
+	 */
+	public int getSequenz() {
+		return sequenz;
+	}
+	
+	/**
+	 * Entpackt einen komprimierten Frame aus dem Empfangspuffer.
+	 * 
+	 * @param status Der Statuscode des Frames.
+	 * @param offset Position der ursprünglichen Parameterlänge im Puffer.
+	 * @param laenge Länge von Parameterlänge und komprimierten Daten.
+	 * @return Der entpackte Frame inkl. Längenpräfix in einem geliehenen Puffer.
+	 * @throws IOException Wenn die komprimierten Daten fehlerhaft sind.
+	 */
+	private byte[] entpacken(byte status, int offset, int laenge) throws IOException {
+		if (laenge < FrameCodec.KOMPRIMIERT_HEADER) throw new IOException("Komprimierter Frame zu kurz: " + laenge);
+		
+		int paramLaenge = FrameCodec.leseLaenge(puffer, offset);
+		if ((paramLaenge < 0) || (paramLaenge >= FrameCodec.MAX_LAENGE)) throw new IOException("Ungültige Parameterlänge: " + paramLaenge);
+		
+		byte[] frame = PufferPool.leihen(FrameCodec.PARAM_OFFSET + paramLaenge);
+		FrameCodec.schreibeKopf(frame, 0, status, paramLaenge);
+		
+		if (inflater == null) inflater = new Inflater();
+		inflater.reset();
+		inflater.setInput(puffer, offset + FrameCodec.KOMPRIMIERT_HEADER, laenge - FrameCodec.KOMPRIMIERT_HEADER);
+		try {
+			int gelesen = 0;
+			while ((gelesen < paramLaenge) && !inflater.finished()) {
+				int n = inflater.inflate(frame, FrameCodec.PARAM_OFFSET + gelesen, paramLaenge - gelesen);
+				if ((n == 0) && (inflater.needsInput() || inflater.needsDictionary())) break;
+				gelesen += n;
+			}
+			if ((gelesen != paramLaenge) || !inflater.finished()) {
+				PufferPool.zurueckgeben(frame);
+				throw new IOException("Komprimierter Frame unvollständig");
+			}
+		} catch (DataFormatException e) {
+			PufferPool.zurueckgeben(frame);
+			throw new IOException("Fehlerhafte Kompression: " + e.getMessage());
+		}
+		
+		return frame;
+	}
+	
+	/**
+	 * Stellt sicher, dass hinter dem Ende des Puffers mindestens die geforderte Anzahl Bytes frei ist.
+	 * 
+	 * Zuerst werden bereits verarbeitete Bytes verworfen, erst wenn das nicht reicht, wird der
+	 * Puffer vergrößert.
+	 * 
+	 * @param benoetigt Die Anzahl Bytes, die frei sein müssen.
+	 */
+	private void platzSchaffen(int benoetigt) {
+		if ((puffer.length - ende) >= benoetigt) return;
+		
+		// Verarbeitete Bytes verwerfen
+		int belegt = ende - anfang;
+		if (anfang > 0) {
+			System.arraycopy(puffer, anfang, puffer, 0, belegt);
+			anfang = 0;
+			ende = belegt;
+		}
+		if ((puffer.length - ende) >= benoetigt) return;
+		
+		// Puffer vergrößern
+		int groesse = puffer.length * 2;
+		while ((groesse - belegt) < benoetigt) groesse *= 2;
+		
+		byte[] neu = new byte[groesse];
+		System.arraycopy(puffer, 0, neu, 0, belegt);
+		puffer = neu;
+	}
+}
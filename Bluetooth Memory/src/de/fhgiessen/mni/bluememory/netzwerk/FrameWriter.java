@@ -0,0 +1,494 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Sendet die Frames einer Verbindung in einem eigenen Thread.
+ * 
+ * Jede Verbindung besitzt genau einen Writer. Mit senden() werden Frames direkt in einen
+ * Eingangspuffer kopiert bzw. kodiert, der Aufrufer blockiert dabei nie. Der Writer-Thread
+ * tauscht den Eingangspuffer gegen seinen Ausgangspuffer und schreibt alles, was bis dahin
+ * angefallen ist, mit einem einzigen write() und flush(). Beide Puffer werden immer wieder
+ * verwendet, im laufenden Betrieb wird beim Senden also kein Speicher angelegt. Ein langsamer
+ * Empfänger bremst so nur seine eigene Verbindung.
+ * 
+ * Ist die Kompression eingeschaltet (s. setKompression()), werden Parameter ab
+ * FrameCodec.KOMPRESSION_SCHWELLE Byte mit Deflate komprimiert, sofern der Frame dadurch kürzer
+ * wird. Die Kompressionsstufe richtet sich nach dem gemessenen Durchsatz der Verbindung: Je
+ * langsamer die Verbindung, desto stärker wird komprimiert.
+ * 
+ * Läuft der Eingangspuffer über oder schlägt das Schreiben fehl, wird die Verbindung
+ * geschlossen. Der lesende Thread bemerkt das und meldet den Verbindungsabbruch wie gewohnt.
+ * 
+ * Unterklassen können ohne eigenen Thread arbeiten (s. NioFrameWriter): Sie werden über
+ * bereit() benachrichtigt und holen die Daten mit abholen() selbst ab.
+ */
+public class FrameWriter implements Runnable {
+	/** Maximale Anzahl wartender Bytes pro Verbindung */
+	public static final int KAPAZITAET = 256 * 1024;
+	
+	/** Anfangsgröße der Sendepuffer */
+	private static final int PUFFER_GROESSE = 1024;
+	
+	/** Unterhalb dieses Durchsatzes (Byte/ms) wird maximal komprimiert */
+	private static final int DURCHSATZ_LANGSAM = 64;
+	
+	/** Oberhalb dieses Durchsatzes (Byte/ms) wird nur schnell komprimiert */
+	private static final int DURCHSATZ_SCHNELL = 1024;
+	
+	/** Schreibvorgänge unter dieser Größe gehen nicht in die Durchsatzmessung ein */
+	private static final int MESSUNG_MIN_LAENGE = 512;
+	
+	/** Die Verbindung, auf der gesendet wird */
+	private final Transport transport;
+	
+	/** true, sobald keine Frames mehr angenommen werden */
+	private boolean beendet;
+	
+	/** true, wenn der Writer ohne zu Senden aufhören soll */
+	private boolean abgebrochen;
+	
+	/** Puffer, in den senden() die Frames schreibt (geschützt durch this) */
+	private byte[] eingang;
+	
+	/** Anzahl belegter Bytes im Eingangspuffer (geschützt durch this) */
+	private int eingangLaenge;
+	
+	/** Puffer, den der Writer-Thread gerade schreibt */
+	private byte[] ausgang;
+	
+	/** Die zuletzt abgeholten Daten, ausgang oder komprimiert (s. abholen()) */
+	private byte[] ausgabe;
+	
+	/** Puffer für die komprimierten Frames, wird erst bei Bedarf erzeugt */
+	private byte[] komprimiert;
+	
+	/** true, wenn die Gegenstelle komprimierte Frames entpacken kann */
+	private volatile boolean kompression;
+	
+	/** Komprimiert die Parameter, wird erst bei Bedarf erzeugt */
+	private Deflater deflater;
+	
+	/** Geglätteter Durchsatz der Verbindung in Byte/ms, 0 solange nicht gemessen */
+	private float durchsatz;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Startet den Writer-Thread.
+	 * 
+	 * @param transport Die Verbindung, auf der gesendet wird.
+	 * @param name Der Name des Threads (zum Debuggen).
+	 */
+	public FrameWriter(Transport transport, String name) {
+		this(transport);
+		eingang = new byte[PUFFER_GROESSE];
+		ausgang = new byte[PUFFER_GROESSE];
+		
+		Thread thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Konstruktor für Unterklassen ohne eigenen Thread.
+	 * 
+	 * Die Puffer werden erst beim ersten Frame angelegt, eine Verbindung ohne Verkehr belegt
+	 * so keinen Sendepuffer.
+	 * 
+	 * @param transport Die Verbindung, auf der gesendet wird.
+	 */
+	protected FrameWriter(Transport transport) {
+		this.transport = transport;
+		eingang = new byte[0];
+		ausgang = new byte[0];
+		eingangLaenge = 0;
+		beendet = false;
+		abgebrochen = false;
+	}
+	
+	/**
+	 * Stellt einen fertigen Frame (inkl. Längenpräfix) zum Senden ein.
+	 * 
+	 * Der Frame wird kopiert und kann danach weiterverwendet werden.
+	 * 
+	 * @param frame Der Frame (s. FrameCodec).
+	 * @return false, wenn der Writer bereits beendet ist oder der Puffer voll war. Im
+	 *         zweiten Fall wird die Verbindung geschlossen.
+	 */
+	public boolean senden(byte[] frame) {
+		return senden(frame, 0, frame.length);
+	}
+	
+	/**
+	 * Stellt einen fertigen Frame (inkl. Längenpräfix) aus einem größeren Puffer zum Senden ein.
+	 * 
+	 * @param frame Der Puffer mit dem Frame (s. FrameCodec).
+	 * @param offset Die Position des Frames im Puffer.
+	 * @param laenge Die Länge des Frames inkl. Präfix.
+	 * @return false, wenn der Writer bereits beendet ist oder der Puffer voll war.
+	 */
+	public boolean senden(byte[] frame, int offset, int laenge) {
+		synchronized (this) {
+			if (platzReservieren(laenge)) {
+				System.arraycopy(frame, offset, eingang, eingangLaenge, laenge);
+				eingangLaenge += laenge;
+				bereit();
+				return true;
+			}
+		}
+		
+		return ueberlauf();
+	}
+	
+	/**
+	 * Stellt einen fertigen Frame mit einer Sequenznummer zum Senden ein.
+	 * 
+	 * Die Sequenznummer wird beim Kopieren hinter dem Statuscode eingefügt (s. FrameCodec.SEQUENZ),
+	 * so kann derselbe Frame mit verschiedenen Sequenznummern an mehrere Verbindungen gehen.
+	 * 
+	 * @param frame Der Puffer mit dem Frame (s. FrameCodec).
+	 * @param offset Die Position des Frames im Puffer.
+	 * @param laenge Die Länge des Frames inkl. Präfix.
+	 * @param sequenz Die Sequenznummer der Nachricht.
+	 * @return false, wenn der Writer bereits beendet ist oder der Puffer voll war.
+	 */
+	public boolean senden(byte[] frame, int offset, int laenge, int sequenz) {
+		synchronized (this) {
+			if (platzReservieren(laenge + FrameCodec.SEQUENZ_HEADER)) {
+				int paramLaenge = laenge - FrameCodec.PARAM_OFFSET;
+				int pos = eingangLaenge;
+				FrameCodec.schreibeLaenge(eingang, pos, (1 + FrameCodec.SEQUENZ_HEADER + paramLaenge) | FrameCodec.SEQUENZ);
+				eingang[pos + FrameCodec.PRAEFIX_LAENGE] = frame[offset + FrameCodec.PRAEFIX_LAENGE];
+				FrameCodec.schreibeLaenge(eingang, pos + FrameCodec.PARAM_OFFSET, sequenz);
+				System.arraycopy(frame, offset + FrameCodec.PARAM_OFFSET, eingang, pos + FrameCodec.PARAM_OFFSET + FrameCodec.SEQUENZ_HEADER, paramLaenge);
+				eingangLaenge += laenge + FrameCodec.SEQUENZ_HEADER;
+				bereit();
+				return true;
+			}
+		}
+		
+		return ueberlauf();
+	}
+	
+	/**
+	 * Kodiert eine Nachricht direkt in den Sendepuffer.
+	 * 
+	 * Entspricht senden(FrameCodec.encode(status, params)), ohne den Frame vorher als eigenes
+	 * Array anzulegen.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter als String oder null.
+	 * @return false, wenn der Writer bereits beendet ist oder der Puffer voll war.
+	 */
+	public boolean senden(byte status, String params) {
+		int paramLaenge = FrameCodec.utf8Laenge(params);
+		
+		synchronized (this) {
+			if (platzReservieren(FrameCodec.PARAM_OFFSET + paramLaenge)) {
+				FrameCodec.schreibeKopf(eingang, eingangLaenge, status, paramLaenge);
+				FrameCodec.schreibeUtf8(params, eingang, eingangLaenge + FrameCodec.PARAM_OFFSET);
+				eingangLaenge += FrameCodec.PARAM_OFFSET + paramLaenge;
+				bereit();
+				return true;
+			}
+		}
+		
+		return ueberlauf();
+	}
+	
+	/**
+	 * Schaltet die Kompression für diese Verbindung ein oder aus.
+	 * 
+	 * Darf nur eingeschaltet werden, wenn die Gegenstelle StatusCodes.KOMPRESSION gesendet hat.
+	 * 
+	 * @param kompression true, um große Parameter zu komprimieren.
+	 */
+	public void setKompression(boolean kompression) {
+		this.kompression = kompression;
+	}
+	
+	/**
+	 * Beendet den Writer.
+	 * 
+	 * Bereits eingestellte Frames werden noch gesendet, danach schließt der Writer-Thread die
+	 * Verbindung. Die Methode kehrt sofort zurück.
+	 */
+	public synchronized void schliessen() {
+		beendet = true;
+		bereit();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			OutputStream out = transport.getOutputStream();
+			
+			// Auf Daten warten und alles bis dahin Angefallene auf einmal schreiben
+			int laenge;
+			while ((laenge = abholen(true)) >= 0) {
+				long start = System.nanoTime();
+				out.write(ausgabe, 0, laenge);
+				out.flush();
+				messeDurchsatz(laenge, System.nanoTime() - start);
+			}
+		} catch (IOException e) {
+			// Verbindung ist abgebrochen
+		} catch (InterruptedException e) {
+			// Writer wurde abgebrochen
+		}
+		
+		beenden();
+	}
+	
+	/**
+	 * Meldet, dass neue Daten vorliegen oder der Writer beendet wurde.
+	 * 
+	 * Wird mit der Sperre auf this aufgerufen und darf nicht blockieren. Standardmäßig wird der
+	 * Writer-Thread geweckt.
+	 */
+	protected void bereit() {
+		notify();
+	}
+	
+	/**
+	 * Tauscht die Puffer und liefert alles, was seit dem letzten Aufruf eingestellt wurde.
+	 * 
+	 * Die Daten liegen danach in getAusgabe(), ggf. komprimiert. Sie bleiben gültig, bis
+	 * abholen() erneut aufgerufen wird.
+	 * 
+	 * @param warten true, um zu blockieren, bis Daten vorliegen oder der Writer beendet wurde.
+	 * @return Die Anzahl Bytes, 0 wenn (noch) nichts vorliegt, -1 wenn der Writer fertig ist.
+	 * @throws InterruptedException Wenn der Thread beim Warten unterbrochen wurde.
+	 */
+	protected int abholen(boolean warten) throws InterruptedException {
+		int laenge;
+		synchronized (this) {
+			if (warten) while ((eingangLaenge == 0) && !beendet) wait();
+			if (abgebrochen || ((eingangLaenge == 0) && beendet)) return -1;
+			if (eingangLaenge == 0) return 0;
+			
+			byte[] tausch = ausgang;
+			ausgang = eingang;
+			eingang = tausch;
+			laenge = eingangLaenge;
+			eingangLaenge = 0;
+		}
+		
+		ausgabe = ausgang;
+		if (kompression && komprimierbar(laenge)) {
+			laenge = komprimiereAlle(laenge);
+			ausgabe = komprimiert;
+		}
+		
+		return laenge;
+	}
+	
+	/**
+	 * Liefert die zuletzt mit abholen() geholten Daten.
+	 * 
+	 * @return Der Puffer, die Länge hat abholen() geliefert.
+	 */
+	protected byte[] getAusgabe() {
+		return ausgabe;
+	}
+	
+	/**
+	 * Gibt die Ressourcen des Writers frei und schließt die Verbindung.
+	 * 
+	 * Danach werden keine Frames mehr angenommen.
+	 */
+	protected void beenden() {
+		synchronized (this) {
+			beendet = true;
+			eingangLaenge = 0;
+		}
+		if (deflater != null) deflater.end();
+		
+		schliesseTransport();
+	}
+	
+	/**
+	 * Stellt sicher, dass im Eingangspuffer Platz für einen Frame ist.
+	 * 
+	 * Muss mit der Sperre auf this aufgerufen werden. Ein einzelner Frame wird in einen leeren
+	 * Puffer immer angenommen, auch wenn er größer als KAPAZITAET ist.
+	 * 
+	 * @param laenge Die Länge des Frames inkl. Präfix.
+	 * @return false, wenn der Writer beendet ist oder die Kapazität überschritten wäre. Im
+	 *         zweiten Fall wird der Writer abgebrochen.
+	 */
+	private boolean platzReservieren(int laenge) {
+		if (beendet) return false;
+		
+		int benoetigt = eingangLaenge + laenge;
+		if ((eingangLaenge > 0) && (benoetigt > KAPAZITAET)) {
+			// Empfänger kommt nicht hinterher, Verbindung aufgeben
+			beendet = true;
+			abgebrochen = true;
+			bereit();
+			return false;
+		}
+		
+		if (eingang.length < benoetigt) {
+			int groesse = Math.max(eingang.length * 2, PUFFER_GROESSE);
+			while (groesse < benoetigt) groesse *= 2;
+			
+			byte[] neu = new byte[groesse];
+			System.arraycopy(eingang, 0, neu, 0, eingangLaenge);
+			eingang = neu;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Behandelt einen abgelehnten Frame.
+	 * 
+	 * Wurde der Writer wegen Überlaufs abgebrochen, wird die Verbindung sofort geschlossen,
+	 * damit ein blockiertes write() im Writer-Thread zurückkehrt.
+	 * 
+	 * @return Immer false.
+	 */
+	private boolean ueberlauf() {
+		boolean schliessen;
+		synchronized (this) {
+			schliessen = abgebrochen;
+		}
+		if (schliessen) schliesseTransport();
+		
+		return false;
+	}
+	
+	/**
+	 * Schließt die Verbindung und ignoriert dabei Fehler.
+	 */
+	private void schliesseTransport() {
+		try {
+			transport.close();
+		} catch (IOException e) {
+			// Verbindung war bereits geschlossen
+		}
+	}
+	
+	/**
+	 * Prüft, ob im Ausgangspuffer ein Frame liegt, dessen Parameter komprimiert werden sollten.
+	 * 
+	 * @param laenge Die Anzahl belegter Bytes im Ausgangspuffer.
+	 * @return true, wenn mindestens ein Frame lang genug ist.
+	 */
+	private boolean komprimierbar(int laenge) {
+		int pos = 0;
+		while (pos < laenge) {
+			int frameLaenge = FrameCodec.leseLaenge(ausgang, pos) & ~FrameCodec.FLAGS;
+			if ((frameLaenge - 1) >= FrameCodec.KOMPRESSION_SCHWELLE) return true;
+			pos += FrameCodec.PRAEFIX_LAENGE + frameLaenge;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Überträgt alle Frames des Ausgangspuffers in den Kompressionspuffer, lange Frames dabei
+	 * komprimiert.
+	 * 
+	 * @param laenge Die Anzahl belegter Bytes im Ausgangspuffer.
+	 * @return Die Anzahl belegter Bytes im Kompressionspuffer.
+	 */
+	private int komprimiereAlle(int laenge) {
+		// Komprimierte Frames sind nie länger als die Originale
+		if ((komprimiert == null) || (komprimiert.length < laenge)) komprimiert = new byte[Math.max(laenge, ausgang.length)];
+		
+		int pos = 0;
+		int ziel = 0;
+		while (pos < laenge) {
+			int frameLaenge = FrameCodec.PRAEFIX_LAENGE + (FrameCodec.leseLaenge(ausgang, pos) & ~FrameCodec.FLAGS);
+			ziel += schreibeFrame(pos, frameLaenge, ziel);
+			pos += frameLaenge;
+		}
+		
+		return ziel;
+	}
+	
+	/**
+	 * Schreibt einen Frame in den Kompressionspuffer, bei Bedarf komprimiert.
+	 * 
+	 * @param pos Die Position des Frames im Ausgangspuffer.
+	 * @param frameLaenge Die Länge des Frames inkl. Präfix.
+	 * @param ziel Die Position im Kompressionspuffer.
+	 * @return Die Anzahl geschriebener Bytes.
+	 */
+	private int schreibeFrame(int pos, int frameLaenge, int ziel) {
+		// Statuscode und ggf. Sequenznummer bleiben unkomprimiert
+		boolean mitSequenz = (FrameCodec.leseLaenge(ausgang, pos) & FrameCodec.SEQUENZ) != 0;
+		int kopf = FrameCodec.PARAM_OFFSET + (mitSequenz ? FrameCodec.SEQUENZ_HEADER : 0);
+		int paramLaenge = frameLaenge - kopf;
+		if (paramLaenge >= FrameCodec.KOMPRESSION_SCHWELLE) {
+			int laenge = komprimiere(pos, kopf, paramLaenge, ziel);
+			if (laenge > 0) return laenge;
+		}
+		
+		System.arraycopy(ausgang, pos, komprimiert, ziel, frameLaenge);
+		return frameLaenge;
+	}
+	
+	/**
+	 * Komprimiert die Parameter eines Frames in den Kompressionspuffer.
+	 * 
+	 * @param pos Die Position des Frames im Ausgangspuffer.
+	 * @param kopf Die Länge von Präfix, Statuscode und ggf. Sequenznummer.
+	 * @param paramLaenge Die Länge der Parameter.
+	 * @param ziel Die Position im Kompressionspuffer.
+	 * @return Die Länge des komprimierten Frames oder -1, wenn er nicht kürzer als das Original wäre.
+	 */
+	private int komprimiere(int pos, int kopf, int paramLaenge, int ziel) {
+		if (deflater == null) deflater = new Deflater();
+		deflater.reset();
+		deflater.setLevel(kompressionsStufe());
+		deflater.setInput(ausgang, pos + kopf, paramLaenge);
+		deflater.finish();
+		
+		// Die komprimierten Daten müssen in den Platz des Originals passen
+		int start = ziel + kopf + FrameCodec.KOMPRIMIERT_HEADER;
+		int platz = paramLaenge - FrameCodec.KOMPRIMIERT_HEADER;
+		int laenge = 0;
+		while (!deflater.finished() && (laenge < platz)) laenge += deflater.deflate(komprimiert, start + laenge, platz - laenge);
+		if (!deflater.finished()) return -1;
+		
+		// Kopf übernehmen, nur die Länge ändert sich
+		int flags = (FrameCodec.leseLaenge(ausgang, pos) & FrameCodec.SEQUENZ) | FrameCodec.KOMPRIMIERT;
+		System.arraycopy(ausgang, pos, komprimiert, ziel, kopf);
+		FrameCodec.schreibeLaenge(komprimiert, ziel, (kopf - FrameCodec.PRAEFIX_LAENGE + FrameCodec.KOMPRIMIERT_HEADER + laenge) | flags);
+		FrameCodec.schreibeLaenge(komprimiert, ziel + kopf, paramLaenge);
+		
+		return kopf + FrameCodec.KOMPRIMIERT_HEADER + laenge;
+	}
+	
+	/**
+	 * Wählt die Kompressionsstufe anhand des gemessenen Durchsatzes.
+	 * 
+	 * @return Die Stufe für den Deflater.
+	 */
+	private int kompressionsStufe() {
+		if (durchsatz <= 0) return Deflater.DEFAULT_COMPRESSION;
+		if (durchsatz < DURCHSATZ_LANGSAM) return Deflater.BEST_COMPRESSION;
+		if (durchsatz > DURCHSATZ_SCHNELL) return Deflater.BEST_SPEED;
+		
+		return Deflater.DEFAULT_COMPRESSION;
+	}
+	
+	/**
+	 * Nimmt einen Schreibvorgang in den geglätteten Durchsatz auf.
+	 * 
+	 * @param laenge Die Anzahl geschriebener Bytes.
+	 * @param dauer Die Dauer von write() und flush() in ns.
+	 */
+	private void messeDurchsatz(int laenge, long dauer) {
+		if ((laenge < MESSUNG_MIN_LAENGE) || (dauer <= 0)) return;
+		
+		float aktuell = laenge * 1000000f / dauer;
+		durchsatz = (durchsatz <= 0) ? aktuell : (0.75f * durchsatz + 0.25f * aktuell);
+	}
+}
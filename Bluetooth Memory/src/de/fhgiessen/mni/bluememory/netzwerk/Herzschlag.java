@@ -0,0 +1,198 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+
+/**
+ * Überwacht eine Verbindung mit regelmäßigen PING-Nachrichten (s. StatusCodes.PING).
+ * 
+ * Im Abstand von GlobalValues.PING_INTERVALL wird über den Callback ein PING mit einem
+ * Zeitstempel gesendet. Aus dem Zeitstempel der Antwort (PONG) wird die Round-Trip-Time
+ * gemessen und wie bei TCP (RFC 6298) zu einer geglätteten RTT und einer Schwankung (Jitter)
+ * verrechnet.
+ * 
+ * Enthält das PONG auch die Uhrzeit des Servers (Protokoll.UHRZEIT), geht jede Messung außerdem
+ * in den Uhrabgleich ein (s. getUhr()). Bis dessen erstes Fenster voll ist, wird im kürzeren
+ * Abstand GlobalValues.UHR_ABGLEICH_INTERVALL gesendet, damit der Versatz schon in der Lobby
+ * bekannt ist.
+ * 
+ * Kommt länger als GlobalValues.VERBINDUNG_TIMEOUT keine Nachricht von der Gegenstelle an, gilt
+ * sie als tot und der Callback onZeitueberschreitung() wird aufgerufen. Ein langsamer Spieler
+ * antwortet weiterhin auf PINGs und wird so von einem abgestürzten unterschieden.
+ * 
+ * Die Prüfungen laufen im UI-Thread. Die Methoden dürfen aus beliebigen Threads, aber nie
+ * gleichzeitig aufgerufen werden (beim Server im Postfach des Raums), empfangen() aus jedem.
+ */
+public class Herzschlag implements Runnable {
+	/**
+	 * Callback für die Verbindung, die überwacht wird.
+	 */
+	public interface Callback {
+		/**
+		 * Sendet ein PING an die Gegenstelle.
+		 * 
+		 * @param zeitstempel Der Zeitstempel, den die Gegenstelle im PONG zurückschickt.
+		 */
+		public void sendePing(String zeitstempel);
+		
+		/**
+		 * Wird aufgerufen, wenn die Gegenstelle zu lange nichts gesendet hat.
+		 */
+		public void onZeitueberschreitung();
+	}
+	
+	/** Die überwachte Verbindung */
+	private final Callback callback;
+	
+	/** Führt die regelmäßigen Prüfungen im UI-Thread aus */
+	private final Handler handler;
+	
+	/** Zeitpunkt der letzten empfangenen Nachricht (SystemClock.uptimeMillis()) */
+	private volatile long letzterEmpfang;
+	
+	/** Geglättete Round-Trip-Time in ms, negativ solange nicht gemessen */
+	private volatile float rtt;
+	
+	/** Geglättete Schwankung der Round-Trip-Time in ms */
+	private volatile float jitter;
+	
+	/** true, solange die Verbindung überwacht wird */
+	private volatile boolean aktiv;
+	
+	/** Der Versatz zur Uhr der Gegenstelle */
+	private final Uhrabgleich uhr;
+	
+	/** true, wenn die Gegenstelle ihre Uhrzeit im PONG mitsendet */
+	private volatile boolean mitUhrzeit;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param callback Die überwachte Verbindung.
+	 */
+	public Herzschlag(Callback callback) {
+		this.callback = callback;
+		handler = new Handler(Looper.getMainLooper());
+		rtt = -1;
+		jitter = 0;
+		aktiv = false;
+		uhr = new Uhrabgleich();
+		mitUhrzeit = false;
+	}
+	
+	/**
+	 * Startet die Überwachung, das erste PING wird sofort gesendet.
+	 */
+	public void starten() {
+		if (aktiv) return;
+		aktiv = true;
+		
+		letzterEmpfang = SystemClock.uptimeMillis();
+		handler.post(this);
+	}
+	
+	/**
+	 * Legt fest, ob die Gegenstelle ihre Uhrzeit im PONG mitsendet (Protokoll.UHRZEIT).
+	 * 
+	 * @param mitUhrzeit true, wenn der Uhrabgleich laufen soll.
+	 */
+	public void setMitUhrzeit(boolean mitUhrzeit) {
+		this.mitUhrzeit = mitUhrzeit;
+	}
+	
+	/**
+	 * Liefert den Versatz zur Uhr der Gegenstelle.
+	 * 
+	 * @return Der Uhrabgleich, er bleibt ohne Protokoll.UHRZEIT leer.
+	 */
+	public Uhrabgleich getUhr() {
+		return uhr;
+	}
+	
+	/**
+	 * Beendet die Überwachung.
+	 */
+	public void stoppen() {
+		aktiv = false;
+		handler.removeCallbacks(this);
+	}
+	
+	/**
+	 * Meldet, dass eine Nachricht von der Gegenstelle angekommen ist.
+	 * 
+	 * Darf aus jedem Thread aufgerufen werden, damit der lesende Thread die Gegenstelle auch
+	 * dann als lebendig meldet, wenn der UI-Thread gerade beschäftigt ist.
+	 */
+	public void empfangen() {
+		letzterEmpfang = SystemClock.uptimeMillis();
+	}
+	
+	/**
+	 * Verarbeitet die Antwort auf ein PING.
+	 * 
+	 * @param zeitstempel Der Zeitstempel aus dem PONG, ggf. gefolgt von ";" und der Uhrzeit der Gegenstelle.
+	 */
+	public void onPong(String zeitstempel) {
+		long jetzt = SystemClock.uptimeMillis();
+		long gesendet;
+		long server = -1;
+		try {
+			int trenner = zeitstempel.indexOf(';');
+			if (trenner >= 0) {
+				server = Long.parseLong(zeitstempel.substring(trenner + 1));
+				zeitstempel = zeitstempel.substring(0, trenner);
+			}
+			gesendet = Long.parseLong(zeitstempel);
+		} catch (NumberFormatException e) {
+			return;
+		}
+		
+		float messung = jetzt - gesendet;
+		if (messung < 0) return;
+		if (server >= 0) uhr.messung(gesendet, server, jetzt);
+		
+		// RTTVAR = 3/4 RTTVAR + 1/4 |SRTT - R|, SRTT = 7/8 SRTT + 1/8 R
+		if (rtt < 0) {
+			rtt = messung;
+			jitter = messung / 2;
+		} else {
+			jitter = 0.75f * jitter + 0.25f * Math.abs(rtt - messung);
+			rtt = 0.875f * rtt + 0.125f * messung;
+		}
+	}
+	
+	/**
+	 * Liefert die geglättete Round-Trip-Time.
+	 * 
+	 * @return Die RTT in ms oder -1, solange noch keine Antwort eingegangen ist.
+	 */
+	public int getRtt() {
+		return (rtt < 0) ? -1 : Math.round(rtt);
+	}
+	
+	/**
+	 * Liefert die geglättete Schwankung der Round-Trip-Time.
+	 * 
+	 * @return Der Jitter in ms oder -1, solange noch keine Antwort eingegangen ist.
+	 */
+	public int getJitter() {
+		return (rtt < 0) ? -1 : Math.round(jitter);
+	}
+	
+	@Override
+	public void run() {
+		if (!aktiv) return;
+		
+		long jetzt = SystemClock.uptimeMillis();
+		if ((jetzt - letzterEmpfang) > GlobalValues.VERBINDUNG_TIMEOUT) {
+			aktiv = false;
+			callback.onZeitueberschreitung();
+			return;
+		}
+		
+		callback.sendePing(Long.toString(jetzt));
+		handler.postDelayed(this, (mitUhrzeit && !uhr.istEingeschwungen()) ? GlobalValues.UHR_ABGLEICH_INTERVALL : GlobalValues.PING_INTERVALL);
+	}
+}
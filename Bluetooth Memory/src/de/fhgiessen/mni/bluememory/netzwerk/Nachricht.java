@@ -0,0 +1,90 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+/**
+ * Eine unveränderliche Nachricht des Spielprotokolls.
+ * 
+ * Die Nachricht wird beim Erzeugen genau einmal als Frame kodiert. Wird sie an mehrere
+ * Spieler gesendet, teilen sich alle Verbindungen denselben Frame (s. ServerService.broadcast()).
+ */
+public final class Nachricht {
+	/** Der Status-Code (s. StatusCodes) */
+	private final byte status;
+	
+	/** Die Parameter oder null, falls es keine gibt */
+	private final String params;
+	
+	/** Der Platz des Spielers vor den Parametern (s. Protokoll.PLATZ_NUMMERN) oder -1 */
+	private final int platz;
+	
+	/** Der fertig kodierte Frame inkl. Längenpräfix */
+	private final byte[] frame;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter oder null, falls es keine gibt.
+	 */
+	public Nachricht(byte status, String params) {
+		this.status = status;
+		this.params = params;
+		platz = -1;
+		frame = FrameCodec.encode(status, params);
+	}
+	
+	/**
+	 * Konstruktor für Nachrichten, die einen Spieler bei seinem Platz nennen.
+	 * 
+	 * Der Platz steht als einzelnes Byte vor den Parametern (s. Protokoll.PLATZ_NUMMERN).
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param platz Der Platz des Spielers (0 - 255).
+	 * @param params Die Parameter hinter dem Platz oder null, falls es keine gibt.
+	 */
+	public Nachricht(byte status, int platz, String params) {
+		this.status = status;
+		this.params = params;
+		this.platz = platz;
+		frame = FrameCodec.rahmen(status, 1 + FrameCodec.utf8Laenge(params));
+		frame[FrameCodec.PARAM_OFFSET] = (byte) platz;
+		FrameCodec.schreibeUtf8(params, frame, FrameCodec.PARAM_OFFSET + 1);
+	}
+	
+	/**
+	 * Liefert den Status-Code.
+	 * 
+	 * @return Der Status-Code (s. StatusCodes)
+	 */
+	public byte getStatus() {
+		return status;
+	}
+	
+	/**
+	 * Liefert die Parameter.
+	 * 
+	 * @return Die Parameter oder null, falls es keine gibt.
+	 */
+	public String getParams() {
+		return params;
+	}
+	
+	/**
+	 * Liefert den Platz des Spielers, den die Nachricht nennt.
+	 * 
+	 * @return Der Platz oder -1, wenn die Nachricht keinen enthält.
+	 */
+	public int getPlatz() {
+		return platz;
+	}
+	
+	/**
+	 * Liefert den kodierten Frame.
+	 * 
+	 * Der Frame wird von allen Empfängern geteilt und darf nicht verändert werden.
+	 * 
+	 * @return Der Frame inkl. Längenpräfix (s. FrameCodec).
+	 */
+	public byte[] getFrame() {
+		return frame;
+	}
+}
@@ -0,0 +1,95 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * FrameWriter für eine NioTransport-Verbindung, ohne eigenen Thread.
+ * 
+ * Gesammelt wird wie beim FrameWriter, geschrieben aber in der NioSchleife der Verbindung: Jeder
+ * neue Frame meldet die Verbindung dort zum Schreiben an (s. NioTransport.schreibenAnfordern()).
+ * Passt nicht alles in den Socket, bleibt der Rest hier liegen, bis der Kanal wieder schreibbar
+ * ist. Erst danach werden die Puffer erneut getauscht.
+ */
+public class NioFrameWriter extends FrameWriter {
+	/** Ergebnis von schreiben(): Alles geschrieben */
+	public static final int FERTIG = 0;
+	
+	/** Ergebnis von schreiben(): Der Socket ist voll, es liegt noch ein Rest vor */
+	public static final int VOLL = 1;
+	
+	/** Ergebnis von schreiben(): Der Writer ist beendet, die Verbindung kann geschlossen werden */
+	public static final int ENDE = 2;
+	
+	/** Die Verbindung, in deren Schleife geschrieben wird */
+	private final NioTransport transport;
+	
+	/** Die noch nicht geschriebenen Daten (s. FrameWriter.getAusgabe()) oder null */
+	private byte[] rest;
+	
+	/** Position des ersten noch nicht geschriebenen Bytes in rest */
+	private int restOffset;
+	
+	/** Anzahl der noch nicht geschriebenen Bytes in rest */
+	private int restLaenge;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param transport Die Verbindung, auf der gesendet wird.
+	 */
+	public NioFrameWriter(NioTransport transport) {
+		super(transport);
+		this.transport = transport;
+	}
+	
+	@Override
+	protected void bereit() {
+		transport.schreibenAnfordern();
+	}
+	
+	/**
+	 * Schreibt so viel wie möglich, ohne zu blockieren.
+	 * 
+	 * Darf nur in der NioSchleife der Verbindung aufgerufen werden.
+	 * 
+	 * @param kanal Der Kanal der Verbindung (nicht-blockierend).
+	 * @param puffer Der direkte Schreibpuffer der Schleife.
+	 * @return FERTIG, VOLL oder ENDE.
+	 * @throws IOException Wenn beim Schreiben ein Fehler auftritt.
+	 */
+	int schreiben(SocketChannel kanal, ByteBuffer puffer) throws IOException {
+		while (true) {
+			// Erst den Rest, dann die nächsten Frames
+			if (restLaenge == 0) {
+				int laenge;
+				try {
+					laenge = abholen(false);
+				} catch (InterruptedException e) {
+					laenge = -1;
+				}
+				if (laenge < 0) return ENDE;
+				if (laenge == 0) {
+					rest = null;
+					return FERTIG;
+				}
+				
+				rest = getAusgabe();
+				restOffset = 0;
+				restLaenge = laenge;
+			}
+			
+			// Über den direkten Puffer schreiben, das spart dem Kanal die eigene Kopie
+			int stueck = Math.min(restLaenge, puffer.capacity());
+			puffer.clear();
+			puffer.put(rest, restOffset, stueck);
+			puffer.flip();
+			int geschrieben = kanal.write(puffer);
+			restOffset += geschrieben;
+			restLaenge -= geschrieben;
+			
+			if (geschrieben < stueck) return VOLL;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import android.util.Log;
+
+/**
+ * Eine Ereignisschleife, die viele NioTransport-Verbindungen in einem Thread bedient.
+ * 
+ * Die Schleife wartet mit einem Selector auf alle ihre Kanäle gleichzeitig und liest bzw.
+ * schreibt nur, wenn ein Kanal bereit ist. Lese- und Schreibpuffer sind direkte ByteBuffer und
+ * gehören der Schleife, nicht der Verbindung: Eine Verbindung ohne Verkehr belegt so keinen
+ * eigenen Puffer.
+ * 
+ * Andere Threads greifen nie direkt auf den Selector zu, sondern stellen Aufgaben ein (s.
+ * ausfuehren()), die die Schleife vor dem nächsten select() abarbeitet.
+ * 
+ * Es gibt eine feste Anzahl Schleifen pro Prozess (s. getSchleifen()), sie laufen als
+ * Daemon-Threads und kosten ohne Verbindungen nichts.
+ */
+public class NioSchleife implements Runnable {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.NioSchleife";
+	
+	/** Größe der direkten Lese- und Schreibpuffer */
+	private static final int PUFFER_GROESSE = 64 * 1024;
+	
+	/** Die Schleifen des Prozesses, werden beim ersten Aufruf von getSchleifen() erzeugt */
+	private static NioSchleife[] schleifen;
+	
+	/** Der Selector über alle Kanäle der Schleife */
+	private final Selector selector;
+	
+	/** Aufgaben anderer Threads, die in der Schleife ausgeführt werden */
+	private final ConcurrentLinkedQueue<Runnable> aufgaben = new ConcurrentLinkedQueue<Runnable>();
+	
+	/** Der gemeinsame Lesepuffer aller Verbindungen der Schleife */
+	private final ByteBuffer lesePuffer = ByteBuffer.allocateDirect(PUFFER_GROESSE);
+	
+	/** Der gemeinsame Schreibpuffer aller Verbindungen der Schleife */
+	private final ByteBuffer schreibPuffer = ByteBuffer.allocateDirect(PUFFER_GROESSE);
+	
+	/** Der Thread der Schleife */
+	private final Thread thread;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Öffnet den Selector und startet den Thread der Schleife.
+	 * 
+	 * @param name Der Name des Threads (zum Debuggen).
+	 * @throws IOException Wenn der Selector nicht geöffnet werden kann.
+	 */
+	private NioSchleife(String name) throws IOException {
+		selector = Selector.open();
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Liefert die Schleifen des Prozesses.
+	 * 
+	 * Beim ersten Aufruf wird eine Schleife pro Prozessorkern gestartet.
+	 * 
+	 * @return Die Schleifen.
+	 * @throws IOException Wenn eine Schleife nicht gestartet werden kann.
+	 */
+	public static synchronized NioSchleife[] getSchleifen() throws IOException {
+		if (schleifen == null) {
+			NioSchleife[] neu = new NioSchleife[Math.max(1, Runtime.getRuntime().availableProcessors())];
+			for (int i = 0; i < neu.length; i++) neu[i] = new NioSchleife(TAG + "." + i);
+			schleifen = neu;
+		}
+		
+		return schleifen;
+	}
+	
+	/**
+	 * Führt eine Aufgabe im Thread der Schleife aus.
+	 * 
+	 * Kann aus jedem Thread aufgerufen werden und blockiert nicht.
+	 * 
+	 * @param aufgabe Die Aufgabe.
+	 */
+	public void ausfuehren(Runnable aufgabe) {
+		aufgaben.add(aufgabe);
+		selector.wakeup();
+	}
+	
+	/**
+	 * Prüft, ob der aktuelle Thread der Thread dieser Schleife ist.
+	 * 
+	 * @return true, wenn der Aufrufer in der Schleife läuft.
+	 */
+	public boolean imThread() {
+		return Thread.currentThread() == thread;
+	}
+	
+	/**
+	 * Liefert den Selector der Schleife. Darf nur im Thread der Schleife benutzt werden.
+	 * 
+	 * @return Der Selector.
+	 */
+	Selector getSelector() {
+		return selector;
+	}
+	
+	/**
+	 * Liefert den Schreibpuffer der Schleife. Darf nur im Thread der Schleife benutzt werden.
+	 * 
+	 * @return Der direkte Schreibpuffer.
+	 */
+	ByteBuffer getSchreibPuffer() {
+		return schreibPuffer;
+	}
+	
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				Log.e(TAG, "Fehler beim Warten auf die Kanäle: " + e.getMessage());
+			}
+			
+			// Aufgaben der anderen Threads
+			Runnable aufgabe;
+			while ((aufgabe = aufgaben.poll()) != null) aufgabe.run();
+			
+			// Bereite Kanäle bedienen
+			Iterator<SelectionKey> bereit = selector.selectedKeys().iterator();
+			while (bereit.hasNext()) {
+				SelectionKey key = bereit.next();
+				bereit.remove();
+				
+				// Geschlossene und umgezogene Verbindungen melden sich selbst
+				NioTransport transport = (NioTransport) key.attachment();
+				if (key.isValid() && key.isReadable()) transport.lesen(lesePuffer);
+				if (key.isValid() && key.isWritable()) transport.schreiben(schreibPuffer);
+			}
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.util.Log;
+
+/**
+ * Transport über einen nicht-blockierenden TCP-Kanal, bedient von einer NioSchleife.
+ * 
+ * Anders als die übrigen Transporte liefert dieser keine Streams: Gelesen und geschrieben wird
+ * ausschließlich in der Schleife. Empfangene Frames gehen an einen Empfaenger (s. starten()),
+ * gesendet wird über den NioFrameWriter der Verbindung (s. getWriter()).
+ * 
+ * Vollständige Frames ohne Flags werden direkt aus dem Lesepuffer der Schleife in Puffer aus dem
+ * PufferPool kopiert. Nur angefangene, komprimierte oder nummerierte Frames wandern in einen
+ * FrameDecoder, der wieder freigegeben wird, sobald er leer ist. Eine Verbindung ohne Verkehr
+ * hält so nur den Kanal, den Writer ohne Puffer und einige Felder.
+ * 
+ * Mit zuordnen() zieht die Verbindung in eine bestimmte Schleife um, so liegen z.B. alle
+ * Spieler eines Raums in derselben Schleife.
+ */
+public class NioTransport implements Transport {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.NioTransport";
+	
+	/**
+	 * Empfängt die Ereignisse einer Verbindung. Alle Methoden werden im Thread der NioSchleife
+	 * aufgerufen und dürfen nicht blockieren.
+	 */
+	public interface Empfaenger {
+		/**
+		 * Es sind Bytes angekommen (z.B. für den Herzschlag).
+		 */
+		public void onDaten();
+		
+		/**
+		 * Ein vollständiger Frame ist angekommen.
+		 * 
+		 * @param frame Der Frame inkl. Längenpräfix in einem Puffer aus dem PufferPool.
+		 */
+		public void onFrame(byte[] frame);
+		
+		/**
+		 * Die Verbindung ist beendet, egal ob abgebrochen oder geschlossen.
+		 */
+		public void onEnde();
+	}
+	
+	/** Der Kanal der Verbindung */
+	private final SocketChannel kanal;
+	
+	/** Alle Schleifen, unter denen die Verbindung wählen kann */
+	private final NioSchleife[] schleifen;
+	
+	/** Die Schleife, die die Verbindung gerade bedient */
+	private volatile NioSchleife schleife;
+	
+	/** Der Schlüssel der Verbindung im Selector der Schleife, null solange nicht angemeldet */
+	private SelectionKey key;
+	
+	/** Der Writer der Verbindung */
+	private final NioFrameWriter writer;
+	
+	/** Der Empfänger der Ereignisse, null bis starten() */
+	private Empfaenger empfaenger;
+	
+	/** Setzt angefangene Frames zusammen, null solange keiner vorliegt */
+	private FrameDecoder decoder;
+	
+	/** true, wenn das Schreiben bereits angefordert und noch nicht erledigt ist */
+	private final AtomicBoolean schreibenAngefordert = new AtomicBoolean();
+	
+	/** true, wenn onEnde() bereits gemeldet wurde */
+	private boolean beendet;
+	
+	/** Schreibt in der aktuellen Schleife, wird bei jedem Frame wiederverwendet */
+	private final Runnable schreibAufgabe = new Runnable() {
+		@Override
+		public void run() {
+			// Ist die Verbindung inzwischen umgezogen, in der neuen Schleife schreiben
+			NioSchleife aktuell = schleife;
+			if (!aktuell.imThread()) {
+				aktuell.ausfuehren(this);
+				return;
+			}
+			schreiben(aktuell.getSchreibPuffer());
+		}
+	};
+	
+	/** Meldet das Ende in der aktuellen Schleife */
+	private final Runnable endeAufgabe = new Runnable() {
+		@Override
+		public void run() {
+			NioSchleife aktuell = schleife;
+			if (!aktuell.imThread()) {
+				aktuell.ausfuehren(this);
+				return;
+			}
+			ende();
+		}
+	};
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Schaltet den Kanal auf nicht-blockierend und den Nagle-Algorithmus ab (s. TcpTransport).
+	 * 
+	 * @param kanal Der verbundene Kanal.
+	 * @param schleifen Die Schleifen, unter denen die Verbindung wählen kann.
+	 * @param schleife Die Schleife, in der die Verbindung zuerst bedient wird.
+	 * @throws IOException Wenn der Kanal nicht konfiguriert werden kann.
+	 */
+	public NioTransport(SocketChannel kanal, NioSchleife[] schleifen, int schleife) throws IOException {
+		this.kanal = kanal;
+		this.schleifen = schleifen;
+		this.schleife = schleifen[schleife % schleifen.length];
+		kanal.configureBlocking(false);
+		kanal.socket().setTcpNoDelay(true);
+		writer = new NioFrameWriter(this);
+	}
+	
+	/**
+	 * Beginnt mit dem Lesen in der Schleife.
+	 * 
+	 * @param empfaenger Der Empfänger der Frames.
+	 */
+	public void starten(Empfaenger empfaenger) {
+		this.empfaenger = empfaenger;
+		final NioSchleife ziel = schleife;
+		ziel.ausfuehren(new Runnable() {
+			@Override
+			public void run() {
+				anmelden(ziel);
+			}
+		});
+	}
+	
+	/**
+	 * Liefert den Writer der Verbindung.
+	 * 
+	 * @return Der Writer.
+	 */
+	public FrameWriter getWriter() {
+		return writer;
+	}
+	
+	/**
+	 * Lässt die Verbindung künftig von der Schleife bedienen, die zum Schlüssel gehört.
+	 * 
+	 * Verbindungen mit demselben Schlüssel (z.B. der Nummer ihres Raums) landen so in derselben
+	 * Schleife.
+	 * 
+	 * @param schluessel Ein nicht-negativer Schlüssel.
+	 */
+	public void zuordnen(int schluessel) {
+		final NioSchleife ziel = schleifen[schluessel % schleifen.length];
+		final NioSchleife alt = schleife;
+		if (ziel == alt) return;
+		
+		// In der alten Schleife abmelden, dann in der neuen anmelden
+		alt.ausfuehren(new Runnable() {
+			@Override
+			public void run() {
+				if (key != null) key.cancel();
+				key = null;
+				schleife = ziel;
+				ziel.ausfuehren(new Runnable() {
+					@Override
+					public void run() {
+						anmelden(ziel);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Fordert das Schreiben in der Schleife an. Blockiert nicht (s. NioFrameWriter.bereit()).
+	 */
+	void schreibenAnfordern() {
+		if (schreibenAngefordert.compareAndSet(false, true)) schleife.ausfuehren(schreibAufgabe);
+	}
+	
+	/**
+	 * Meldet den Kanal beim Selector einer Schleife an. Läuft im Thread dieser Schleife.
+	 * 
+	 * @param ziel Die Schleife.
+	 */
+	private void anmelden(NioSchleife ziel) {
+		// Inzwischen umgezogen oder beendet?
+		if ((ziel != schleife) || beendet) return;
+		
+		try {
+			key = kanal.register(ziel.getSelector(), SelectionKey.OP_READ, this);
+		} catch (ClosedChannelException e) {
+			ende();
+			return;
+		}
+		
+		// Was während des Umzugs liegen geblieben ist, jetzt schreiben
+		schreibenAngefordert.set(true);
+		schreiben(ziel.getSchreibPuffer());
+	}
+	
+	/**
+	 * Liest, was der Kanal hergibt, und leitet alle vollständigen Frames weiter. Läuft im
+	 * Thread der Schleife.
+	 * 
+	 * @param puffer Der direkte Lesepuffer der Schleife.
+	 */
+	void lesen(ByteBuffer puffer) {
+		try {
+			puffer.clear();
+			int laenge = kanal.read(puffer);
+			if (laenge < 0) throw new IOException("Kanal beendet");
+			if (laenge == 0) return;
+			puffer.flip();
+			empfaenger.onDaten();
+			
+			// Angefangener Frame vom letzten Mal: alles an den Decoder
+			if (decoder == null) zerlegen(puffer);
+			if (puffer.hasRemaining()) {
+				if (decoder == null) decoder = new FrameDecoder();
+				decoder.append(puffer);
+				
+				byte[] frame;
+				while ((frame = decoder.naechsterFrame()) != null) empfaenger.onFrame(frame);
+				if (decoder.istLeer()) decoder = null;
+			}
+		} catch (IOException e) {
+			Log.d(TAG, "Verbindungsabbruch: " + e.getMessage());
+			ende();
+		}
+	}
+	
+	/**
+	 * Entnimmt alle vollständigen Frames ohne Flags direkt aus dem Lesepuffer.
+	 * 
+	 * Hört beim ersten angefangenen oder markierten Frame auf, der Rest bleibt im Puffer.
+	 * 
+	 * @param puffer Der Lesepuffer, zwischen position() und limit() liegen die Daten.
+	 * @throws IOException Wenn das Längenpräfix ungültig ist.
+	 */
+	private void zerlegen(ByteBuffer puffer) throws IOException {
+		while (puffer.remaining() >= FrameCodec.PRAEFIX_LAENGE) {
+			int laenge = puffer.getInt(puffer.position());
+			if ((laenge & FrameCodec.FLAGS) != 0) return;
+			if ((laenge < 1) || (laenge > FrameCodec.MAX_LAENGE)) throw new IOException("Ungültige Frame-Länge: " + laenge);
+			if ((puffer.remaining() - FrameCodec.PRAEFIX_LAENGE) < laenge) return;
+			
+			byte[] frame = PufferPool.leihen(FrameCodec.PRAEFIX_LAENGE + laenge);
+			puffer.get(frame, 0, FrameCodec.PRAEFIX_LAENGE + laenge);
+			empfaenger.onFrame(frame);
+		}
+	}
+	
+	/**
+	 * Schreibt, was der Writer gesammelt hat. Läuft im Thread der Schleife.
+	 * 
+	 * @param puffer Der direkte Schreibpuffer der Schleife.
+	 */
+	void schreiben(ByteBuffer puffer) {
+		if ((key == null) || !key.isValid()) return;
+		
+		// Ab hier eingehende Frames fordern erneut an
+		schreibenAngefordert.set(false);
+		try {
+			switch (writer.schreiben(kanal, puffer)) {
+				case NioFrameWriter.FERTIG:
+					key.interestOps(SelectionKey.OP_READ);
+				break;
+				
+				case NioFrameWriter.VOLL:
+					// Weiter, sobald der Kanal wieder schreibbar ist
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				break;
+				
+				case NioFrameWriter.ENDE:
+					// Alles gesendet, jetzt erst schließen
+					ende();
+				break;
+				default:
+			}
+		} catch (IOException e) {
+			Log.d(TAG, "Fehler beim Schreiben: " + e.getMessage());
+			ende();
+		}
+	}
+	
+	/**
+	 * Beendet die Verbindung in der Schleife und meldet das einmalig dem Empfänger.
+	 */
+	private void ende() {
+		if (beendet) return;
+		beendet = true;
+		
+		if (key != null) key.cancel();
+		key = null;
+		decoder = null;
+		try {
+			kanal.close();
+		} catch (IOException e) {
+			Log.e(TAG, "Fehler beim Schließen des Kanals");
+		}
+		writer.beenden();
+		if (empfaenger != null) empfaenger.onEnde();
+	}
+	
+	@Override
+	public InputStream getInputStream() throws IOException {
+		throw new IOException("NioTransport liest nur in der NioSchleife");
+	}
+	
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		throw new IOException("NioTransport schreibt nur in der NioSchleife");
+	}
+	
+	@Override
+	public void close() throws IOException {
+		kanal.close();
+		schleife.ausfuehren(endeAufgabe);
+	}
+}
@@ -0,0 +1,66 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Nimmt Verbindungen über TCP entgegen und verteilt sie auf die NioSchleifen.
+ * 
+ * Gegenüber dem TcpTransportServer braucht eine Verbindung hier keine eigenen Threads zum Lesen
+ * und Schreiben, alle Verbindungen teilen sich die festen Schleifen des Prozesses. Das lohnt
+ * sich für einen Server mit vielen Räumen (s. ServerService, "headless").
+ * 
+ * Angenommen wird weiterhin blockierend in accept(). Neue Verbindungen werden reihum auf die
+ * Schleifen verteilt, bis sie einem Raum zugeordnet werden (s. NioTransport.zuordnen()).
+ */
+public class NioTransportServer implements TransportServer {
+	/** Der Kanal, auf dem Verbindungen angenommen werden */
+	private ServerSocketChannel serverKanal;
+	
+	/** Die Schleifen, auf die die Verbindungen verteilt werden */
+	private NioSchleife[] schleifen;
+	
+	/** Die Schleife für die nächste Verbindung */
+	private int naechste;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Öffnet den Server-Kanal auf allen Netzwerk-Schnittstellen und startet ggf. die Schleifen.
+	 * 
+	 * @param port Der Port, auf dem gewartet wird.
+	 * @throws IOException Wenn der Port nicht geöffnet werden kann.
+	 */
+	public NioTransportServer(int port) throws IOException {
+		schleifen = NioSchleife.getSchleifen();
+		serverKanal = ServerSocketChannel.open();
+		serverKanal.socket().setReuseAddress(true);
+		serverKanal.socket().bind(new InetSocketAddress(port));
+	}
+	
+	/**
+	 * Liefert den Port, auf dem der Server wartet.
+	 * 
+	 * @return Der Port (interessant, wenn mit Port 0 ein freier Port gewählt wurde).
+	 */
+	public int getPort() {
+		return serverKanal.socket().getLocalPort();
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		NioTransport transport = new NioTransport(serverKanal.accept(), schleifen, naechste);
+		synchronized (this) {
+			naechste = (naechste + 1) % schleifen.length;
+		}
+		
+		return transport;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		// Die Schleifen laufen weiter, sie bedienen noch die angenommenen Verbindungen
+		serverKanal.close();
+	}
+}
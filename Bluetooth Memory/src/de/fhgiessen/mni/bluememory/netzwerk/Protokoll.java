@@ -0,0 +1,197 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+import de.fhgiessen.mni.bluememory.datentypen.StatusCodes;
+
+/**
+ * Version und Fähigkeiten einer Gegenstelle, wie sie bei HELO und HELLO ausgetauscht werden.
+ * 
+ * Der Client sendet mit HELO seine Protokollversion und die Fähigkeiten, die er unterstützt.
+ * Der Server antwortet mit HELLO und den Fähigkeiten, die beide Seiten beherrschen. Nur diese
+ * werden auf der Verbindung genutzt, so können in einem Spiel alte und neue Geräte gemischt
+ * werden. Die Parameter haben dabei die Form:
+ * 
+ * <pre>
+ * Version;Fähigkeiten;Raum;Wert
+ * </pre>
+ * 
+ * Wert ist bei HELO der Spielername, bei HELLO das Token der Sitzung. Raum ist die Nummer des
+ * Spiels, das der Client betreten möchte (s. ServerService.getRaum()), er fehlt bei Version 2.
+ * Fehlen Version und Fähigkeiten, stammt die Nachricht von einer Gegenstelle der Version 1 ohne
+ * Fähigkeiten. Sie bekommt das Spielfeld als JSON und alle anderen Nachrichten wie bisher.
+ * Gegenstellen ohne Raum landen im Raum ServerService.LOKALER_RAUM.
+ * 
+ * Mit PLATZ_NUMMERN nennen die Nachrichten, die einen Spieler betreffen (s. mitPlatz()), ihn
+ * nicht mehr beim Namen, sondern bei seinem Platz im Raum (s. Spielerliste). Der Platz steht als
+ * einzelnes Byte vor den übrigen Parametern, bei POST_ZUG_ERGEBNIS als Zahl am Ende. Welcher
+ * Name zu welchem Platz gehört, erfährt der Client einmal mit POST_LOBBY und danach mit
+ * PLAYER_JOINED und PLAYER_LEFT, die Platz und Namen enthalten.
+ */
+public final class Protokoll {
+	/** Die Protokollversion dieses Geräts */
+	public static final int VERSION = 3;
+	
+	/** Der Raum für Gegenstellen, die keinen angeben */
+	public static final int STANDARD_RAUM = 0;
+	
+	/** Fähigkeit: Spielfeld binär statt als JSON (s. Spielfeld.toBinary()) */
+	public static final int SPIELFELD_BINAER = 1;
+	
+	/** Fähigkeit: Komprimierte Frames (s. FrameCodec.KOMPRIMIERT) */
+	public static final int KOMPRESSION = 2;
+	
+	/** Fähigkeit: Nur die Änderungen am Spielfeld übertragen (s. StatusCodes.POST_SPIELFELD_AENDERUNGEN) */
+	public static final int SPIELFELD_DELTA = 4;
+	
+	/** Fähigkeit: Beide Karten eines Spielzugs in einer Nachricht (s. StatusCodes.ZUG_PAAR) */
+	public static final int ZUG_PAKETE = 8;
+	
+	/** Fähigkeit: PING und PONG (s. Herzschlag) */
+	public static final int HERZSCHLAG = 16;
+	
+	/** Fähigkeit: Sitzungen mit Sequenznummern (s. StatusCodes.FORTSETZEN) */
+	public static final int SITZUNG = 32;
+	
+	/** Fähigkeit: Züge mit Ergebnis (s. StatusCodes.POST_ZUG_ERGEBNIS) */
+	public static final int ZUG_PIPELINE = 64;
+	
+	/** Fähigkeit: Spieler werden mit ihrem Platz statt mit ihrem Namen genannt (s. mitPlatz()) */
+	public static final int PLATZ_NUMMERN = 128;
+	
+	/** Fähigkeit: Der Server gibt den nächsten Spieler nach der Pause mit RATE frei (s. GlobalValues.SERVER_PAUSE) */
+	public static final int SERVER_PAUSE = 256;
+	
+	/** Fähigkeit: Der Server sendet seine Uhrzeit im PONG und den Zeitpunkt des Zudeckens mit jedem Zug (s. Uhrabgleich) */
+	public static final int UHRZEIT = 512;
+	
+	/** Fähigkeit: Der aktive Client zeigt seine Züge sofort an, der Server bestätigt sie nur (s. StatusCodes.ZUG_ANGENOMMEN) */
+	public static final int OPTIMISTISCH = 1024;
+	
+	/** Die Fähigkeiten dieses Geräts */
+	public static final int EIGENE = (GlobalValues.SPIELFELD_ALS_JSON ? 0 : (SPIELFELD_BINAER | SPIELFELD_DELTA))
+		| (GlobalValues.KOMPRESSION ? KOMPRESSION : 0)
+		| (GlobalValues.ZUG_PIPELINE ? ZUG_PIPELINE : 0)
+		| (GlobalValues.ZUG_PAARE ? ZUG_PAKETE : 0)
+		| (GlobalValues.SERVER_PAUSE ? SERVER_PAUSE : 0)
+		| (GlobalValues.OPTIMISTISCH ? OPTIMISTISCH : 0)
+		| HERZSCHLAG | SITZUNG | PLATZ_NUMMERN | UHRZEIT;
+	
+	/** Die Protokollversion der Gegenstelle */
+	private final int version;
+	
+	/** Die Fähigkeiten der Gegenstelle */
+	private final int faehigkeiten;
+	
+	/** Die Nummer des Raums */
+	private final int raum;
+	
+	/** Der eigentliche Parameter der Nachricht (Spielername oder Token) oder null */
+	private final String wert;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param version Die Protokollversion.
+	 * @param faehigkeiten Die Fähigkeiten.
+	 * @param raum Die Nummer des Raums.
+	 * @param wert Der eigentliche Parameter oder null.
+	 */
+	private Protokoll(int version, int faehigkeiten, int raum, String wert) {
+		this.version = version;
+		this.faehigkeiten = faehigkeiten;
+		this.raum = raum;
+		this.wert = wert;
+	}
+	
+	/**
+	 * Liest Version und Fähigkeiten aus den Parametern von HELO oder HELLO.
+	 * 
+	 * @param params Die Parameter oder null.
+	 * @return Die Angaben der Gegenstelle, bei alten Gegenstellen Version 1 ohne Fähigkeiten.
+	 */
+	public static Protokoll lesen(String params) {
+		if (params != null) {
+			String[] teile = params.split(";", 3);
+			if (teile.length == 3) {
+				try {
+					int version = Integer.parseInt(teile[0]);
+					int faehigkeiten = Integer.parseInt(teile[1]);
+					int raum = STANDARD_RAUM;
+					String wert = teile[2];
+					
+					// Ab Version 3 steht der Raum vor dem Wert
+					if (version >= 3) {
+						int trenner = wert.indexOf(';');
+						if (trenner < 0) throw new NumberFormatException("Raum fehlt");
+						raum = Integer.parseInt(wert.substring(0, trenner));
+						wert = wert.substring(trenner + 1);
+					}
+					
+					return new Protokoll(version, faehigkeiten, raum, (wert.length() > 0) ? wert : null);
+				} catch (NumberFormatException e) {
+					// Kein Handshake, der Parameter gehört ganz zum Wert
+				}
+			}
+		}
+		
+		return new Protokoll(1, 0, STANDARD_RAUM, params);
+	}
+	
+	/**
+	 * Erzeugt die Parameter für HELO oder HELLO.
+	 * 
+	 * @param faehigkeiten Die Fähigkeiten, die angeboten bzw. vereinbart werden.
+	 * @param raum Die Nummer des Raums.
+	 * @param wert Der eigentliche Parameter oder null.
+	 * @return Die Parameter.
+	 */
+	public static String schreiben(int faehigkeiten, int raum, String wert) {
+		return VERSION + ";" + faehigkeiten + ";" + raum + ";" + ((wert != null) ? wert : "");
+	}
+	
+	/**
+	 * Prüft, ob vor den Parametern einer Nachricht ein Platz steht (nur mit PLATZ_NUMMERN).
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @return true für RATE, PLAYER_JOINED und PLAYER_LEFT.
+	 */
+	public static boolean mitPlatz(int status) {
+		return (status == StatusCodes.RATE) || (status == StatusCodes.PLAYER_JOINED) || (status == StatusCodes.PLAYER_LEFT);
+	}
+	
+	/**
+	 * Liefert die Protokollversion der Gegenstelle.
+	 * 
+	 * @return Die Version, 1 bei Gegenstellen ohne Handshake.
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Liefert die Fähigkeiten, die beide Seiten unterstützen.
+	 * 
+	 * @return Die Fähigkeiten der Gegenstelle, beschränkt auf EIGENE.
+	 */
+	public int getGemeinsame() {
+		return faehigkeiten & EIGENE;
+	}
+	
+	/**
+	 * Liefert die Nummer des Raums.
+	 * 
+	 * @return Der Raum, STANDARD_RAUM bei Gegenstellen vor Version 3.
+	 */
+	public int getRaum() {
+		return raum;
+	}
+	
+	/**
+	 * Liefert den eigentlichen Parameter der Nachricht.
+	 * 
+	 * @return Der Spielername (HELO), das Token (HELLO) oder null.
+	 */
+	public String getWert() {
+		return wert;
+	}
+}
@@ -0,0 +1,110 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Gemeinsamer Pool für Empfangs- und Sendepuffer.
+ * 
+ * Die Puffer sind in Größenklassen (Zweierpotenzen von 64 Byte bis 64 KB) eingeteilt, jede
+ * Klasse hat eine feste Anzahl Plätze. Leihen und Zurückgeben kommen ohne Sperren und ohne
+ * Allokation aus, solange die Klasse nicht leer bzw. voll ist. Größere Puffer werden nicht
+ * gepoolt.
+ * 
+ * Ein geliehener Puffer ist mindestens so groß wie angefordert, meist größer. Die tatsächliche
+ * Länge der Daten muss daher separat bekannt sein (bei Frames steht sie im Längenpräfix).
+ */
+public abstract class PufferPool {
+	/** Zweierlogarithmus der kleinsten Puffergröße */
+	private static final int MIN_BITS = 6;
+	
+	/** Zweierlogarithmus der größten gepoolten Puffergröße */
+	private static final int MAX_BITS = 16;
+	
+	/** Anzahl der Plätze pro Größenklasse */
+	private static final int PLAETZE = 8;
+	
+	/** Die freien Puffer, PLAETZE hintereinander pro Größenklasse */
+	private static final AtomicReferenceArray<byte[]> frei = new AtomicReferenceArray<byte[]>((MAX_BITS - MIN_BITS + 1) * PLAETZE);
+	
+	/** Anzahl der Anfragen, die aus dem Pool bedient wurden */
+	private static final AtomicLong treffer = new AtomicLong();
+	
+	/** Anzahl der Anfragen, für die ein neuer Puffer angelegt werden musste */
+	private static final AtomicLong fehlschlaege = new AtomicLong();
+	
+	/**
+	 * Leiht einen Puffer aus.
+	 * 
+	 * @param laenge Die Mindestgröße des Puffers.
+	 * @return Der Puffer. Sein Inhalt ist undefiniert.
+	 */
+	public static byte[] leihen(int laenge) {
+		int klasse = klasse(laenge);
+		if (klasse < 0) {
+			fehlschlaege.incrementAndGet();
+			return new byte[laenge];
+		}
+		
+		int basis = klasse * PLAETZE;
+		for (int i = 0; i < PLAETZE; i++) {
+			byte[] puffer = frei.get(basis + i);
+			if ((puffer != null) && frei.compareAndSet(basis + i, puffer, null)) {
+				treffer.incrementAndGet();
+				return puffer;
+			}
+		}
+		
+		fehlschlaege.incrementAndGet();
+		return new byte[1 << (klasse + MIN_BITS)];
+	}
+	
+	/**
+	 * Gibt einen geliehenen Puffer zurück.
+	 * 
+	 * Der Puffer darf danach nicht mehr verwendet werden. Puffer, die nicht aus dem Pool stammen
+	 * können (keine Zweierpotenz) oder für die kein Platz mehr frei ist, werden verworfen.
+	 * 
+	 * @param puffer Der Puffer.
+	 */
+	public static void zurueckgeben(byte[] puffer) {
+		int klasse = klasse(puffer.length);
+		if ((klasse < 0) || (puffer.length != (1 << (klasse + MIN_BITS)))) return;
+		
+		int basis = klasse * PLAETZE;
+		for (int i = 0; i < PLAETZE; i++) {
+			if ((frei.get(basis + i) == null) && frei.compareAndSet(basis + i, null, puffer)) return;
+		}
+	}
+	
+	/**
+	 * Liefert die Anzahl der Anfragen, die aus dem Pool bedient wurden.
+	 * 
+	 * @return Die Anzahl der Treffer seit dem Start.
+	 */
+	public static long getTreffer() {
+		return treffer.get();
+	}
+	
+	/**
+	 * Liefert die Anzahl der Anfragen, für die ein neuer Puffer angelegt wurde.
+	 * 
+	 * @return Die Anzahl der Fehlschläge seit dem Start.
+	 */
+	public static long getFehlschlaege() {
+		return fehlschlaege.get();
+	}
+	
+	/**
+	 * Ermittelt die Größenklasse für eine Puffergröße.
+	 * 
+	 * @param laenge Die Mindestgröße.
+	 * @return Die Klasse oder -1, wenn die Größe nicht gepoolt wird.
+	 */
+	private static int klasse(int laenge) {
+		int bits = MIN_BITS;
+		while ((1 << bits) < laenge) bits++;
+		
+		return (bits <= MAX_BITS) ? (bits - MIN_BITS) : -1;
+	}
+}
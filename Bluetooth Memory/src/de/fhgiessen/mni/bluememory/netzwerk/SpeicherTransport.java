@@ -0,0 +1,193 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Transport innerhalb einer JVM.
+ * 
+ * Zwei SpeicherTransporte sind über je einen Ringpuffer pro Richtung miteinander verbunden.
+ * Anders als PipedInputStream/PipedOutputStream sind die Puffer nicht an den schreibenden
+ * Thread gebunden, so dass beliebige Threads senden und empfangen dürfen.
+ */
+public class SpeicherTransport implements Transport {
+	/** Größe eines Ringpuffers in Byte */
+	private static final int PUFFER_GROESSE = 64 * 1024;
+	
+	/** Der Puffer, aus dem gelesen wird */
+	private final Pipe eingang;
+	
+	/** Der Puffer, in den geschrieben wird */
+	private final Pipe ausgang;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param eingang Der Puffer, aus dem gelesen wird.
+	 * @param ausgang Der Puffer, in den geschrieben wird.
+	 */
+	private SpeicherTransport(Pipe eingang, Pipe ausgang) {
+		this.eingang = eingang;
+		this.ausgang = ausgang;
+	}
+	
+	/**
+	 * Erzeugt zwei miteinander verbundene Transporte.
+	 * 
+	 * Was auf dem einen geschrieben wird, kann auf dem anderen gelesen werden und umgekehrt.
+	 * 
+	 * @return Die beiden Enden der Verbindung.
+	 */
+	public static SpeicherTransport[] paar() {
+		Pipe hin = new Pipe();
+		Pipe zurueck = new Pipe();
+		
+		return new SpeicherTransport[] { new SpeicherTransport(zurueck, hin), new SpeicherTransport(hin, zurueck) };
+	}
+	
+	@Override
+	public InputStream getInputStream() {
+		return eingang.in;
+	}
+	
+	@Override
+	public OutputStream getOutputStream() {
+		return ausgang.out;
+	}
+	
+	@Override
+	public void close() {
+		eingang.schliessen();
+		ausgang.schliessen();
+	}
+	
+	/**
+	 * Ein Ringpuffer für eine Richtung der Verbindung.
+	 */
+	private static class Pipe {
+		/** Die gepufferten Bytes */
+		private final byte[] puffer = new byte[PUFFER_GROESSE];
+		
+		/** Position des nächsten zu lesenden Bytes */
+		private int lesen;
+		
+		/** Anzahl der gepufferten Bytes */
+		private int belegt;
+		
+		/** true, sobald eine Seite die Verbindung geschlossen hat */
+		private boolean geschlossen;
+		
+		/** Die lesende Seite */
+		final InputStream in = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+			}
+			
+			@Override
+			public int read(byte[] ziel, int offset, int laenge) throws IOException {
+				return lies(ziel, offset, laenge);
+			}
+			
+			@Override
+			public int available() {
+				synchronized (Pipe.this) {
+					return belegt;
+				}
+			}
+			
+			@Override
+			public void close() {
+				schliessen();
+			}
+		};
+		
+		/** Die schreibende Seite */
+		final OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+			
+			@Override
+			public void write(byte[] quelle, int offset, int laenge) throws IOException {
+				schreibe(quelle, offset, laenge);
+			}
+			
+			@Override
+			public void close() {
+				schliessen();
+			}
+		};
+		
+		/**
+		 * Liest Bytes aus dem Puffer und blockiert, solange er leer ist.
+		 * 
+		 * @return Die Anzahl gelesener Bytes oder -1, wenn die Verbindung geschlossen wurde.
+		 */
+		private synchronized int lies(byte[] ziel, int offset, int laenge) throws IOException {
+			if (laenge == 0) return 0;
+			
+			while (belegt == 0) {
+				if (geschlossen) return -1;
+				warte();
+			}
+			
+			int anzahl = Math.min(laenge, belegt);
+			int bisEnde = Math.min(anzahl, puffer.length - lesen);
+			System.arraycopy(puffer, lesen, ziel, offset, bisEnde);
+			System.arraycopy(puffer, 0, ziel, offset + bisEnde, anzahl - bisEnde);
+			lesen = (lesen + anzahl) % puffer.length;
+			belegt -= anzahl;
+			
+			notifyAll();
+			return anzahl;
+		}
+		
+		/**
+		 * Schreibt Bytes in den Puffer und blockiert, solange er voll ist.
+		 */
+		private synchronized void schreibe(byte[] quelle, int offset, int laenge) throws IOException {
+			while (laenge > 0) {
+				if (geschlossen) throw new IOException("Verbindung wurde geschlossen");
+				if (belegt == puffer.length) {
+					warte();
+					continue;
+				}
+				
+				int schreiben = (lesen + belegt) % puffer.length;
+				int anzahl = Math.min(laenge, puffer.length - belegt);
+				int bisEnde = Math.min(anzahl, puffer.length - schreiben);
+				System.arraycopy(quelle, offset, puffer, schreiben, bisEnde);
+				System.arraycopy(quelle, offset + bisEnde, puffer, 0, anzahl - bisEnde);
+				belegt += anzahl;
+				offset += anzahl;
+				laenge -= anzahl;
+				
+				notifyAll();
+			}
+		}
+		
+		/**
+		 * Schließt den Puffer und weckt alle wartenden Threads.
+		 */
+		synchronized void schliessen() {
+			geschlossen = true;
+			notifyAll();
+		}
+		
+		/**
+		 * Wartet auf eine Änderung des Puffers.
+		 */
+		private void warte() throws IOException {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Warten wurde unterbrochen");
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Nimmt Verbindungen innerhalb einer JVM entgegen.
+ * 
+ * Jeder Server ist unter einem Namen registriert, über den sich Clients mit verbinde() an ihn
+ * wenden. So lassen sich Server und mehrere Clients ohne Netzwerk in einem Prozess betreiben.
+ */
+public class SpeicherTransportServer implements TransportServer {
+	/** Die geöffneten Server nach Name */
+	private static final Map<String, SpeicherTransportServer> server = new HashMap<String, SpeicherTransportServer>();
+	
+	/** Markiert in der Warteschlange, dass der Server geschlossen wurde */
+	private static final SpeicherTransport GESCHLOSSEN = SpeicherTransport.paar()[0];
+	
+	/** Der Name, unter dem der Server registriert ist */
+	private final String name;
+	
+	/** Die Server-Enden der Verbindungen, die noch nicht angenommen wurden */
+	private final BlockingQueue<SpeicherTransport> wartend = new LinkedBlockingQueue<SpeicherTransport>();
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Registriert den Server unter dem angegebenen Namen.
+	 * 
+	 * @param name Der Name des Servers.
+	 * @throws IOException Wenn unter dem Namen bereits ein Server registriert ist.
+	 */
+	public SpeicherTransportServer(String name) throws IOException {
+		this.name = name;
+		
+		synchronized (server) {
+			if (server.containsKey(name)) throw new IOException("Server existiert bereits: " + name);
+			server.put(name, this);
+		}
+	}
+	
+	/**
+	 * Verbindet sich mit einem registrierten Server.
+	 * 
+	 * @param name Der Name des Servers.
+	 * @return Das Client-Ende der Verbindung.
+	 * @throws IOException Wenn unter dem Namen kein Server registriert ist.
+	 */
+	public static Transport verbinde(String name) throws IOException {
+		SpeicherTransportServer ziel;
+		synchronized (server) {
+			ziel = server.get(name);
+		}
+		if (ziel == null) throw new IOException("Kein Server mit dem Namen " + name);
+		
+		SpeicherTransport[] paar = SpeicherTransport.paar();
+		ziel.wartend.add(paar[1]);
+		
+		return paar[0];
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		SpeicherTransport transport;
+		try {
+			transport = wartend.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Warten wurde unterbrochen");
+		}
+		
+		if (transport == GESCHLOSSEN) {
+			// Weitere wartende accept()-Aufrufe ebenfalls beenden
+			wartend.add(GESCHLOSSEN);
+			throw new IOException("Server wurde geschlossen");
+		}
+		
+		return transport;
+	}
+	
+	@Override
+	public void close() {
+		synchronized (server) {
+			if (server.get(name) == this) server.remove(name);
+		}
+		wartend.add(GESCHLOSSEN);
+	}
+}
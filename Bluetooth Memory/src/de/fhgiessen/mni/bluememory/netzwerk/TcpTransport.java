@@ -0,0 +1,68 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Transport über einen TCP-Socket.
+ */
+public class TcpTransport implements Transport {
+	/** Der TCP-Socket der Verbindung */
+	private Socket socket;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Schaltet den Nagle-Algorithmus ab, da das Spielprotokoll aus vielen kleinen Nachrichten
+	 * besteht, die sofort ankommen sollen.
+	 * 
+	 * @param socket Der verbundene Socket.
+	 * @throws IOException Wenn der Socket nicht konfiguriert werden kann.
+	 */
+	public TcpTransport(Socket socket) throws IOException {
+		this.socket = socket;
+		socket.setTcpNoDelay(true);
+	}
+	
+	/**
+	 * Stellt die Verbindung zu einem Server her.
+	 * 
+	 * @param adresse Host und Port in der Form "host:port" oder nur der Host.
+	 * @param standardPort Der Port, falls die Adresse keinen enthält.
+	 * @return Die Verbindung.
+	 * @throws IOException Wenn die Verbindung nicht hergestellt werden kann.
+	 */
+	public static TcpTransport verbinde(String adresse, int standardPort) throws IOException {
+		String host = adresse;
+		int port = standardPort;
+		
+		int trenner = adresse.lastIndexOf(':');
+		if (trenner >= 0) {
+			host = adresse.substring(0, trenner);
+			try {
+				port = Integer.parseInt(adresse.substring(trenner + 1));
+			} catch (NumberFormatException e) {
+				throw new IOException("Ungültiger Port: " + adresse);
+			}
+		}
+		
+		return new TcpTransport(new Socket(host, port));
+	}
+	
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return socket.getInputStream();
+	}
+	
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return socket.getOutputStream();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
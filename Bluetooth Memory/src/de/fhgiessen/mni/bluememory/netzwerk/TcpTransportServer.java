@@ -0,0 +1,46 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+/**
+ * Nimmt Verbindungen über TCP entgegen.
+ */
+public class TcpTransportServer implements TransportServer {
+	/** Der TCP-Server-Socket */
+	private ServerSocket serverSocket;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Öffnet den Server-Socket auf allen Netzwerk-Schnittstellen.
+	 * 
+	 * @param port Der Port, auf dem gewartet wird.
+	 * @throws IOException Wenn der Port nicht geöffnet werden kann.
+	 */
+	public TcpTransportServer(int port) throws IOException {
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress(port));
+	}
+	
+	/**
+	 * Liefert den Port, auf dem der Server wartet.
+	 * 
+	 * @return Der Port (interessant, wenn mit Port 0 ein freier Port gewählt wurde).
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+	
+	@Override
+	public Transport accept() throws IOException {
+		return new TcpTransport(serverSocket.accept());
+	}
+	
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+}
@@ -0,0 +1,37 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Eine bestehende Verbindung zwischen Client und Server.
+ * 
+ * Ein Transport liefert nur die beiden Byte-Ströme der Verbindung. Das Spielprotokoll
+ * (Frames, Statuscodes) liegt darüber in ServerRemote bzw. ClientRemote und ist damit
+ * unabhängig davon, ob die Bytes über Bluetooth, TCP oder innerhalb der JVM fließen.
+ */
+public interface Transport {
+	/**
+	 * Liefert den Stream, auf dem die Nachrichten der Gegenseite ankommen.
+	 * 
+	 * @return Der Input-Stream.
+	 * @throws IOException Wenn die Verbindung nicht (mehr) besteht.
+	 */
+	public InputStream getInputStream() throws IOException;
+	
+	/**
+	 * Liefert den Stream, über den Nachrichten an die Gegenseite gesendet werden.
+	 * 
+	 * @return Der Output-Stream.
+	 * @throws IOException Wenn die Verbindung nicht (mehr) besteht.
+	 */
+	public OutputStream getOutputStream() throws IOException;
+	
+	/**
+	 * Schließt die Verbindung. Blockierende Lese- und Schreibaufrufe werden dabei abgebrochen.
+	 * 
+	 * @throws IOException Wenn beim Schließen ein Fehler auftritt.
+	 */
+	public void close() throws IOException;
+}
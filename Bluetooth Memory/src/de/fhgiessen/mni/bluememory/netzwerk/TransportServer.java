@@ -0,0 +1,28 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+import java.io.IOException;
+
+/**
+ * Nimmt auf Server-Seite neue Verbindungen entgegen.
+ * 
+ * Ein TransportServer bleibt geöffnet, solange neue Spieler beitreten können. accept() kann
+ * dabei beliebig oft nacheinander aufgerufen werden.
+ */
+public interface TransportServer {
+	/**
+	 * Wartet auf die nächste eingehende Verbindung.
+	 * 
+	 * Die Methode blockiert, bis sich ein Client verbindet oder der Server geschlossen wird.
+	 * 
+	 * @return Die neue Verbindung.
+	 * @throws IOException Wenn der Server geschlossen wurde oder ein Fehler auftritt.
+	 */
+	public Transport accept() throws IOException;
+	
+	/**
+	 * Schließt den Server. Ein blockierendes accept() wird dabei abgebrochen.
+	 * 
+	 * @throws IOException Wenn beim Schließen ein Fehler auftritt.
+	 */
+	public void close() throws IOException;
+}
@@ -0,0 +1,192 @@
+package de.fhgiessen.mni.bluememory.netzwerk;
+
+/**
+ * Schätzt den Versatz der Uhr des Servers gegenüber der eigenen (SystemClock.uptimeMillis()).
+ * 
+ * Jede Antwort auf ein PING enthält mit Protokoll.UHRZEIT die Uhrzeit des Servers (s.
+ * Herzschlag). Wie bei NTP wird angenommen, dass der Server sie in der Mitte der Round-Trip-Time
+ * abgelesen hat, der Fehler einer Messung ist also höchstens die halbe RTT. Von den letzten
+ * FENSTER Messungen gilt deshalb nur die mit der kleinsten RTT, verzögerte Antworten fallen so
+ * heraus.
+ * 
+ * Nach jeweils FENSTER Messungen wird die beste als Stützstelle aufbewahrt. Aus den Stützstellen
+ * wird die Drift der beiden Uhren (ms pro ms) per linearer Regression geschätzt, sobald sie weit
+ * genug auseinander liegen. Bis dahin gilt der Versatz als fest.
+ * 
+ * Die Methoden dürfen aus jedem Thread aufgerufen werden.
+ */
+public class Uhrabgleich {
+	/** So viele Messungen werden verglichen, es gilt die mit der kleinsten RTT */
+	public static final int FENSTER = 8;
+	
+	/** So viele Stützstellen gehen in die Schätzung der Drift ein */
+	private static final int STUETZSTELLEN = 8;
+	
+	/** Erst wenn die Stützstellen so viele ms auseinander liegen, wird die Drift geschätzt */
+	private static final long DRIFT_MINDESTSPANNE = 30000;
+	
+	/** Größere Drift wird als Messfehler betrachtet (ms pro ms, 500 ppm) */
+	private static final double DRIFT_MAX = 0.0005;
+	
+	/** Die letzten Messungen: Versatz in ms */
+	private final double[] versatz = new double[FENSTER];
+	
+	/** Die letzten Messungen: RTT in ms */
+	private final long[] rtt = new long[FENSTER];
+	
+	/** Die letzten Messungen: eigene Uhrzeit in der Mitte der RTT */
+	private final double[] mitte = new double[FENSTER];
+	
+	/** Die Anzahl aller bisherigen Messungen */
+	private int messungen;
+	
+	/** Die Stützstellen: eigene Uhrzeit */
+	private final double[] stuetzZeit = new double[STUETZSTELLEN];
+	
+	/** Die Stützstellen: Versatz in ms */
+	private final double[] stuetzVersatz = new double[STUETZSTELLEN];
+	
+	/** Die Anzahl aller bisherigen Stützstellen */
+	private int stuetzstellen;
+	
+	/** Die beste Messung im Fenster (Index), -1 solange es keine gibt */
+	private int beste = -1;
+	
+	/** Die geschätzte Drift (ms pro ms), 0 solange sie nicht geschätzt werden kann */
+	private double drift;
+	
+	/**
+	 * Verrechnet eine Messung.
+	 * 
+	 * @param gesendet Die eigene Uhrzeit beim Senden des PING.
+	 * @param server Die Uhrzeit des Servers aus dem PONG.
+	 * @param empfangen Die eigene Uhrzeit beim Empfang des PONG.
+	 */
+	public synchronized void messung(long gesendet, long server, long empfangen) {
+		if (empfangen < gesendet) return;
+		
+		int i = messungen % FENSTER;
+		rtt[i] = empfangen - gesendet;
+		mitte[i] = (gesendet + empfangen) / 2.0;
+		versatz[i] = server - mitte[i];
+		messungen++;
+		
+		// Die Messung mit der kleinsten RTT im Fenster suchen
+		beste = 0;
+		int anzahl = Math.min(messungen, FENSTER);
+		for (int j = 1; j < anzahl; j++) if (rtt[j] < rtt[beste]) beste = j;
+		
+		// Nach jedem vollen Fenster die beste Messung als Stützstelle aufbewahren
+		if ((messungen % FENSTER) == 0) {
+			int s = stuetzstellen % STUETZSTELLEN;
+			stuetzZeit[s] = mitte[beste];
+			stuetzVersatz[s] = versatz[beste];
+			stuetzstellen++;
+			schaetzeDrift();
+		}
+	}
+	
+	/**
+	 * Prüft, ob schon ein Versatz bekannt ist.
+	 * 
+	 * @return true nach der ersten Messung.
+	 */
+	public synchronized boolean istBekannt() {
+		return beste >= 0;
+	}
+	
+	/**
+	 * Prüft, ob das erste Fenster voll ist. Bis dahin lohnen sich häufigere Messungen.
+	 * 
+	 * @return true nach FENSTER Messungen.
+	 */
+	public synchronized boolean istEingeschwungen() {
+		return messungen >= FENSTER;
+	}
+	
+	/**
+	 * Liefert den geschätzten Versatz zu einem Zeitpunkt.
+	 * 
+	 * @param lokal Die eigene Uhrzeit.
+	 * @return Uhrzeit des Servers minus eigene Uhrzeit in ms, 0 solange nichts bekannt ist.
+	 */
+	public synchronized double getVersatz(long lokal) {
+		if (beste < 0) return 0;
+		
+		return versatz[beste] + drift * (lokal - mitte[beste]);
+	}
+	
+	/**
+	 * Liefert die geschätzte Drift der beiden Uhren.
+	 * 
+	 * @return Die Drift in ms pro ms (positiv, wenn die Uhr des Servers schneller läuft).
+	 */
+	public synchronized double getDrift() {
+		return drift;
+	}
+	
+	/**
+	 * Liefert die Genauigkeit des Versatzes, die halbe RTT der besten Messung.
+	 * 
+	 * @return Der größte mögliche Fehler in ms oder -1, solange nichts bekannt ist.
+	 */
+	public synchronized long getGenauigkeit() {
+		return (beste >= 0) ? (rtt[beste] + 1) / 2 : -1;
+	}
+	
+	/**
+	 * Rechnet eine Uhrzeit des Servers in die eigene um, z.B. für Handler.postAtTime().
+	 * 
+	 * @param server Die Uhrzeit des Servers.
+	 * @return Die eigene Uhrzeit (SystemClock.uptimeMillis()) oder -1, solange nichts bekannt ist.
+	 */
+	public synchronized long zuLokal(long server) {
+		if (beste < 0) return -1;
+		
+		// server = lokal + versatz + drift * (lokal - mitte), nach lokal aufgelöst
+		return Math.round((server - versatz[beste] + drift * mitte[beste]) / (1 + drift));
+	}
+	
+	/**
+	 * Rechnet eine eigene Uhrzeit in die des Servers um.
+	 * 
+	 * @param lokal Die eigene Uhrzeit (SystemClock.uptimeMillis()).
+	 * @return Die Uhrzeit des Servers oder -1, solange nichts bekannt ist.
+	 */
+	public synchronized long zuServer(long lokal) {
+		if (beste < 0) return -1;
+		
+		return Math.round(lokal + getVersatz(lokal));
+	}
+	
+	/**
+	 * Schätzt die Drift per linearer Regression über die Stützstellen.
+	 */
+	private void schaetzeDrift() {
+		int anzahl = Math.min(stuetzstellen, STUETZSTELLEN);
+		if (anzahl < 2) return;
+		
+		// Mittelwerte, die Zeiten relativ zur ersten Stützstelle, damit die Summen klein bleiben
+		double basis = stuetzZeit[0];
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE, mx = 0, my = 0;
+		for (int i = 0; i < anzahl; i++) {
+			double x = stuetzZeit[i] - basis;
+			min = Math.min(min, x);
+			max = Math.max(max, x);
+			mx += x;
+			my += stuetzVersatz[i];
+		}
+		if ((max - min) < DRIFT_MINDESTSPANNE) return;
+		mx /= anzahl;
+		my /= anzahl;
+		
+		double sxy = 0, sxx = 0;
+		for (int i = 0; i < anzahl; i++) {
+			double dx = stuetzZeit[i] - basis - mx;
+			sxy += dx * (stuetzVersatz[i] - my);
+			sxx += dx * dx;
+		}
+		
+		drift = Math.max(-DRIFT_MAX, Math.min(DRIFT_MAX, sxy / sxx));
+	}
+}
@@ -0,0 +1,256 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.util.BitSet;
+
+import android.os.SystemClock;
+
+/**
+ * Die Bestätigungen, auf die ein Raum wartet, bevor das Spiel weitergeht.
+ * 
+ * Offen ist immer höchstens ein Schritt: das Spielfeld zu Beginn (OK_SPIELFELD) oder ein Zug
+ * (OK_ZUG, nur von Spielern ohne Protokoll.ZUG_PIPELINE). Für jeden Platz, dessen Bestätigung
+ * noch fehlt, ist ein Bit gesetzt. Eine doppelte Bestätigung oder eine, die zu keinem offenen
+ * Schritt passt, ändert deshalb nichts.
+ * 
+ * Läuft die Frist eines Schritts ab (s. fristAblaufen()), geht das Spiel ohne die fehlenden
+ * Spieler weiter, sie gelten als im Rückstand. Ihre verspäteten Bestätigungen für frühere Züge
+ * werden mitgezählt und verworfen, bevor wieder eine für den offenen Zug gilt. Ein verspätetes
+ * OK_SPIELFELD passt ohnehin zu keinem Schritt mehr.
+ * 
+ * Außerdem wird für jeden Platz erfasst, wie oft und wie lange der Tisch auf ihn gewartet hat:
+ * Der Spieler, dessen Bestätigung einen Schritt abschließt, hat den Tisch um die Zeit seit der
+ * vorletzten Bestätigung aufgehalten (frühestens ab der Zeit, die der Schritt ohnehin dauert).
+ * 
+ * Wird nur im Postfach des Raums benutzt.
+ */
+public class Bestaetigungen {
+	/** Art eines Schritts: kein Schritt offen */
+	public static final int KEINER = 0;
+	
+	/** Art eines Schritts: das Spielfeld (OK_SPIELFELD) */
+	public static final int SPIELFELD = 1;
+	
+	/** Art eines Schritts: ein Zug (OK_ZUG) */
+	public static final int ZUG = 2;
+	
+	/** Die Art des offenen bzw. zuletzt geöffneten Schritts */
+	private int art = KEINER;
+	
+	/** Fortlaufende Nummer des zuletzt geöffneten Schritts, unterscheidet die Fristen */
+	private int schritt;
+	
+	/** Die Nummer des Zugs, zu dem der Schritt gehört (0 für das Spielfeld) */
+	private int zug;
+	
+	/** Die Plätze, deren Bestätigung noch fehlt */
+	private final BitSet ausstehend = new BitSet();
+	
+	/** Zeitpunkt, ab dem der Tisch auf den nächsten Spieler wartet (SystemClock.uptimeMillis()) */
+	private long wartetSeit;
+	
+	/** Die Anzahl der Bestätigungen für frühere Züge, die jeder Platz nach einer Frist noch schuldet */
+	private int[] rueckstand = new int[0];
+	
+	/** Wie oft der Tisch auf jeden Platz gewartet hat */
+	private int[] verzoegerungen = new int[0];
+	
+	/** Wie lange der Tisch insgesamt auf jeden Platz gewartet hat, in ms */
+	private long[] verzoegerungMs = new long[0];
+	
+	/**
+	 * Öffnet einen neuen Schritt, ein noch offener verfällt. Danach werden die Plätze mit erwarten()
+	 * eingetragen.
+	 * 
+	 * @param art Die Art des Schritts (SPIELFELD oder ZUG).
+	 * @param zug Die Nummer des Zugs (0 für das Spielfeld).
+	 * @param dauer So lange in ms dauert der Schritt ohnehin (z.B. die Pause), das zählt nicht als Verzögerung.
+	 * @return Die Nummer des Schritts für fristAblaufen().
+	 */
+	public int oeffnen(int art, int zug, long dauer) {
+		this.art = art;
+		this.zug = zug;
+		ausstehend.clear();
+		wartetSeit = SystemClock.uptimeMillis() + dauer;
+		
+		return ++schritt;
+	}
+	
+	/**
+	 * Trägt einen Platz ein, dessen Bestätigung der offene Schritt braucht.
+	 * 
+	 * @param platz Der Platz.
+	 */
+	public void erwarten(int platz) {
+		if (platz >= 0) ausstehend.set(platz);
+	}
+	
+	/**
+	 * Prüft, ob ein Schritt offen ist.
+	 * 
+	 * @param art Die Art des Schritts (SPIELFELD oder ZUG).
+	 * @return true, solange noch Bestätigungen dieser Art fehlen.
+	 */
+	public boolean istOffen(int art) {
+		return (this.art == art) && !ausstehend.isEmpty();
+	}
+	
+	/**
+	 * Liefert die Art des zuletzt geöffneten Schritts.
+	 * 
+	 * @return SPIELFELD, ZUG oder KEINER.
+	 */
+	public int getArt() {
+		return art;
+	}
+	
+	/**
+	 * Liefert die Nummer des Zugs, zu dem der zuletzt geöffnete Schritt gehört.
+	 * 
+	 * @return Die Nummer (0 für das Spielfeld).
+	 */
+	public int getZug() {
+		return zug;
+	}
+	
+	/**
+	 * Verbucht die Bestätigung eines Spielers.
+	 * 
+	 * @param art Die Art der Bestätigung (SPIELFELD oder ZUG).
+	 * @param platz Der Platz des Spielers.
+	 * @return true, wenn damit die letzte fehlende Bestätigung des offenen Schritts vorliegt.
+	 */
+	public boolean bestaetigen(int art, int platz) {
+		if (platz < 0) return false;
+		
+		// Erst die Bestätigungen für Züge abtragen, die ohne den Spieler weitergegangen sind
+		if ((art == ZUG) && (platz < rueckstand.length) && (rueckstand[platz] > 0)) {
+			rueckstand[platz]--;
+			return false;
+		}
+		if (!istOffen(art)) return false;
+		
+		// Doppelte Bestätigungen und Spieler, auf die der Schritt nicht wartet
+		if (!ausstehend.get(platz)) return false;
+		ausstehend.clear(platz);
+		
+		long jetzt = SystemClock.uptimeMillis();
+		if (!ausstehend.isEmpty()) {
+			wartetSeit = Math.max(wartetSeit, jetzt);
+			return false;
+		}
+		
+		// Der letzte Spieler hat den Tisch aufgehalten
+		if (jetzt > wartetSeit) erfassen(platz, jetzt - wartetSeit);
+		art = KEINER;
+		return true;
+	}
+	
+	/**
+	 * Nimmt einen Spieler heraus, der den Raum verlassen hat.
+	 * 
+	 * @param platz Der bisherige Platz des Spielers.
+	 * @return true, wenn der offene Schritt danach auf niemanden mehr wartet.
+	 */
+	public boolean entfernen(int platz) {
+		if (platz < 0) return false;
+		
+		// Der nächste Spieler auf dem Platz beginnt ohne Rückstand
+		if (platz < rueckstand.length) rueckstand[platz] = 0;
+		if ((art == KEINER) || !ausstehend.get(platz)) return false;
+		
+		ausstehend.clear(platz);
+		if (!ausstehend.isEmpty()) return false;
+		
+		art = KEINER;
+		return true;
+	}
+	
+	/**
+	 * Schließt einen Schritt nach Ablauf seiner Frist. Die Spieler, deren Bestätigung noch fehlt,
+	 * gelten danach als im Rückstand.
+	 * 
+	 * @param schritt Die Nummer des Schritts (s. oeffnen()).
+	 * @return Die Plätze der fehlenden Spieler oder null, wenn der Schritt nicht mehr offen ist.
+	 */
+	public int[] fristAblaufen(int schritt) {
+		if ((schritt != this.schritt) || (art == KEINER) || ausstehend.isEmpty()) return null;
+		
+		long verzoegerung = Math.max(0, SystemClock.uptimeMillis() - wartetSeit);
+		int[] plaetze = new int[ausstehend.cardinality()];
+		int i = 0;
+		for (int platz = ausstehend.nextSetBit(0); platz >= 0; platz = ausstehend.nextSetBit(platz + 1)) {
+			plaetze[i++] = platz;
+			erfassen(platz, verzoegerung);
+			if (art == ZUG) {
+				rueckstand = vergroessern(rueckstand, platz);
+				rueckstand[platz]++;
+			}
+		}
+		
+		ausstehend.clear();
+		art = KEINER;
+		return plaetze;
+	}
+	
+	/**
+	 * Liefert, wie oft der Tisch auf einen Platz gewartet hat.
+	 * 
+	 * @param platz Der Platz.
+	 * @return Die Anzahl der Schritte, die der Spieler auf dem Platz aufgehalten hat.
+	 */
+	public int getVerzoegerungen(int platz) {
+		return ((platz >= 0) && (platz < verzoegerungen.length)) ? verzoegerungen[platz] : 0;
+	}
+	
+	/**
+	 * Liefert, wie lange der Tisch insgesamt auf einen Platz gewartet hat.
+	 * 
+	 * @param platz Der Platz.
+	 * @return Die Summe der Wartezeiten in ms.
+	 */
+	public long getVerzoegerungMs(int platz) {
+		return ((platz >= 0) && (platz < verzoegerungMs.length)) ? verzoegerungMs[platz] : 0;
+	}
+	
+	/**
+	 * Liefert die Anzahl der Plätze, für die es Messwerte gibt.
+	 * 
+	 * @return Der höchste erfasste Platz + 1.
+	 */
+	public int getPlaetze() {
+		return verzoegerungen.length;
+	}
+	
+	/**
+	 * Erfasst, dass der Tisch auf einen Platz gewartet hat.
+	 * 
+	 * @param platz Der Platz.
+	 * @param ms Die Wartezeit in ms.
+	 */
+	private void erfassen(int platz, long ms) {
+		verzoegerungen = vergroessern(verzoegerungen, platz);
+		if (verzoegerungMs.length <= platz) {
+			long[] neu = new long[platz + 1];
+			System.arraycopy(verzoegerungMs, 0, neu, 0, verzoegerungMs.length);
+			verzoegerungMs = neu;
+		}
+		
+		verzoegerungen[platz]++;
+		verzoegerungMs[platz] += ms;
+	}
+	
+	/**
+	 * Vergrößert ein Feld, bis es einen Platz aufnehmen kann.
+	 * 
+	 * @param feld Das Feld.
+	 * @param platz Der Platz.
+	 * @return Das Feld selbst oder eine größere Kopie.
+	 */
+	private static int[] vergroessern(int[] feld, int platz) {
+		if (platz < feld.length) return feld;
+		
+		int[] neu = new int[platz + 1];
+		System.arraycopy(feld, 0, neu, 0, feld.length);
+		return neu;
+	}
+}
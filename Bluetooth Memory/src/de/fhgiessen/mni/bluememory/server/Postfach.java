@@ -0,0 +1,151 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.util.Log;
+
+/**
+ * Das Postfach eines Akteurs, z.B. eines Raums.
+ * 
+ * Alle Änderungen am Zustand des Akteurs laufen als Aufgaben durch sein Postfach. Die Aufgaben
+ * eines Postfachs werden nacheinander in der Reihenfolge ausgeführt, in der sie eingestellt
+ * wurden, nie gleichzeitig. Der Zustand des Akteurs braucht deshalb keine Sperren, auch wenn
+ * er nacheinander in verschiedenen Threads bearbeitet wird.
+ * 
+ * Ein Postfach belegt keinen eigenen Thread. Erst wenn eine Aufgabe eintrifft, wird es beim
+ * Verteiler eingeplant, der es in einem seiner Arbeiter abarbeitet. Ein ruhender Raum kostet so
+ * nur seinen Speicher.
+ * 
+ * Die Warteschlange ist eine verkettete Liste ohne Sperren für viele Erzeuger und einen
+ * Verbraucher: Ein Erzeuger hängt seinen Knoten mit einem einzigen getAndSet() an, entnommen wird
+ * nur vom Arbeiter, der das Postfach gerade bearbeitet.
+ */
+public class Postfach implements Runnable {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.Postfach";
+	
+	/** Höchstens so viele Aufgaben am Stück, danach kommen andere Postfächer an die Reihe */
+	private static final int STAPEL = 64;
+	
+	/**
+	 * Ein Knoten der Warteschlange.
+	 */
+	private static final class Knoten {
+		/** Die Aufgabe, null beim Platzhalter am Anfang */
+		Runnable aufgabe;
+		
+		/** Der nächste Knoten, wird vom Erzeuger nach dem Anhängen gesetzt */
+		volatile Knoten naechster;
+		
+		/**
+		 * Konstruktor
+		 * 
+		 * @param aufgabe Die Aufgabe.
+		 */
+		Knoten(Runnable aufgabe) {
+			this.aufgabe = aufgabe;
+		}
+	}
+	
+	/** Der Verteiler, bei dem das Postfach eingeplant wird */
+	private final Verteiler verteiler;
+	
+	/** Der zuletzt angehängte Knoten, hier hängen die Erzeuger an */
+	private final AtomicReference<Knoten> ende;
+	
+	/** Der zuletzt entnommene Knoten, gehört dem bearbeitenden Arbeiter */
+	private Knoten anfang;
+	
+	/** true, solange das Postfach eingeplant ist oder bearbeitet wird */
+	private final AtomicBoolean geplant = new AtomicBoolean();
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param verteiler Der Verteiler, der das Postfach abarbeitet.
+	 */
+	public Postfach(Verteiler verteiler) {
+		this.verteiler = verteiler;
+		anfang = new Knoten(null);
+		ende = new AtomicReference<Knoten>(anfang);
+	}
+	
+	/**
+	 * Stellt eine Aufgabe in das Postfach.
+	 * 
+	 * Kann aus jedem Thread aufgerufen werden und blockiert nicht. Die Aufgaben eines Threads
+	 * werden in der Reihenfolge ausgeführt, in der er sie einstellt.
+	 * 
+	 * @param aufgabe Die Aufgabe.
+	 */
+	public void einstellen(Runnable aufgabe) {
+		Knoten knoten = new Knoten(aufgabe);
+		ende.getAndSet(knoten).naechster = knoten;
+		if (geplant.compareAndSet(false, true)) verteiler.planen(this);
+	}
+	
+	/**
+	 * Stellt eine Aufgabe nach einer Verzögerung in das Postfach.
+	 * 
+	 * Eine solche Frist kann nicht zurückgenommen werden. Wird sie nicht mehr gebraucht, muss die
+	 * Aufgabe selbst prüfen, ob sie noch gilt.
+	 * 
+	 * @param aufgabe Die Aufgabe.
+	 * @param verzoegerung Die Verzögerung in ms.
+	 */
+	public void einstellenNach(Runnable aufgabe, long verzoegerung) {
+		verteiler.planenNach(this, aufgabe, verzoegerung);
+	}
+	
+	/**
+	 * Arbeitet die Aufgaben im Postfach ab. Wird nur vom Verteiler aufgerufen.
+	 */
+	@Override
+	public void run() {
+		for (int i = 0; i < STAPEL; i++) {
+			Runnable aufgabe = entnehmen();
+			if (aufgabe == null) break;
+			
+			try {
+				aufgabe.run();
+			} catch (RuntimeException e) {
+				Log.e(TAG, "Aufgabe fehlgeschlagen: " + e);
+			}
+		}
+		
+		// Freigeben, und neu einplanen, falls inzwischen etwas eingetroffen ist
+		geplant.set(false);
+		if (!istLeer() && geplant.compareAndSet(false, true)) verteiler.planen(this);
+	}
+	
+	/**
+	 * Entnimmt die nächste Aufgabe aus der Warteschlange.
+	 * 
+	 * @return Die Aufgabe oder null, wenn die Warteschlange leer ist.
+	 */
+	private Runnable entnehmen() {
+		Knoten naechster = anfang.naechster;
+		if (naechster == null) {
+			// Ein Erzeuger hat angehängt, aber die Verkettung noch nicht gesetzt: kurz warten
+			if (istLeer()) return null;
+			while ((naechster = anfang.naechster) == null) Thread.yield();
+		}
+		
+		// Der entnommene Knoten wird zum neuen Platzhalter
+		anfang = naechster;
+		Runnable aufgabe = naechster.aufgabe;
+		naechster.aufgabe = null;
+		
+		return aufgabe;
+	}
+	
+	/**
+	 * Prüft, ob die Warteschlange leer ist.
+	 * 
+	 * @return true, wenn kein Erzeuger etwas angehängt hat.
+	 */
+	private boolean istLeer() {
+		return ende.get() == anfang;
+	}
+}
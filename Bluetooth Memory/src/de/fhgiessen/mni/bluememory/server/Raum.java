@@ -0,0 +1,1061 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.os.SystemClock;
+import android.util.Log;
+import de.fhgiessen.mni.bluememory.ServerService;
+import de.fhgiessen.mni.bluememory.datentypen.GlobalValues;
+import de.fhgiessen.mni.bluememory.datentypen.Spielfeld;
+import de.fhgiessen.mni.bluememory.datentypen.StatusCodes;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameCodec;
+import de.fhgiessen.mni.bluememory.netzwerk.Nachricht;
+import de.fhgiessen.mni.bluememory.netzwerk.Protokoll;
+
+/**
+ * Ein Spiel mit seinen Spielern, seinem Spielfeld und dem Spielablauf.
+ * 
+ * Der ServerService kann mehrere Räume gleichzeitig betreiben (s. ServerService.getRaum()).
+ * Jeder Spieler gehört ab HELO zu genau einem Raum, alle Nachrichten zum Spielablauf werden
+ * dort verarbeitet. Räume teilen keinen veränderlichen Zustand, jeder hat seine eigene
+ * Spielerliste, sein eigenes Spielfeld und seine eigenen Zähler.
+ * 
+ * Der Raum ist für das Spielfeld maßgeblich: Er setzt jeden Zug auf seinem eigenen Spielfeld
+ * um und entscheidet sofort, wer als nächstes am Zug ist. Clients mit Protokoll.ZUG_PIPELINE
+ * erhalten diese Entscheidung zusammen mit dem Zug (POST_ZUG_ERGEBNIS) und geben den nächsten
+ * Spieler nach der Pause selbst frei, RATE bekommen sie nur noch zum Abgleich. Ältere Clients
+ * erhalten POST_ZUG und erst nach ihren Bestätigungen RATE. Solange diese ausstehen, wartet
+ * ein neuer Zug im Raum (s. onZug()). Mit GlobalValues.ZUG_PAARE werden beide Karten eines
+ * Spielzugs zusammen empfangen und verteilt, wenn alle Spieler das beim Start des Spiels
+ * vereinbart haben (s. onZugPaar()). Die Pause vor dem Zudecken führt der Raum für Clients mit
+ * Protokoll.SERVER_PAUSE selbst: Er plant das Zudecken als Frist in seinem Postfach und sendet
+ * ihnen danach RATE (s. pauseSetzen()). Clients mit Protokoll.UHRZEIT erhalten stattdessen den
+ * Zeitpunkt des Zudeckens auf seiner Uhr (SystemClock.uptimeMillis()) und decken selbst zu.
+ * Der aktive Spieler mit Protokoll.OPTIMISTISCH hat seinen Zug schon angezeigt und erhält statt
+ * des Ergebnisses nur die Annahme (ZUG_ANGENOMMEN), ungültige Züge lehnt der Raum mit RATE ab.
+ * 
+ * Auf Bestätigungen (Spielfeld, Züge älterer Clients) wartet der Raum höchstens
+ * GlobalValues.BESTAETIGUNG_TIMEOUT. Wer bis dahin nicht bestätigt hat, erhält das Spielfeld neu,
+ * das Spiel geht ohne ihn weiter (s. Bestaetigungen).
+ * 
+ * Nachrichten, die einen Spieler nennen, kodiert der Raum in zwei Fassungen: mit dem Platz des
+ * Spielers für Clients mit Protokoll.PLATZ_NUMMERN und mit seinem Namen für ältere Clients (s.
+ * broadcastSpieler()).
+ * 
+ * Im Raum ServerService.LOKALER_RAUM sitzt der lokale Spieler immer auf dem Platz LOKALER_PLATZ
+ * und wird durch ein ServerLokal-Objekt repräsentiert.
+ * 
+ * Jeder Raum hat sein eigenes Postfach (s. getPostfach()), alle Methoden laufen als Aufgaben
+ * darin. Die Ereignisse eines Raums werden so in der Reihenfolge ihres Eintreffens und nie
+ * gleichzeitig verarbeitet, verschiedene Räume laufen aber parallel auf allen Kernen (s.
+ * Verteiler). Mit dem Service und anderen Räumen spricht der Raum ebenfalls nur über deren
+ * Postfächer. Für andere Threads (z.B. den UI-Thread des lokalen Spielers) gibt es nur
+ * getLobby(), getRtt(), getJitter(), istGestartet(), hatZugPaare() und wartetAufWiederverbindung().
+ */
+public class Raum {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.Raum";
+	
+	/** Der Platz des lokalen Spielers im Raum ServerService.LOKALER_RAUM */
+	public static final int LOKALER_PLATZ = 0;
+	
+	/** Empfänger einer Nachricht: alle Spieler */
+	private static final int ALLE = 0;
+	
+	/** Empfänger einer Nachricht: Spieler mit Protokoll.ZUG_PIPELINE */
+	private static final int PIPELINE = 1;
+	
+	/** Empfänger einer Nachricht: Spieler ohne Protokoll.ZUG_PIPELINE */
+	private static final int KLASSISCH = 2;
+	
+	/** Empfänger einer Nachricht: Spieler, die nach der Pause auf RATE warten (Protokoll.SERVER_PAUSE ohne UHRZEIT, mit Pipeline oder Zugpaaren) */
+	private static final int SERVER_PAUSE = 3;
+	
+	/** Fassung einer Nachricht, die einen Spieler nennt: mit seinem Namen (s. broadcastSpieler()) */
+	private static final int FASSUNG_NAME = 0;
+	
+	/** Fassung einer Nachricht, die einen Spieler nennt: mit seinem Platz */
+	private static final int FASSUNG_PLATZ = 1;
+	
+	/** Fassung einer Nachricht, die einen Spieler nennt: mit seinem Platz und dem Zeitpunkt des Zudeckens */
+	private static final int FASSUNG_PLATZ_ZEIT = 2;
+	
+	/** Der Service, der den Raum betreibt */
+	private final ServerService server;
+	
+	/** Die Nummer des Raums */
+	private final int id;
+	
+	/** Das Postfach des Raums, darin laufen alle Ereignisse und Fristen */
+	private final Postfach postfach;
+	
+	/** Im Headless-Betrieb: Ab dieser Spielerzahl startet der Raum sein Spiel, sonst 0 */
+	private final int spielerFuerStart;
+	
+	/** true, wenn der Raum leer ist und keine Spieler mehr aufnimmt */
+	private boolean geschlossen;
+	
+	/** Der Platz des zur Zeit aktiven Spielers (s. Spielerliste) */
+	private int spielerAktiv;
+	
+	/** Zähler für die erfolgreich empfangenen Spielzüge */
+	private int zugOk;
+	
+	/** true, wenn beide Karten eines Spielzugs zusammen übertragen werden (s. GlobalValues.ZUG_PAARE), liest auch der lokale Client */
+	private volatile boolean zugPaare;
+	
+	/** Die ausstehenden Bestätigungen für das Spielfeld bzw. den letzten Zug (bei Zügen nur von Spielern ohne ZUG_PIPELINE) */
+	private final Bestaetigungen bestaetigungen;
+	
+	/** Züge, die vor den Bestätigungen des letzten Zugs eingetroffen sind und auf sie warten (mit OPTIMISTISCH beide Karten einer Runde) */
+	private final LinkedList<String> zuegeZurueckgestellt = new LinkedList<String>();
+	
+	/** Alle bisher getätigten Spielzüge */
+	private int zuege;
+	
+	/** Die erste Karte der laufenden Runde */
+	private int ersteKarte;
+	
+	/** true, wenn die Karten der letzten Runde auf dem Spielfeld des Raums noch zugedeckt werden müssen */
+	private boolean zudeckenAusstehend;
+	
+	/** Hält fest, ob das Spiel schon gestartet wurde oder noch nicht (liest auch der Service) */
+	private volatile boolean spielGestartet;
+	
+	/** Die Spieler im Raum mit ihren Plätzen, wird nur im Postfach des Raums verändert */
+	private final Spielerliste spielerliste;
+	
+	/** Abgebrochene Spieler und ihre laufenden Fristen (s. onVerbindungAbgebrochen()), liest auch der Service */
+	private Map<ServerRemote, Runnable> wiederverbindenFristen;
+	
+	/** Das Spielfeld des Raums */
+	public Spielfeld spielfeld;
+	
+	/** Das zuletzt binär kodierte Spielfeld als Frame, wird von allen Verbindungen geteilt */
+	private byte[] spielfeldFrame;
+	
+	/** Der Stand des Spielfelds in spielfeldFrame */
+	private int spielfeldFrameStand;
+	
+	/** Das zuletzt als JSON kodierte Spielfeld als Frame, für ältere Clients */
+	private byte[] spielfeldJsonFrame;
+	
+	/** Der Stand des Spielfelds in spielfeldJsonFrame */
+	private int spielfeldJsonFrameStand;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * @param server Der Service, der den Raum betreibt.
+	 * @param id Die Nummer des Raums.
+	 * @param spielfeld Das Spielfeld oder null, wenn keins erzeugt werden konnte.
+	 * @param spielerFuerStart Ab dieser Spielerzahl startet der Raum sein Spiel selbst, 0 nie.
+	 */
+	public Raum(ServerService server, int id, Spielfeld spielfeld, int spielerFuerStart) {
+		this.server = server;
+		this.id = id;
+		this.spielfeld = spielfeld;
+		this.spielerFuerStart = spielerFuerStart;
+		postfach = new Postfach(server.getVerteiler());
+		spielerliste = new Spielerliste();
+		bestaetigungen = new Bestaetigungen();
+		wiederverbindenFristen = new ConcurrentHashMap<ServerRemote, Runnable>();
+		spielGestartet = false;
+		zuege = 0;
+		zudeckenAusstehend = false;
+	}
+	
+	/**
+	 * Liefert die Nummer des Raums.
+	 * 
+	 * @return Die Nummer.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Liefert das Postfach des Raums, alle Aufrufe an den Raum werden dort eingestellt.
+	 * 
+	 * @return Das Postfach.
+	 */
+	public Postfach getPostfach() {
+		return postfach;
+	}
+	
+	/**
+	 * Liefert die Spieler im Raum.
+	 * 
+	 * @return Die Spielerliste, gelesen werden darf sie aus jedem Thread.
+	 */
+	public Spielerliste getSpielerliste() {
+		return spielerliste;
+	}
+	
+	/**
+	 * Prüft, ob das Spiel im Raum schon gestartet wurde. Darf aus jedem Thread aufgerufen werden.
+	 * 
+	 * @return true nach onSpielStarten().
+	 */
+	public boolean istGestartet() {
+		return spielGestartet;
+	}
+	
+	/**
+	 * Prüft, ob im laufenden Spiel beide Karten eines Spielzugs zusammen übertragen werden. Darf
+	 * aus jedem Thread aufgerufen werden.
+	 * 
+	 * @return true, wenn die Clients ZUG_PAAR senden sollen (s. GlobalValues.ZUG_PAARE).
+	 */
+	public boolean hatZugPaare() {
+		return zugPaare;
+	}
+	
+	/**
+	 * Prüft, ob im Raum noch Spieler auf eine Wiederverbindung warten. Darf aus jedem Thread
+	 * aufgerufen werden.
+	 * 
+	 * @return true, solange eine Frist läuft.
+	 */
+	public boolean wartetAufWiederverbindung() {
+		return !wiederverbindenFristen.isEmpty();
+	}
+	
+	/**
+	 * Veranlasst den Start des Spiels.
+	 */
+	public void onSpielStarten() {
+		spielGestartet = true;
+		
+		// Zugpaare nur, wenn alle Spieler sie beherrschen
+		boolean paare = GlobalValues.ZUG_PAARE;
+		for (ServerStrategie conn: spielerliste.alle()) {
+			if ((conn.getFaehigkeiten() & Protokoll.ZUG_PAKETE) == 0) paare = false;
+		}
+		zugPaare = paare;
+		Log.d(TAG, "Raum " + id + ": Spielstart, ohne Pipeline: " + anzahl(KLASSISCH) + ", Zugpaare: " + zugPaare);
+		
+		// Startsignal an alle senden, ggf. mit den Fähigkeiten, die für das Spiel gelten
+		broadcast(StatusCodes.STARTEN, zugPaare ? String.valueOf(Protokoll.ZUG_PAKETE) : null);
+		
+		// Auf das Spielfeld-OK aller Spieler warten
+		int schritt = bestaetigungen.oeffnen(Bestaetigungen.SPIELFELD, 0, 0);
+		for (ServerStrategie conn: spielerliste.alle()) bestaetigungen.erwarten(spielerliste.getPlatz(conn));
+		fristSetzen(schritt, GlobalValues.BESTAETIGUNG_TIMEOUT);
+		
+		imService(new Runnable() {
+			@Override
+			public void run() {
+				server.pruefeTransportServer();
+			}
+		});
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein neuer Spieler den Raum betreten möchte.
+	 * 
+	 * Eine entfernte Verbindung hat der Service vorher an das Postfach des Raums übergeben (s.
+	 * ServerService.onHelo()). Wird sie abgelehnt, geht sie an den Service zurück und kann es
+	 * mit einem anderen Namen erneut versuchen.
+	 * 
+	 * @param connection Die Verbindung des Spielers, null für den lokalen Spieler.
+	 * @param name Der Name des neuen Spielers.
+	 */
+	public void onNeuerSpieler(final ServerRemote connection, final String name) {
+		// Ein inzwischen geschlossener Raum gibt den Spieler zurück, der Service legt ihn neu an
+		if (geschlossen && (connection != null)) {
+			imService(new Runnable() {
+				@Override
+				public void run() {
+					server.onHeloWiederholen(connection, id, name);
+				}
+			});
+			connection.weiterleiten(null);
+			return;
+		}
+		
+		// Nach dem Start können keine neuen Spieler mehr beitreten, die Verbindung muss noch bestehen
+		if ((connection != null) && (spielGestartet || !connection.istVerbunden())) {
+			ablehnen(connection);
+			return;
+		}
+		
+		if (connection == null) { // Lokaler Client, sitzt immer auf dem ersten Platz
+			ServerStrategie lokal = spielerliste.get(LOKALER_PLATZ);
+			if (spielerliste.umbenennen(lokal, name)) lokal.sendeHello();
+			else lokal.sendeFehlerHelo();
+			return;
+		}
+		
+		int platz = spielerliste.hinzufuegen(connection, name);
+		if (platz >= 0) { // Remote Client, Name ist noch frei
+			connection.setRaum(this);
+			connection.sendeHello();
+			
+			// Den anderen Clients den neuen Mitspieler auf seinem Platz zeigen
+			broadcastSpieler(StatusCodes.PLAYER_JOINED, null, platz, connection, -1, connection, ALLE);
+			
+			// Headless startet der Raum, sobald er voll ist
+			if ((spielerFuerStart > 0) && (spielerliste.anzahl() >= spielerFuerStart)) onSpielStarten();
+		} else { // Spielername nicht frei oder Raum voll
+			ablehnen(connection);
+		}
+	}
+	
+	/**
+	 * Lehnt eine entfernte Verbindung ab und gibt sie an den Service zurück.
+	 * 
+	 * Der Service erfährt davon vor dem Client, ein erneutes HELO findet die Verbindung also
+	 * wieder unter den neuen Verbindungen.
+	 * 
+	 * @param connection Die Verbindung.
+	 */
+	private void ablehnen(final ServerRemote connection) {
+		imService(new Runnable() {
+			@Override
+			public void run() {
+				server.onHeloAbgelehnt(connection);
+			}
+		});
+		connection.weiterleiten(null);
+		connection.sendeFehlerHelo();
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein Spieler das Spielfeld erfolgreich empfangen hat.
+	 * 
+	 * Jeder Spieler zählt nur einmal, ein OK nach Ablauf der Frist oder mitten im Spiel (z.B.
+	 * von einem älteren Client nach einem Abgleich) wird ignoriert.
+	 * 
+	 * @param spieler Der Spieler, der das Spielfeld bestätigt.
+	 */
+	public void onSpielfeldOk(ServerStrategie spieler) {
+		if (bestaetigungen.bestaetigen(Bestaetigungen.SPIELFELD, spielerliste.getPlatz(spieler))) spielBeginnen();
+	}
+	
+	/**
+	 * Sendet allen Spielern den Spieler, der beginnen darf, sobald alle das Spielfeld haben.
+	 */
+	private void spielBeginnen() {
+		ersterSpieler();
+		broadcastRate();
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein Spielzug empfangen wurde.
+	 * 
+	 * Der nächste Spieler wird sofort ermittelt. Clients mit ZUG_PIPELINE erhalten ihn mit dem Zug
+	 * (POST_ZUG_ERGEBNIS), ältere Clients erhalten POST_ZUG und nach ihren Bestätigungen RATE (s.
+	 * zugFortsetzen()). Trifft ein Zug ein, bevor diese Bestätigungen vorliegen (z.B. weil der
+	 * nächste Spieler ZUG_PIPELINE hat und nach seiner Pause schneller ist), wird er bis dahin
+	 * zurückgestellt. Der aktive Spieler erhält mit Protokoll.OPTIMISTISCH nur ZUG_ANGENOMMEN.
+	 * 
+	 * Züge nimmt der Raum nur vom aktiven Spieler an (s. vomAktivenSpieler()).
+	 * 
+	 * @param spieler Der Spieler, der den Zug sendet.
+	 * @param zug Der Spielzug als String.
+	 */
+	public void onZug(ServerStrategie spieler, String zug) {
+		if (!vomAktivenSpieler(spieler)) return;
+		
+		if (bestaetigungen.istOffen(Bestaetigungen.ZUG)) {
+			zuegeZurueckgestellt.add(zug);
+			return;
+		}
+		zugVerarbeiten(zug);
+	}
+	
+	/**
+	 * Verarbeitet einen Spielzug des aktiven Spielers (s. onZug()).
+	 * 
+	 * @param zug Der Spielzug als String.
+	 */
+	private void zugVerarbeiten(String zug) {
+		int karte;
+		try {
+			karte = Integer.parseInt(zug);
+		} catch (NumberFormatException e) {
+			// Wird unten wie eine ungültige Karte abgelehnt
+			karte = -1;
+		}
+		
+		// Zudecken der letzten Runde nachholen, die Pause ist inzwischen abgelaufen
+		if (zudeckenAusstehend) {
+			spielfeld.zudecken();
+			zudeckenAusstehend = false;
+		}
+		
+		// Ungültige Züge verwerfen und den aktiven Spieler erneut freigeben
+		if (!spielfeld.check(karte, true)) {
+			Log.w(TAG, "Ungültiger Zug: " + zug);
+			broadcastRate();
+			return;
+		}
+		
+		if ((zuege > 0) && (zugOk < spielerliste.anzahl()))
+			Log.w(TAG, "Zug " + zuege + " wurde nur von " + zugOk + " Spielern bestätigt.");
+		
+		zuege++;
+		zugOk = 0;
+		
+		// Zug auf dem eigenen Spielfeld umsetzen
+		spielfeld.touch(karte);
+		boolean rundeZuende = (zuege % 2) == 0;
+		if (rundeZuende) spielfeld.checkPair(ersteKarte, karte);
+		else ersteKarte = karte;
+		
+		// Nächsten Spieler und Zeitpunkt des Zudeckens sofort ermitteln
+		int zudeckenNach = 0;
+		if (rundeZuende && !spielfeld.lastFoundPair) {
+			zudeckenNach = spielfeld.pause;
+			zudeckenAusstehend = true;
+		}
+		ServerStrategie urheber = optimistischerSpieler(PIPELINE);
+		int naechster = naechsterSpieler();
+		long zudeckenUm = (zudeckenNach > 0) ? SystemClock.uptimeMillis() + zudeckenNach : -1;
+		
+		// Clients mit Pipeline bekommen alles in einer Nachricht, ältere nur den Zug
+		broadcastSpieler(StatusCodes.POST_ZUG_ERGEBNIS, karte + ";" + zudeckenNach + ";", naechster, spielerliste.get(naechster), zudeckenUm, urheber, PIPELINE);
+		if (urheber != null) zugAnnehmen(urheber, zudeckenNach, naechster, zudeckenUm);
+		if (zudeckenNach > 0) pauseSetzen(zudeckenNach);
+		if (anzahl(KLASSISCH) > 0) {
+			broadcastGruppe(KLASSISCH, StatusCodes.POST_ZUG, zug);
+			
+			// Die älteren Clients geben den nächsten Spieler erst nach der Pause frei
+			int schritt = bestaetigungen.oeffnen(Bestaetigungen.ZUG, zuege, zudeckenNach);
+			for (ServerStrategie conn: spielerliste.alle()) {
+				if (gehoertZu(conn, KLASSISCH)) bestaetigungen.erwarten(spielerliste.getPlatz(conn));
+			}
+			fristSetzen(schritt, zudeckenNach + GlobalValues.BESTAETIGUNG_TIMEOUT);
+			return;
+		}
+		
+		if (spielfeld.isSpielZuende()) spielBeenden();
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein ganzer Spielzug empfangen wurde (s. GlobalValues.ZUG_PAARE).
+	 * 
+	 * Beide Karten werden auf dem eigenen Spielfeld umgesetzt, das Ergebnis geht samt dem nächsten
+	 * Spieler in einer Nachricht an alle (POST_ZUG_PAAR), mit Protokoll.OPTIMISTISCH an den
+	 * aktiven Spieler nur ZUG_ANGENOMMEN. Wie im Pipeline-Modus wird dabei nicht auf die
+	 * Bestätigungen gewartet.
+	 * 
+	 * Wie bei onZug() nimmt der Raum den Zug nur vom aktiven Spieler an.
+	 * 
+	 * @param spieler Der Spieler, der den Zug sendet.
+	 * @param erste Die erste aufgedeckte Karte (-1, wenn sie nicht lesbar war).
+	 * @param zweite Die zweite aufgedeckte Karte (-1, wenn sie nicht lesbar war).
+	 */
+	public void onZugPaar(ServerStrategie spieler, int erste, int zweite) {
+		if (!vomAktivenSpieler(spieler)) return;
+		
+		// Zudecken der letzten Runde nachholen, die Pause ist inzwischen abgelaufen
+		if (zudeckenAusstehend) {
+			spielfeld.zudecken();
+			zudeckenAusstehend = false;
+		}
+		
+		// Ungültige Züge verwerfen und den aktiven Spieler erneut freigeben
+		if ((erste == zweite) || ((zuege % 2) != 0) || !spielfeld.check(erste, true) || !spielfeld.check(zweite, true)) {
+			Log.w(TAG, "Ungültiger Zug: " + erste + ";" + zweite);
+			broadcastRate();
+			return;
+		}
+		
+		zuege += 2;
+		zugOk = 0;
+		
+		// Zug auf dem eigenen Spielfeld umsetzen
+		spielfeld.touch(erste);
+		spielfeld.touch(zweite);
+		boolean paar = spielfeld.checkPair(erste, zweite);
+		
+		// Beide Karten, Ergebnis, Zeitpunkt des Zudeckens und nächsten Spieler in einer Nachricht senden
+		int zudeckenNach = 0;
+		if (!paar) {
+			zudeckenNach = spielfeld.pause;
+			zudeckenAusstehend = true;
+		}
+		ServerStrategie urheber = optimistischerSpieler(ALLE);
+		int naechster = naechsterSpieler();
+		long zudeckenUm = (zudeckenNach > 0) ? SystemClock.uptimeMillis() + zudeckenNach : -1;
+		broadcastSpieler(StatusCodes.POST_ZUG_PAAR, erste + ";" + zweite + ";" + (paar ? 1 : 0) + ";" + zudeckenNach + ";", naechster, spielerliste.get(naechster), zudeckenUm, urheber, ALLE);
+		if (urheber != null) zugAnnehmen(urheber, zudeckenNach, naechster, zudeckenUm);
+		if (zudeckenNach > 0) pauseSetzen(zudeckenNach);
+		
+		if (spielfeld.isSpielZuende()) spielBeenden();
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein Client den Spielzug erfolgreich umgesetzt hat.
+	 * 
+	 * @param spieler Der Spieler, der den Zug bestätigt.
+	 */
+	public void onZugOk(ServerStrategie spieler) {
+		// Mit Pipeline und Zugpaaren wird nur gezählt, der Spielablauf wartet nicht auf diese OKs
+		zugOk++;
+		if (bestaetigungen.bestaetigen(Bestaetigungen.ZUG, spielerliste.getPlatz(spieler))) zugFortsetzen();
+	}
+	
+	/**
+	 * Setzt das Spiel fort, sobald alle Spieler ohne ZUG_PIPELINE den letzten Zug bestätigt haben,
+	 * getrennt wurden oder ihre Frist abgelaufen ist.
+	 * 
+	 * Sie erhalten dann den Spieler, der als nächstes dran ist (RATE), und zurückgestellte Züge
+	 * werden verarbeitet, bis wieder ein Zug auf Bestätigungen wartet.
+	 */
+	private void zugFortsetzen() {
+		// Testen, ob alle Karten aufgedeckt wurden (== Spiel ist zuende)
+		if (spielfeld.isSpielZuende()) {
+			spielBeenden();
+			return;
+		}
+		
+		// Die Karten der Runde zudecken, der nächste Spieler steht schon fest (s. onZug())
+		if (zudeckenAusstehend) {
+			spielfeld.zudecken();
+			zudeckenAusstehend = false;
+		}
+		broadcastSpieler(StatusCodes.RATE, null, spielerAktiv, spielerliste.get(spielerAktiv), -1, null, KLASSISCH);
+		
+		// Der nächste Spieler war schneller
+		while (!zuegeZurueckgestellt.isEmpty() && !bestaetigungen.istOffen(Bestaetigungen.ZUG)) zugVerarbeiten(zuegeZurueckgestellt.removeFirst());
+	}
+	
+	/**
+	 * Plant das Ende der Pause nach einem Zug, dessen Karten zugedeckt werden müssen.
+	 * 
+	 * Dann werden die Karten auf dem Spielfeld des Raums zugedeckt und die Clients mit
+	 * Protokoll.SERVER_PAUSE erhalten den Spieler, der am Zug ist (RATE). Ist bis dahin schon ein
+	 * neuer Zug eingetroffen, hat onZug() das Zudecken nachgeholt und die Frist verfällt.
+	 * 
+	 * @param pause Die Pause in ms.
+	 */
+	private void pauseSetzen(long pause) {
+		final int zug = zuege;
+		postfach.einstellenNach(new Runnable() {
+			@Override
+			public void run() {
+				if ((zug != zuege) || spielfeld.isSpielZuende()) return;
+				
+				if (zudeckenAusstehend) {
+					spielfeld.zudecken();
+					zudeckenAusstehend = false;
+				}
+				broadcastSpieler(StatusCodes.RATE, null, spielerAktiv, spielerliste.get(spielerAktiv), -1, null, SERVER_PAUSE);
+			}
+		}, pause);
+	}
+	
+	/**
+	 * Setzt nach Ablauf einer Frist fort, wenn der Schritt dann noch offen ist.
+	 * 
+	 * Die Spieler, deren Bestätigung fehlt, erhalten das aktuelle Spielfeld, um sich abzugleichen.
+	 * 
+	 * @param schritt Die Nummer des Schritts (s. Bestaetigungen.oeffnen()).
+	 * @param frist Die Frist in ms.
+	 */
+	private void fristSetzen(final int schritt, long frist) {
+		postfach.einstellenNach(new Runnable() {
+			@Override
+			public void run() {
+				int art = bestaetigungen.getArt();
+				int[] nachzuegler = bestaetigungen.fristAblaufen(schritt);
+				if (nachzuegler == null) return;
+				
+				for (int platz: nachzuegler) {
+					ServerStrategie conn = spielerliste.get(platz);
+					Log.w(TAG, "Raum " + id + ": " + conn + " hat " + ((art == Bestaetigungen.ZUG) ? "Zug " + bestaetigungen.getZug() : "das Spielfeld") + " nicht rechtzeitig bestätigt.");
+					if (conn != null) conn.sendeSpielfeld();
+				}
+				fortsetzen(art);
+			}
+		}, frist);
+	}
+	
+	/**
+	 * Setzt das Spiel fort, nachdem ein Schritt abgeschlossen wurde.
+	 * 
+	 * @param art Die Art des Schritts (s. Bestaetigungen).
+	 */
+	private void fortsetzen(int art) {
+		if (art == Bestaetigungen.SPIELFELD) spielBeginnen();
+		else if (art == Bestaetigungen.ZUG) zugFortsetzen();
+	}
+	
+	/**
+	 * Beendet das Spiel und protokolliert, wie lange der Tisch auf die einzelnen Spieler gewartet hat.
+	 */
+	private void spielBeenden() {
+		Log.d(TAG, "Spiel zuende.");
+		for (int platz = 0; platz < bestaetigungen.getPlaetze(); platz++) {
+			if (bestaetigungen.getVerzoegerungen(platz) == 0) continue;
+			Log.d(TAG, "Raum " + id + ": Auf Platz " + platz + " (" + spielerliste.get(platz) + ") wurde " + bestaetigungen.getVerzoegerungen(platz) + "-mal gewartet, insgesamt " + bestaetigungen.getVerzoegerungMs(platz) + " ms.");
+		}
+		
+		broadcast(StatusCodes.BEENDEN, null);
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn ein Spieler den Raum verlassen hat.
+	 * 
+	 * @param spieler Der Spieler, null für den lokalen Spieler.
+	 */
+	public void onVerbindungGetrennt(ServerStrategie spieler) {
+		Log.d(TAG, "Spieler " + spieler + " hat das Spiel verlassen.");
+		
+		if (spielerliste.anzahl() == 0) return;
+		
+		// Spieler, dessen Frist noch läuft (die Frist selbst verfällt dann, s. onVerbindungAbgebrochen())
+		if ((spieler != null) && (wiederverbindenFristen.remove(spieler) != null)) server.sitzungBeendet(((ServerRemote) spieler).getToken());
+		
+		// Wenn null übergeben wurde, handelt es sich um den lokalen Spieler
+		if (spieler == null) spieler = spielerliste.get(LOKALER_PLATZ);
+		
+		// Nur Spieler, die noch im Raum sind
+		int platz = spielerliste.getPlatz(spieler);
+		if (platz < 0) return;
+		spieler.trenneVerbindung();
+		spielerliste.entfernen(spieler);
+		
+		// Nicht auf die Bestätigung des getrennten Spielers warten
+		int art = bestaetigungen.getArt();
+		boolean abgeschlossen = bestaetigungen.entfernen(platz);
+		
+		broadcastSpieler(StatusCodes.PLAYER_LEFT, null, platz, spieler, -1, null, ALLE);
+		if (spielerliste.anzahl() == 0) {
+			// Der Raum des lokalen Spielers bleibt bestehen
+			if (server.getLokalerRaum() == this) return;
+			geschlossen = true;
+			imService(new Runnable() {
+				@Override
+				public void run() {
+					server.onRaumLeer(Raum.this);
+				}
+			});
+			return;
+		}
+		if (!spielGestartet) {
+			sucheSpieler();
+			return;
+		}
+		
+		// Solange die Spielfelder bestätigt werden, ist noch niemand am Zug
+		if (art == Bestaetigungen.SPIELFELD) {
+			if (abgeschlossen) spielBeginnen();
+		} else {
+			// Die anderen behalten ihre Plätze, war der Spieler am Zug, ist der nächste dran
+			boolean warAktiv = (platz == spielerAktiv);
+			if (warAktiv) {
+				spielerAktiv = spielerliste.naechsterPlatz(platz);
+				zuegeZurueckgestellt.clear();
+				
+				// Nach der ersten Karte die Runde abbrechen: Karte zudecken, der nächste beginnt eine neue
+				if ((zuege % 2) != 0) {
+					spielfeld.zudecken();
+					zudeckenAusstehend = false;
+					zuege++;
+				}
+			}
+			if (abgeschlossen) zugFortsetzen();
+			
+			// Clients mit Pipeline kennen den getrennten Spieler schon als nächsten, deshalb alle abgleichen
+			if (warAktiv) broadcastRate();
+		}
+		imService(new Runnable() {
+			@Override
+			public void run() {
+				server.pruefeTransportServer();
+			}
+		});
+	}
+	
+	/**
+	 * Wird aufgerufen, wenn die Verbindung zu einem Spieler unerwartet abgebrochen ist.
+	 * 
+	 * Läuft das Spiel, bleibt der Spieler mit seiner Sitzung für WIEDERVERBINDEN_TIMEOUT im Raum
+	 * und der Service wartet wieder auf Verbindungen. Nachrichten an den Spieler werden in der
+	 * Zwischenzeit aufbewahrt. Setzt der Client die Sitzung nicht rechtzeitig fort, wird er wie
+	 * bei onVerbindungGetrennt() entfernt.
+	 * 
+	 * @param spieler Die abgebrochene Verbindung.
+	 */
+	public void onVerbindungAbgebrochen(final ServerRemote spieler) {
+		if (!spielGestartet || !spieler.hatSitzung() || (spielerliste.getPlatz(spieler) < 0)) {
+			onVerbindungGetrennt(spieler);
+			return;
+		}
+		
+		Log.w(TAG, "Verbindung zu " + spieler + " abgebrochen, warte auf Wiederverbindung.");
+		spieler.trenneVerbindung();
+		
+		// Eine Frist lässt sich nicht zurücknehmen, sie gilt nur, solange sie noch eingetragen ist
+		Runnable frist = new Runnable() {
+			@Override
+			public void run() {
+				if (wiederverbindenFristen.get(spieler) != this) return;
+				Log.w(TAG, spieler + " hat sich nicht rechtzeitig wieder verbunden.");
+				onVerbindungGetrennt(spieler);
+			}
+		};
+		wiederverbindenFristen.put(spieler, frist);
+		server.sitzungWartet(spieler.getToken(), this);
+		postfach.einstellenNach(frist, GlobalValues.WIEDERVERBINDEN_TIMEOUT);
+		
+		sucheSpieler();
+	}
+	
+	/**
+	 * Sucht den abgebrochenen Spieler, zu dem eine Sitzung gehört.
+	 * 
+	 * @param token Das Token der Sitzung.
+	 * @param letzteSequenz Die Nummer der letzten Nachricht, die der Client empfangen hat.
+	 * @return Die abgebrochene Verbindung oder null, wenn die Sitzung nicht in diesem Raum liegt.
+	 */
+	private ServerRemote sucheSitzung(String token, int letzteSequenz) {
+		for (ServerRemote conn: wiederverbindenFristen.keySet()) {
+			if (conn.kannFortsetzen(token, letzteSequenz)) return conn;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Lässt eine neue Verbindung die Sitzung eines abgebrochenen Spielers fortsetzen.
+	 * 
+	 * Die neue Verbindung übernimmt den Platz des abgebrochenen Spielers in der Liste, der
+	 * Client erhält die verpassten Nachrichten und den Spieler, der gerade am Zug ist. Läuft
+	 * die Frist inzwischen nicht mehr, wird die neue Verbindung abgewiesen und getrennt.
+	 * 
+	 * @param verbindung Die neue Verbindung, vom Service an das Postfach des Raums übergeben.
+	 * @param token Das Token der Sitzung.
+	 * @param letzteSequenz Die Nummer der letzten Nachricht, die der Client empfangen hat.
+	 */
+	public void onFortsetzen(ServerRemote verbindung, String token, int letzteSequenz) {
+		ServerRemote alt = sucheSitzung(token, letzteSequenz);
+		if ((spielerliste.getPlatz(alt) < 0) || (wiederverbindenFristen.remove(alt) == null)) {
+			Log.w(TAG, "Sitzung kann nicht fortgesetzt werden.");
+			verbindung.weiterleiten(null);
+			verbindung.sendeFehlerFortsetzen();
+			verbindung.trenneVerbindung();
+			return;
+		}
+		
+		server.sitzungBeendet(token);
+		verbindung.uebernehmeSitzung(alt, letzteSequenz);
+		spielerliste.ersetzen(alt, verbindung);
+		Log.d(TAG, "Spieler " + verbindung + " ist wieder verbunden.");
+		
+		// Falls der letzte Zug des Clients verloren ging, darf er ihn wiederholen
+		if (!spielfeld.isSpielZuende()) verbindung.sendeRate(spielerAktiv);
+		
+		imService(new Runnable() {
+			@Override
+			public void run() {
+				server.pruefeTransportServer();
+			}
+		});
+	}
+	
+	/**
+	 * Liefert die Namen der Spieler im Raum. Darf aus jedem Thread aufgerufen werden.
+	 * 
+	 * @return Die Namen in der Reihenfolge der Plätze (unveränderlich).
+	 */
+	public List<String> getLobby() {
+		return spielerliste.getNamen();
+	}
+	
+	/**
+	 * Liefert die geglättete Round-Trip-Time zu einem Spieler (s. Herzschlag). Darf aus jedem
+	 * Thread aufgerufen werden.
+	 * 
+	 * @param spieler Der Name des Spielers.
+	 * @return Die RTT in ms oder -1, wenn sie nicht bekannt ist (z.B. beim lokalen Spieler).
+	 */
+	public int getRtt(String spieler) {
+		ServerStrategie conn = spielerliste.get(spieler);
+		return (conn != null) ? conn.getRtt() : -1;
+	}
+	
+	/**
+	 * Liefert die Schwankung der Round-Trip-Time zu einem Spieler (s. Herzschlag). Darf aus
+	 * jedem Thread aufgerufen werden.
+	 * 
+	 * @param spieler Der Name des Spielers.
+	 * @return Der Jitter in ms oder -1, wenn er nicht bekannt ist.
+	 */
+	public int getJitter(String spieler) {
+		ServerStrategie conn = spielerliste.get(spieler);
+		return (conn != null) ? conn.getJitter() : -1;
+	}
+	
+	/**
+	 * Trennt alle Spieler und bricht laufende Fristen ab.
+	 * 
+	 * Danach läuft im Raum nichts mehr: Die Writer senden noch die wartenden Nachrichten und
+	 * schließen dann die Verbindungen, woraufhin auch die lesenden Threads enden.
+	 */
+	public void schliessen() {
+		geschlossen = true;
+		for (ServerRemote conn: wiederverbindenFristen.keySet()) server.sitzungBeendet(conn.getToken());
+		wiederverbindenFristen.clear();
+		
+		for (ServerStrategie conn: spielerliste.alle()) conn.trenneVerbindung();
+		spielerliste.leeren();
+	}
+	
+	/**
+	 * Lässt den Service nach neuen Spielern suchen.
+	 */
+	private void sucheSpieler() {
+		imService(new Runnable() {
+			@Override
+			public void run() {
+				server.sucheSpieler();
+			}
+		});
+	}
+	
+	/**
+	 * Stellt eine Aufgabe in das Postfach des Service.
+	 * 
+	 * @param aufgabe Die Aufgabe.
+	 */
+	private void imService(Runnable aufgabe) {
+		server.getPostfach().einstellen(aufgabe);
+	}
+	
+	/**
+	 * Sendet eine Nachricht an alle Spieler im Raum.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter oder null, falls es keine gibt.
+	 */
+	public void broadcast(byte status, String params) {
+		broadcast(status, params, null);
+	}
+	
+	/**
+	 * Sendet eine Nachricht an alle Spieler im Raum außer einem.
+	 * 
+	 * Die Nachricht wird nur einmal kodiert, alle Verbindungen senden denselben Frame. Gesendet
+	 * wird an die Momentaufnahme der Spielerliste, Änderungen währenddessen stören nicht.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter oder null, falls es keine gibt.
+	 * @param ausser Die Verbindung, die die Nachricht nicht erhält (z.B. der Absender) oder null.
+	 */
+	public void broadcast(byte status, String params, ServerStrategie ausser) {
+		Nachricht nachricht = new Nachricht(status, params);
+		for (ServerStrategie conn: spielerliste.alle()) if (conn != ausser) conn.sende(nachricht);
+	}
+	
+	/**
+	 * Sendet eine Nachricht an einen Teil der Spieler im Raum.
+	 * 
+	 * @param gruppe Die Empfänger (ALLE, PIPELINE, KLASSISCH oder SERVER_PAUSE).
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter oder null, falls es keine gibt.
+	 */
+	private void broadcastGruppe(int gruppe, byte status, String params) {
+		Nachricht nachricht = null;
+		for (ServerStrategie conn: spielerliste.alle()) {
+			if (!gehoertZu(conn, gruppe)) continue;
+			
+			if (nachricht == null) nachricht = new Nachricht(status, params);
+			conn.sende(nachricht);
+		}
+	}
+	
+	/**
+	 * Prüft, ob ein Spieler zu einer Gruppe von Empfängern gehört.
+	 * 
+	 * @param conn Der Spieler.
+	 * @param gruppe Die Empfänger (ALLE, PIPELINE, KLASSISCH oder SERVER_PAUSE).
+	 * @return true, wenn der Spieler dazugehört.
+	 */
+	private boolean gehoertZu(ServerStrategie conn, int gruppe) {
+		if (gruppe == ALLE) return true;
+		
+		boolean pipeline = (conn.getFaehigkeiten() & Protokoll.ZUG_PIPELINE) != 0;
+		if (gruppe == SERVER_PAUSE) return (pipeline || zugPaare) && ((conn.getFaehigkeiten() & (Protokoll.SERVER_PAUSE | Protokoll.UHRZEIT)) == Protokoll.SERVER_PAUSE);
+		return (gruppe == PIPELINE) ? pipeline : !pipeline;
+	}
+	
+	/**
+	 * Zählt die Spieler einer Gruppe von Empfängern.
+	 * 
+	 * @param gruppe Die Empfänger (ALLE, PIPELINE, KLASSISCH oder SERVER_PAUSE).
+	 * @return Die Anzahl der Spieler im Raum, die dazugehören.
+	 */
+	private int anzahl(int gruppe) {
+		int anzahl = 0;
+		for (ServerStrategie conn: spielerliste.alle()) if (gehoertZu(conn, gruppe)) anzahl++;
+		
+		return anzahl;
+	}
+	
+	/**
+	 * Prüft, ob ein Zug vom Spieler kommt, der am Zug ist. Der Raum ist für den nächsten Spieler
+	 * maßgeblich, ein anderer Spieler erhält deshalb nur RATE zum Abgleich.
+	 * 
+	 * @param spieler Der Absender des Zugs.
+	 * @return true, wenn der Zug verarbeitet werden darf.
+	 */
+	private boolean vomAktivenSpieler(ServerStrategie spieler) {
+		boolean laeuft = spielGestartet && !bestaetigungen.istOffen(Bestaetigungen.SPIELFELD);
+		if (laeuft && (spieler != null) && (spieler == spielerliste.get(spielerAktiv))) return true;
+		
+		Log.w(TAG, "Zug von " + spieler + " abgelehnt, am Zug ist Platz " + spielerAktiv);
+		if (laeuft && (spielerliste.getPlatz(spieler) >= 0)) spieler.sendeRate(spielerAktiv);
+		return false;
+	}
+	
+	/**
+	 * Liefert den aktiven Spieler, wenn er seine Züge selbst sofort anzeigt (Protokoll.OPTIMISTISCH).
+	 * Der Zug kommt immer vom aktiven Spieler, deshalb muss das vor naechsterSpieler() geschehen.
+	 * 
+	 * @param gruppe Die Empfänger des Ergebnisses (PIPELINE bzw. ALLE bei Zugpaaren).
+	 * @return Der Spieler oder null, wenn er das Ergebnis wie alle anderen erhält.
+	 */
+	private ServerStrategie optimistischerSpieler(int gruppe) {
+		ServerStrategie aktiv = spielerliste.get(spielerAktiv);
+		if ((aktiv == null) || !gehoertZu(aktiv, gruppe)) return null;
+		
+		// Die Annahme nennt den nächsten Spieler immer mit seinem Platz
+		int noetig = Protokoll.OPTIMISTISCH | Protokoll.PLATZ_NUMMERN;
+		return ((aktiv.getFaehigkeiten() & noetig) == noetig) ? aktiv : null;
+	}
+	
+	/**
+	 * Sendet dem Spieler, der seinen Zug schon angezeigt hat, die Annahme (ZUG_ANGENOMMEN).
+	 * 
+	 * @param urheber Der Spieler (s. optimistischerSpieler()).
+	 * @param zudeckenNach Die Zeit in ms bis zum Zudecken, 0 wenn nichts zuzudecken ist.
+	 * @param naechster Der Platz des Spielers, der danach am Zug ist.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens oder -1.
+	 */
+	private void zugAnnehmen(ServerStrategie urheber, int zudeckenNach, int naechster, long zudeckenUm) {
+		boolean mitZeit = (zudeckenUm >= 0) && ((urheber.getFaehigkeiten() & Protokoll.UHRZEIT) != 0);
+		urheber.sende(spielerNachricht(mitZeit ? FASSUNG_PLATZ_ZEIT : FASSUNG_PLATZ, StatusCodes.ZUG_ANGENOMMEN, zudeckenNach + ";", naechster, spielerliste.get(naechster), zudeckenUm));
+	}
+	
+	/**
+	 * Sendet allen Spielern im Raum den Spieler, der am Zug ist (RATE).
+	 */
+	private void broadcastRate() {
+		broadcastSpieler(StatusCodes.RATE, null, spielerAktiv, spielerliste.get(spielerAktiv), -1, null, ALLE);
+	}
+	
+	/**
+	 * Sendet eine Nachricht, die einen Spieler nennt, an einen Teil der Spieler im Raum.
+	 * 
+	 * Clients mit Protokoll.PLATZ_NUMMERN erhalten den Platz des Spielers, alle anderen seinen
+	 * Namen, Clients mit Protokoll.UHRZEIT außerdem den Zeitpunkt des Zudeckens. Jede Fassung
+	 * wird höchstens einmal kodiert und von allen Verbindungen geteilt, die sie brauchen.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param praefix Die Parameter vor dem Spieler (bei POST_ZUG_ERGEBNIS und POST_ZUG_PAAR) oder null.
+	 * @param platz Der Platz des Spielers.
+	 * @param spieler Der Spieler, sein Name geht nur an ältere Clients und mit PLAYER_JOINED bzw. PLAYER_LEFT.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens (nur mit praefix) oder -1.
+	 * @param ausser Die Verbindung, die die Nachricht nicht erhält (z.B. der neue Spieler) oder null.
+	 * @param gruppe Die Empfänger (ALLE, PIPELINE, KLASSISCH oder SERVER_PAUSE).
+	 */
+	private void broadcastSpieler(byte status, String praefix, int platz, ServerStrategie spieler, long zudeckenUm, ServerStrategie ausser, int gruppe) {
+		Nachricht[] fassungen = new Nachricht[3];
+		for (ServerStrategie conn: spielerliste.alle()) {
+			if ((conn == ausser) || !gehoertZu(conn, gruppe)) continue;
+			
+			int fassung = FASSUNG_NAME;
+			if ((conn.getFaehigkeiten() & Protokoll.PLATZ_NUMMERN) != 0) {
+				boolean mitZeit = (praefix != null) && (zudeckenUm >= 0) && ((conn.getFaehigkeiten() & Protokoll.UHRZEIT) != 0);
+				fassung = mitZeit ? FASSUNG_PLATZ_ZEIT : FASSUNG_PLATZ;
+			}
+			
+			if (fassungen[fassung] == null) fassungen[fassung] = spielerNachricht(fassung, status, praefix, platz, spieler, zudeckenUm);
+			conn.sende(fassungen[fassung]);
+		}
+	}
+	
+	/**
+	 * Kodiert eine Nachricht, die einen Spieler nennt (s. broadcastSpieler()).
+	 * 
+	 * @param fassung FASSUNG_NAME für ältere Clients, FASSUNG_PLATZ bzw. FASSUNG_PLATZ_ZEIT für Clients mit Protokoll.PLATZ_NUMMERN.
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param praefix Die Parameter vor dem Spieler oder null.
+	 * @param platz Der Platz des Spielers.
+	 * @param spieler Der Spieler.
+	 * @param zudeckenUm Der Zeitpunkt des Zudeckens, nur für FASSUNG_PLATZ_ZEIT.
+	 * @return Die Nachricht.
+	 */
+	private static Nachricht spielerNachricht(int fassung, byte status, String praefix, int platz, ServerStrategie spieler, long zudeckenUm) {
+		if (fassung == FASSUNG_NAME) return new Nachricht(status, (praefix != null) ? praefix + spieler : String.valueOf(spieler));
+		if (praefix != null) return new Nachricht(status, praefix + platz + ((fassung == FASSUNG_PLATZ_ZEIT) ? ";" + zudeckenUm : ""));
+		
+		// Kommt oder geht ein Spieler, gehört der Name dazu, damit die Clients ihn dem Platz zuordnen können
+		boolean mitName = (status == StatusCodes.PLAYER_JOINED) || (status == StatusCodes.PLAYER_LEFT);
+		return new Nachricht(status, platz, mitName ? String.valueOf(spieler) : null);
+	}
+	
+	/**
+	 * Liefert das aktuelle Spielfeld als fertigen POST_SPIELFELD-Frame.
+	 * 
+	 * Der Frame wird nur neu kodiert, wenn sich das Spielfeld seit dem letzten Aufruf geändert
+	 * hat. Fordern mehrere Clients das Spielfeld im selben Format an, teilen sie sich denselben
+	 * Frame, der deshalb nicht verändert werden darf.
+	 * 
+	 * @param binaer true für das binäre Format, false für JSON (ältere Clients, s. Protokoll).
+	 * @return Der Frame inkl. Längenpräfix (s. FrameCodec).
+	 */
+	public byte[] getSpielfeldFrame(boolean binaer) {
+		if (!binaer) {
+			if ((spielfeldJsonFrame == null) || (spielfeldJsonFrameStand != spielfeld.getStand())) {
+				spielfeldJsonFrame = FrameCodec.encode(StatusCodes.POST_SPIELFELD, spielfeld.toJSON());
+				spielfeldJsonFrameStand = spielfeld.getStand();
+			}
+			
+			return spielfeldJsonFrame;
+		}
+		
+		if ((spielfeldFrame != null) && (spielfeldFrameStand == spielfeld.getStand())) return spielfeldFrame;
+		
+		// Spielfeld direkt in den Frame kodieren
+		spielfeldFrame = FrameCodec.rahmen(StatusCodes.POST_SPIELFELD, spielfeld.binaerLaenge());
+		spielfeld.toBinary(spielfeldFrame, FrameCodec.PARAM_OFFSET);
+		spielfeldFrameStand = spielfeld.getStand();
+		
+		return spielfeldFrame;
+	}
+	
+	/**
+	 * Ermittelt den Spieler, der nach dem letzten Zug an der Reihe ist.
+	 * 
+	 * Nach dem ersten Zug einer Runde oder einem gefundenen Paar bleibt der Spieler am Zug,
+	 * sonst ist der Spieler auf dem nächsten besetzten Platz dran.
+	 * 
+	 * @return Der Platz des Spielers.
+	 * @post this.spielerAktiv == return
+	 */
+	private int naechsterSpieler() {
+		if (((zuege % 2) == 0) && !spielfeld.lastFoundPair) spielerAktiv = spielerliste.naechsterPlatz(spielerAktiv);
+		
+		return spielerAktiv;
+	}
+	
+	/**
+	 * Ermittelt per Zufall den Spieler, der das Spiel beginnen darf.
+	 * 
+	 * @return Der Platz des ersten Spielers.
+	 * @post this.spielerAktiv == return
+	 */
+	private int ersterSpieler() {
+		spielerAktiv = spielerliste.zufaelligerPlatz();
+		return spielerAktiv;
+	}
+}
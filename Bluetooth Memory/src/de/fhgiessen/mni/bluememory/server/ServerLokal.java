@@ -1,11 +1,18 @@
 package de.fhgiessen.mni.bluememory.server;
 
 
+import android.os.Handler;
 import de.fhgiessen.mni.bluememory.client.ClientLokal;
+import de.fhgiessen.mni.bluememory.datentypen.StatusCodes;
+import de.fhgiessen.mni.bluememory.netzwerk.Nachricht;
+import de.fhgiessen.mni.bluememory.netzwerk.Protokoll;
 
 /**
  * Kommunikations-Strategie für den Memory-Server zum lokalen Benutzer
  * 
+ * Die Methoden werden im Postfach des Raums aufgerufen, die Callbacks der Activity laufen aber im
+ * UI-Thread. Sie werden deshalb dort eingestellt.
+ * 
  * @author Sergei Jochim
  *
  */
@@ -16,28 +23,47 @@ public class ServerLokal implements ServerStrategie {
 	/** Die Client-Kommunikations-Strategie des lokalen Spielers */
 	private ClientLokal komm;
 	
+	/** Führt die Callbacks im UI-Thread aus */
+	private final Handler ui;
+	
 	/**
 	 * Konstruktor
 	 * 
-	 * Holt sich das globale ClientLokal-Objekt.
+	 * Holt sich das globale ClientLokal-Objekt. Muss im UI-Thread aufgerufen werden.
 	 */
 	public ServerLokal() {
 		komm = (ClientLokal) ClientLokal.getInstance();
+		ui = new Handler();
 	}
 	
 	@Override
 	public void sendeBeenden() {
-		komm.aktuelleActivity.onSpielZuende();
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onSpielZuende();
+			}
+		});
 	}
 
 	@Override
 	public void sendeFehlerHelo() {
-		komm.aktuelleActivity.onSpielernameBelegt();
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onSpielernameBelegt();
+			}
+		});
 	}
 
 	@Override
 	public void sendeHello() {
-		komm.aktuelleActivity.onSpielerNameOk();
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onSpielerNameOk();
+			}
+		});
 	}
 
 	@Override
@@ -46,18 +72,33 @@ public class ServerLokal implements ServerStrategie {
 	}
 
 	@Override
-	public void sendeNeuerSpieler(String spieler) {
-		komm.aktuelleActivity.onNeuerSpieler(spieler);
+	public void sendeNeuerSpieler(final String spieler) {
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onNeuerSpieler(spieler);
+			}
+		});
 	}
 
 	@Override
-	public void sendeRate(String spieler) {
-		komm.aktuelleActivity.onRate(spieler);
+	public void sendeRate(final int platz) {
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onRate(platz);
+			}
+		});
 	}
 
 	@Override
-	public void sendeSpielerWeg(String spieler) {
-		komm.aktuelleActivity.onSpielerWeg(spieler);
+	public void sendeSpielerWeg(final String spieler) {
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onSpielerWeg(spieler);
+			}
+		});
 	}
 
 	@Override
@@ -65,21 +106,119 @@ public class ServerLokal implements ServerStrategie {
 		// ClientLokal holt sich das Spielfeld selbst.
 	}
 
+	@Override
+	public void sendeSpielfeldAenderungen(int stand) {
+		// ClientLokal holt sich das Spielfeld selbst.
+	}
+	
 	@Override
 	public void sendeSpielStarten() {
-		komm.aktuelleActivity.onSpielStarten();
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onSpielStarten();
+			}
+		});
 	}
 
 	@Override
 	public void sendeZug(String zug) {
-		komm.aktuelleActivity.onSpielzugEmpfangen(Integer.parseInt(zug));
+		final int karte = Integer.parseInt(zug);
+		ui.post(new Runnable() {
+			@Override
+			public void run() {
+				komm.aktuelleActivity.onSpielzugEmpfangen(karte);
+			}
+		});
 	}
 
+	@Override
+	public void sende(Nachricht nachricht) {
+		// Der lokale Spieler braucht keinen Frame, direkt den passenden Callback aufrufen
+		switch (nachricht.getStatus()) {
+			case StatusCodes.PLAYER_JOINED:
+				sendeNeuerSpieler(nachricht.getParams());
+			break;
+			
+			case StatusCodes.PLAYER_LEFT:
+				sendeSpielerWeg(nachricht.getParams());
+			break;
+			
+			case StatusCodes.STARTEN:
+				sendeSpielStarten();
+			break;
+			
+			case StatusCodes.RATE:
+				sendeRate(nachricht.getPlatz());
+			break;
+			
+			case StatusCodes.POST_ZUG:
+				sendeZug(nachricht.getParams());
+			break;
+			
+			case StatusCodes.POST_ZUG_ERGEBNIS:
+				// "Karte;Verzögerung;Platz[;Zeitpunkt]"
+				final String[] ergebnis = nachricht.getParams().split(";");
+				ui.post(new Runnable() {
+					@Override
+					public void run() {
+						komm.aktuelleActivity.onSpielzugErgebnis(Integer.parseInt(ergebnis[0]), Integer.parseInt(ergebnis[1]), Integer.parseInt(ergebnis[2]), (ergebnis.length > 3) ? Long.parseLong(ergebnis[3]) : -1);
+					}
+				});
+			break;
+			
+			case StatusCodes.POST_ZUG_PAAR:
+				final String[] paar = nachricht.getParams().split(";");
+				ui.post(new Runnable() {
+					@Override
+					public void run() {
+						komm.aktuelleActivity.onZugPaarErgebnis(Integer.parseInt(paar[0]), Integer.parseInt(paar[1]), paar[2].equals("1"), Integer.parseInt(paar[3]), Integer.parseInt(paar[4]), (paar.length > 5) ? Long.parseLong(paar[5]) : -1);
+					}
+				});
+			break;
+			
+			case StatusCodes.ZUG_ANGENOMMEN:
+				// "Verzögerung;Platz[;Zeitpunkt]"
+				final String[] annahme = nachricht.getParams().split(";");
+				ui.post(new Runnable() {
+					@Override
+					public void run() {
+						komm.aktuelleActivity.onZugAngenommen(Integer.parseInt(annahme[0]), Integer.parseInt(annahme[1]), (annahme.length > 2) ? Long.parseLong(annahme[2]) : -1);
+					}
+				});
+			break;
+			
+			case StatusCodes.BEENDEN:
+				sendeBeenden();
+			break;
+			
+			default:
+				// Andere Nachrichten betreffen den lokalen Spieler nicht
+		}
+	}
+	
 	@Override
 	public void setName(String name) {
 		this.name = name;
 	}
+	
+	@Override
+	public int getRtt() {
+		// Der lokale Spieler hat keine Verbindung
+		return -1;
+	}
+	
+	@Override
+	public int getJitter() {
+		return -1;
+	}
 
+	@Override
+	public int getFaehigkeiten() {
+		// Der lokale Spieler läuft im selben Programm
+		return Protokoll.EIGENE;
+	}
+	
 	@Override
 	public void trenneVerbindung() {
 		// Bei lokaler Kommunikation gibt es nichts zutun.
@@ -0,0 +1,867 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.SystemClock;
+import android.util.Log;
+import de.fhgiessen.mni.bluememory.ServerService;
+import de.fhgiessen.mni.bluememory.datentypen.StatusCodes;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameCodec;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameDecoder;
+import de.fhgiessen.mni.bluememory.netzwerk.FrameWriter;
+import de.fhgiessen.mni.bluememory.netzwerk.Herzschlag;
+import de.fhgiessen.mni.bluememory.netzwerk.Nachricht;
+import de.fhgiessen.mni.bluememory.netzwerk.NioTransport;
+import de.fhgiessen.mni.bluememory.netzwerk.Protokoll;
+import de.fhgiessen.mni.bluememory.netzwerk.PufferPool;
+import de.fhgiessen.mni.bluememory.netzwerk.Transport;
+import de.fhgiessen.mni.bluememory.netzwerk.TransportServer;
+
+/**
+ * Kommunikations-Strategie für einen entfernten Client.
+ * 
+ * Die Strategie wartet auf einem TransportServer auf eine eingehende Verbindung und wickelt
+ * danach das Spielprotokoll über diese Verbindung ab. Über welches Medium die Bytes laufen
+ * (Bluetooth, TCP, innerhalb der JVM), entscheidet allein der übergebene TransportServer.
+ * 
+ * Mit HELO vereinbaren Client und Server die Fähigkeiten der Verbindung (s. Protokoll). Ältere
+ * Clients erhalten das Spielfeld als JSON, ohne Kompression, Herzschlag und Sitzung.
+ * 
+ * Mit HELO wählt der Client außerdem seinen Raum (s. Raum), alle Nachrichten zum Spielablauf
+ * gehen danach an diesen Raum. Vorher beantwortet die Verbindung nur Nachrichten zum
+ * Verbindungsaufbau.
+ * 
+ * Ab HELLO gehört zur Verbindung eine Sitzung, wenn der Client sie unterstützt. Bricht die
+ * Verbindung ab, kann der Client sie über eine neue Verbindung fortsetzen (s.
+ * ServerService.onFortsetzen()).
+ * 
+ * Warten auf den Client und Lesen laufen in je einem eigenen Thread pro Verbindung, das
+ * Schreiben im Thread des FrameWriters. Bei einem NioTransport liest und schreibt stattdessen
+ * die NioSchleife der Verbindung, die Strategie selbst hat dann keinen eigenen Thread.
+ * 
+ * Verarbeitet werden die Ereignisse im Postfach des Service, ab HELO bzw. FORTSETZEN im Postfach
+ * des Raums (s. weiterleiten()). Ein Ereignis, das beim Wechsel noch im alten Postfach lag, wird
+ * dort nicht verarbeitet, sondern in das neue weitergereicht. Nach HELO und FORTSETZEN wartet
+ * der Client auf die Antwort, bis dahin kommen nur PING und PONG, deren Reihenfolge
+ * gegenüber den weitergereichten Ereignissen keine Rolle spielt.
+ */
+public class ServerRemote implements ServerStrategie {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.ServerRemote";
+	
+	/** Ereignis: Nachricht empfangen (obj: Frame aus dem PufferPool) */
+	private static final int NACHRICHT = 0;
+	
+	/** Ereignis: Verbindung angenommen (obj: Transport oder null bei einem Fehler) */
+	private static final int VERBUNDEN = 1;
+	
+	/** Ereignis: Verbindung abgebrochen (obj: der Leser der Verbindung) */
+	private static final int ABGEBROCHEN = 2;
+	
+	/** Ein Thread, in dem nach neuen Spielern gesucht wird */
+	private SucheSpieler sucheSpielerTask;
+	
+	/** Das globale ServerService-Objekt */
+	protected ServerService server;
+	
+	/** Der Name des Spielers, den diese Verbindung repräsentiert. */
+	private String name;
+	
+	/** Der Server, auf dem die Verbindung entgegengenommen wird */
+	private TransportServer transportServer;
+	
+	/** Die Verbindung zum Client oder null, solange noch keine besteht */
+	private Transport transport;
+	
+	/** Hält fest, ob die Verbindung schon oder noch besteht */
+	private boolean connected;
+	
+	/** Ein Thread, in dem auf neue Nachrichten gehört wird (nicht bei NioTransport) */
+	private MessageListener listeningTask;
+	
+	/** Der Leser der Verbindung (MessageListener oder NioTransport.Empfaenger), null nach dem Trennen */
+	private Object leser;
+	
+	/** Das Postfach, in dem die Ereignisse verarbeitet werden, null für das des Service */
+	private volatile Postfach postfach;
+	
+	/** Sendet die Nachrichten an den Client, sobald die Verbindung besteht */
+	private FrameWriter writer;
+	
+	/** Überwacht die Verbindung und misst die Round-Trip-Time, sobald die Verbindung besteht */
+	private Herzschlag herzschlag;
+	
+	/** Die Sitzung des Spielers, besteht ab HELLO und kann auf eine neue Verbindung übergehen */
+	private Sitzung sitzung;
+	
+	/** Der Raum des Spielers, null bis ihn der Raum aufgenommen hat (s. Raum.onNeuerSpieler()) */
+	private volatile Raum raum;
+	
+	/** Die Protokollversion des Clients, 0 bis zum HELO */
+	private int version;
+	
+	/** Die mit dem Client vereinbarten Fähigkeiten (s. Protokoll) */
+	private int faehigkeiten;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Stellt die Verbindung zum ServerService her und erzeugt einen temporären
+	 * Namen (zur Identifizierung). Gewartet wird erst mit starteSuche().
+	 * 
+	 * @param transportServer Der Server, auf dem auf den Client gewartet wird.
+	 */
+	public ServerRemote(TransportServer transportServer) {
+		this.transportServer = transportServer;
+		server = ServerService.getInstance();
+		connected = false;
+		name = "TEMPNAME_" + Math.random() * System.currentTimeMillis();
+	}
+	
+	/**
+	 * Wartet im Hintergrund auf eine eingehende Verbindung.
+	 * 
+	 * Sobald sich ein Client verbunden hat, wird ServerService.onNeueVerbindung() aufgerufen.
+	 */
+	public void starteSuche() {
+		sucheSpielerTask = new SucheSpieler();
+		sucheSpielerTask.start();
+	}
+	
+	@Override
+	public void sendeBeenden() {
+		messageOut(StatusCodes.BEENDEN);
+	}
+	
+	@Override
+	public void sendeFehlerHelo() {
+		messageOut(StatusCodes.FEHLER_HELO);
+	}
+	
+	@Override
+	public void sendeHello() {
+		// Ältere Clients kennen weder Handshake noch Sitzung
+		if (version < 2) {
+			messageOut(StatusCodes.HELLO);
+			return;
+		}
+		
+		// Ab hier werden alle Nachrichten nummeriert und für eine Wiederholung aufbewahrt
+		if (hat(Protokoll.SITZUNG)) sitzung = new Sitzung();
+		messageOut(StatusCodes.HELLO, Protokoll.schreiben(faehigkeiten, raum.getId(), (sitzung != null) ? sitzung.getToken() : null));
+	}
+	
+	/**
+	 * Teilt dem Client mit, dass seine Sitzung nicht fortgesetzt werden kann.
+	 */
+	public void sendeFehlerFortsetzen() {
+		steuerungOut(StatusCodes.FEHLER_FORTSETZEN, null);
+	}
+	
+	@Override
+	public void sendeLobby() {
+		// JSON-Objekt aus den Namen der Spieler im Raum und ihren Plätzen erstellen (ältere Clients lesen nur "lobby")
+		String[] platzNamen = raum.getSpielerliste().getPlatzNamen();
+		JSONArray lobby = new JSONArray();
+		JSONArray plaetze = new JSONArray();
+		for (int platz = 0; platz < platzNamen.length; platz++) {
+			if (platzNamen[platz] == null) continue;
+			lobby.put(platzNamen[platz]);
+			plaetze.put(platz);
+		}
+		
+		JSONObject jo = null;
+		try {
+			 jo = new JSONObject().put("lobby", lobby).put("plaetze", plaetze);
+		} catch (JSONException e) {
+			jo = new JSONObject();
+		}
+		
+		// Lobby an Client senden
+		messageOut(StatusCodes.POST_LOBBY, jo.toString());
+	}
+	
+	@Override
+	public void sendeNeuerSpieler(String spieler) {
+		messageOut(StatusCodes.PLAYER_JOINED, spieler);
+	}
+	
+	@Override
+	public void sendeRate(int platz) {
+		if (hat(Protokoll.PLATZ_NUMMERN)) messageOut(new Nachricht(StatusCodes.RATE, platz, null).getFrame());
+		else messageOut(StatusCodes.RATE, String.valueOf(raum.getSpielerliste().get(platz)));
+	}
+	
+	@Override
+	public void sendeSpielerWeg(String spieler) {
+		messageOut(StatusCodes.PLAYER_LEFT, spieler);
+	}
+	
+	@Override
+	public void sendeSpielfeld() {
+		// Alle Clients mit demselben Stand und Format bekommen denselben Frame
+		messageOut(raum.getSpielfeldFrame(hat(Protokoll.SPIELFELD_BINAER)));
+	}
+	
+	@Override
+	public void sendeSpielfeldAenderungen(int stand) {
+		// Ggf. das ganze Spielfeld senden
+		if (!hat(Protokoll.SPIELFELD_DELTA) || !raum.spielfeld.hatAenderungenSeit(stand)) {
+			sendeSpielfeld();
+			return;
+		}
+		
+		// Nur die Änderungen seit dem Stand des Clients senden (eigener Frame, die Sitzung bewahrt ihn auf)
+		byte[] frame = FrameCodec.rahmen(StatusCodes.POST_SPIELFELD_AENDERUNGEN, raum.spielfeld.deltaLaenge(stand));
+		raum.spielfeld.toDelta(stand, frame, FrameCodec.PARAM_OFFSET);
+		
+		messageOut(frame);
+	}
+	
+	@Override
+	public void sendeSpielStarten() {
+		messageOut(StatusCodes.STARTEN);
+	}
+	
+	@Override
+	public void sendeZug(String zug) {
+		messageOut(StatusCodes.POST_ZUG, zug);
+	}
+	
+	@Override
+	public void sende(Nachricht nachricht) {
+		messageOut(nachricht.getFrame());
+	}
+	
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+	@Override
+	public int getRtt() {
+		return (herzschlag != null) ? herzschlag.getRtt() : -1;
+	}
+	
+	@Override
+	public int getJitter() {
+		return (herzschlag != null) ? herzschlag.getJitter() : -1;
+	}
+	
+	/**
+	 * Liefert den Raum des Spielers.
+	 * 
+	 * @return Der Raum oder null, solange der Client keinen gewählt hat.
+	 */
+	public Raum getRaum() {
+		return raum;
+	}
+	
+	/**
+	 * Legt fest, in welchem Postfach die Ereignisse der Verbindung verarbeitet werden.
+	 * 
+	 * Der Service übergibt die Verbindung mit HELO bzw. FORTSETZEN an den Raum, lehnt der Raum sie
+	 * ab, geht sie an den Service zurück. Ereignisse, die noch im alten Postfach liegen, werden
+	 * weitergereicht (s. Ereignis).
+	 * 
+	 * @param postfach Das Postfach eines Raums oder null für das des Service.
+	 */
+	public void weiterleiten(Postfach postfach) {
+		this.postfach = postfach;
+	}
+	
+	/**
+	 * Liefert das Token der Sitzung.
+	 * 
+	 * @return Das Token oder null, wenn der Spieler keine Sitzung hat.
+	 */
+	public String getToken() {
+		return (sitzung != null) ? sitzung.getToken() : null;
+	}
+	
+	/**
+	 * Ordnet die Verbindung einem Raum zu (s. Raum.onNeuerSpieler()).
+	 * 
+	 * Muss vor sendeHello() passieren, HELLO nennt den Raum.
+	 * 
+	 * @param raum Der Raum.
+	 */
+	public void setRaum(Raum raum) {
+		this.raum = raum;
+		raumZuordnen();
+	}
+	
+	/**
+	 * Lässt eine NioTransport-Verbindung von der Schleife ihres Raums bedienen.
+	 */
+	private void raumZuordnen() {
+		if ((raum != null) && (transport instanceof NioTransport)) ((NioTransport) transport).zuordnen(raum.getId());
+	}
+	
+	@Override
+	public int getFaehigkeiten() {
+		return faehigkeiten;
+	}
+	
+	/**
+	 * Prüft, ob eine Fähigkeit mit dem Client vereinbart wurde.
+	 * 
+	 * @param faehigkeit Die Fähigkeit (s. Protokoll).
+	 * @return true, wenn beide Seiten sie unterstützen.
+	 */
+	private boolean hat(int faehigkeit) {
+		return (faehigkeiten & faehigkeit) != 0;
+	}
+	
+	/**
+	 * Schaltet die vereinbarten Fähigkeiten auf der Verbindung ein.
+	 */
+	private void faehigkeitenAnwenden() {
+		if (writer != null) writer.setKompression(hat(Protokoll.KOMPRESSION));
+		if ((herzschlag != null) && hat(Protokoll.HERZSCHLAG)) herzschlag.starten();
+	}
+	
+	/**
+	 * Prüft, ob die Verbindung zum Client besteht.
+	 * 
+	 * @return true, wenn die Verbindung besteht.
+	 */
+	public boolean istVerbunden() {
+		return connected;
+	}
+	
+	/**
+	 * Prüft, ob der Spieler eine Sitzung hat, die nach einem Abbruch fortgesetzt werden kann.
+	 * 
+	 * @return true, wenn der Server bereits HELLO gesendet hat.
+	 */
+	public boolean hatSitzung() {
+		return sitzung != null;
+	}
+	
+	/**
+	 * Prüft, ob die Sitzung des Spielers ab einer Nachricht fortgesetzt werden kann.
+	 * 
+	 * @param token Das Token, das der Client gesendet hat.
+	 * @param letzteSequenz Die Nummer der letzten Nachricht, die der Client empfangen hat.
+	 * @return true, wenn das Token passt und alle verpassten Nachrichten noch vorliegen.
+	 */
+	public boolean kannFortsetzen(String token, int letzteSequenz) {
+		return (sitzung != null) && sitzung.getToken().equals(token) && sitzung.kannFortsetzen(letzteSequenz);
+	}
+	
+	/**
+	 * Übernimmt Sitzung und Namen eines abgebrochenen Spielers auf diese Verbindung.
+	 * 
+	 * Dem Client werden alle Nachrichten nach letzteSequenz erneut gesendet, mit ihren
+	 * ursprünglichen Sequenznummern.
+	 * 
+	 * @param alt Die abgebrochene Verbindung des Spielers (s. kannFortsetzen()).
+	 * @param letzteSequenz Die Nummer der letzten Nachricht, die der Client empfangen hat.
+	 */
+	public void uebernehmeSitzung(ServerRemote alt, int letzteSequenz) {
+		sitzung = alt.sitzung;
+		name = alt.name;
+		raum = alt.raum;
+		raumZuordnen();
+		version = alt.version;
+		faehigkeiten = alt.faehigkeiten;
+		faehigkeitenAnwenden();
+		
+		steuerungOut(StatusCodes.FORTGESETZT, null);
+		for (int sequenz = letzteSequenz + 1; sequenz < sitzung.getNaechsteSequenz(); sequenz++) {
+			byte[] frame = sitzung.getFrame(sequenz);
+			if ((writer == null) || !writer.senden(frame, 0, frame.length, sequenz)) Log.e(TAG, "Nachricht konnte nicht wiederholt werden: " + name);
+		}
+		Log.d(TAG, "Sitzung fortgesetzt: " + name + ", " + (sitzung.getNaechsteSequenz() - letzteSequenz - 1) + " Nachrichten wiederholt");
+	}
+	
+	@Override
+	public void trenneVerbindung() {
+		Log.d(TAG, "Verbindung wird geschlossen: " + name);
+		if (herzschlag != null) herzschlag.stoppen();
+		if (transport != null) {
+			// Ggf. Listener abbrechen
+			if (listeningTask != null) listeningTask.abbrechen();
+			listeningTask = null;
+			leser = null;
+			connected = false;
+			
+			// Noch wartende Nachrichten senden, danach schließt der Writer die Verbindung
+			writer.schliessen();
+		} else {
+			if (sucheSpielerTask != null) sucheSpielerTask.abbrechen();
+			sucheSpielerTask = null;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+	
+	/**
+	 * Stellt ein Ereignis der Threads in das zuständige Postfach.
+	 * 
+	 * @param art Die Art des Ereignisses (NACHRICHT, VERBUNDEN oder ABGEBROCHEN).
+	 * @param obj Das Objekt zum Ereignis.
+	 */
+	private void melden(int art, Object obj) {
+		Postfach ziel = zustaendig();
+		ziel.einstellen(new Ereignis(art, obj, ziel));
+	}
+	
+	/**
+	 * Liefert das Postfach, in dem die Ereignisse der Verbindung gerade verarbeitet werden.
+	 * 
+	 * @return Das Postfach des Raums oder des Service.
+	 */
+	private Postfach zustaendig() {
+		Postfach p = postfach;
+		return (p != null) ? p : server.getPostfach();
+	}
+	
+	/**
+	 * Verarbeitet ein Ereignis im zuständigen Postfach.
+	 * 
+	 * @param art Die Art des Ereignisses (NACHRICHT, VERBUNDEN oder ABGEBROCHEN).
+	 * @param obj Das Objekt zum Ereignis.
+	 */
+	private void behandeln(int art, Object obj) {
+		switch (art) {
+			case NACHRICHT:
+				byte[] msg = (byte[]) obj;
+				try {
+					// Message-Callback aufrufen
+					onMessageIn(msg);
+				} finally {
+					PufferPool.zurueckgeben(msg);
+				}
+			break;
+			
+			case VERBUNDEN:
+				if (sucheSpielerTask != null) {
+					onVerbunden((Transport) obj);
+				} else if (obj != null) {
+					// Die Suche wurde inzwischen abgebrochen
+					try {
+						((Transport) obj).close();
+					} catch (IOException e) {
+						Log.e(TAG, "Fehler beim Schließen der Verbindung");
+					}
+				}
+			break;
+			
+			case ABGEBROCHEN:
+				// Nur melden, wenn die Verbindung nicht inzwischen getrennt wurde
+				if (obj != leser) break;
+				herzschlag.stoppen();
+				server.onVerbindungAbgebrochen(this);
+			break;
+			default:
+		}
+	}
+	
+	/**
+	 * Verarbeitet eingehende Nachrichten der Verbindung.
+	 * 
+	 * Nach dem Empfang und der Auswertung einer Nachricht werden ggf. notwendige
+	 * Aktionen durchgeführt, bspw. der Aufruf eines Callbacks der aktuellen Actitvity.
+	 * 
+	 * @param msg Die eingehende Nachricht inkl. Längenpräfix (s. FrameCodec.laenge()).
+	 */
+	private void onMessageIn(byte[] msg) {
+		// Speichert, ob ein Fehler aufgetreten ist
+		//boolean error = false;
+		
+		// Statuscode und ggf. Parameter auslesen
+		int laenge = FrameCodec.laenge(msg);
+		int status = msg[FrameCodec.PRAEFIX_LAENGE];
+		String params = null;
+		if (laenge > 1) params = new String(msg, FrameCodec.PARAM_OFFSET, laenge - 1);
+		Log.d(TAG, "Nachricht empfangen. Status-Code: " + status + ((params != null) ? "; Parameter: " + params : "; keine Parameter"));
+		
+		// Lobby und Spielablauf nur mit Raum
+		if ((raum == null) && (status >= StatusCodes.GET_LOBBY)) {
+			Log.w(TAG, "Nachricht ohne Raum verworfen: " + status);
+			return;
+		}
+		
+		switch (status) {
+			case StatusCodes.HELO:
+				// Ein Spieler im Raum meldet sich nicht erneut an
+				if (raum != null) {
+					sendeFehlerHelo();
+					break;
+				}
+				
+				// Fähigkeiten vereinbaren, danach den Namen prüfen
+				Protokoll protokoll = Protokoll.lesen(params);
+				version = protokoll.getVersion();
+				faehigkeiten = protokoll.getGemeinsame();
+				Log.d(TAG, "Client " + protokoll.getWert() + ": Version " + version + ", Fähigkeiten " + faehigkeiten);
+				faehigkeitenAnwenden();
+				server.onHelo(this, protokoll.getRaum(), protokoll.getWert());
+			break;
+			
+			case StatusCodes.KOMPRESSION:
+				// Nur noch von älteren Gegenstellen
+				Log.d(TAG, "Client unterstützt Kompression: " + name);
+				if (writer != null) writer.setKompression(true);
+			break;
+			
+			case StatusCodes.GET_LOBBY:
+				sendeLobby();
+			break;
+			
+			case StatusCodes.GET_SPIELFELD:
+				// Ohne lesbaren Stand das ganze Spielfeld
+				int stand = -1;
+				try {
+					if (params != null) stand = Integer.parseInt(params);
+				} catch (NumberFormatException e) {
+					Log.w(TAG, "Ungültiger Stand: " + params);
+				}
+				if (stand >= 0) sendeSpielfeldAenderungen(stand);
+				else sendeSpielfeld();
+			break;
+			
+			case StatusCodes.OK_SPIELFELD:
+				raum.onSpielfeldOk(this);
+			break;
+			
+			case StatusCodes.ZUG:
+				raum.onZug(this, params);
+			break;
+			
+			case StatusCodes.ZUG_PAAR:
+				// "Karte1;Karte2", unlesbare Karten lehnt der Raum wie ungültige mit RATE ab
+				String[] karten = (params != null) ? params.split(";", 2) : new String[0];
+				int erste = -1, zweite = -1;
+				try {
+					if (karten.length == 2) {
+						erste = Integer.parseInt(karten[0]);
+						zweite = Integer.parseInt(karten[1]);
+					}
+				} catch (NumberFormatException e) {
+					Log.w(TAG, "Ungültiges Zugpaar: " + params);
+				}
+				raum.onZugPaar(this, erste, zweite);
+			break;
+			
+			case StatusCodes.OK_ZUG:
+				raum.onZugOk(this);
+			break;
+			
+			case StatusCodes.FORTSETZEN:
+				// "Token;Sequenznummer"
+				String[] teile = (params != null) ? params.split(";") : new String[0];
+				int sequenz = -2;
+				try {
+					if (teile.length == 2) sequenz = Integer.parseInt(teile[1]);
+				} catch (NumberFormatException e) {
+					Log.w(TAG, "Ungültige Sequenznummer: " + params);
+				}
+				
+				// -1, wenn der Client noch keine Nachricht der Sitzung empfangen hat
+				if ((sequenz >= -1) && (raum == null)) server.onFortsetzen(this, teile[0], sequenz);
+				else sendeFehlerFortsetzen();
+			break;
+			
+			case StatusCodes.BYE:
+				server.onVerbindungGetrennt(this);
+			break;
+			
+			case StatusCodes.PING:
+				// Mit UHRZEIT die eigene Uhrzeit anhängen (s. Uhrabgleich)
+				steuerungOut(StatusCodes.PONG, hat(Protokoll.UHRZEIT) ? params + ";" + SystemClock.uptimeMillis() : params);
+			break;
+			
+			case StatusCodes.PONG:
+				if (herzschlag != null) herzschlag.onPong(params);
+			break;
+			default:
+		}
+	}
+	
+	/**
+	 * Versendet einen Statuscode über die Verbindung.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 */
+	private void messageOut(byte status) {
+		messageOut(status, null);
+	}
+	
+	/**
+	 * Versendet eine Nachricht mit Statuscode und Parametern über die Verbindung.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param message Die Parameter als String.
+	 */
+	private void messageOut(byte status, String params) {
+		// Ohne Sitzung muss nichts aufbewahrt werden, dann direkt in den Sendepuffer kodieren
+		if (sitzung == null) {
+			steuerungOut(status, params);
+			return;
+		}
+		
+		messageOut(FrameCodec.encode(status, params));
+	}
+	
+	/**
+	 * Übergibt einen fertigen Frame an den Writer der Verbindung.
+	 * 
+	 * Besteht eine Sitzung, erhält der Frame eine Sequenznummer und wird aufbewahrt, auch
+	 * während die Verbindung unterbrochen ist. Er darf danach nicht mehr verändert werden.
+	 * 
+	 * @param frame Der Frame inkl. Längenpräfix (s. FrameCodec).
+	 */
+	private void messageOut(byte[] frame) {
+		if (sitzung == null) {
+			if ((writer == null) || !writer.senden(frame)) Log.e(TAG, "Nachricht konnte nicht gesendet werden: " + name);
+			return;
+		}
+		
+		int sequenz = sitzung.merken(frame);
+		if (!connected) return;
+		if ((writer == null) || !writer.senden(frame, 0, frame.length, sequenz)) Log.e(TAG, "Nachricht konnte nicht gesendet werden: " + name);
+	}
+	
+	/**
+	 * Versendet eine Nachricht zur Steuerung der Verbindung ohne Sequenznummer.
+	 * 
+	 * Solche Nachrichten (z.B. PING) gehören zur Verbindung, nicht zur Sitzung, und werden
+	 * nach einem Abbruch nicht wiederholt.
+	 * 
+	 * @param status Der Status-Code (s. StatusCodes)
+	 * @param params Die Parameter als String oder null.
+	 */
+	private void steuerungOut(byte status, String params) {
+		if ((writer == null) || !writer.senden(status, params)) Log.e(TAG, "Nachricht konnte nicht gesendet werden: " + name);
+	}
+	
+	/**
+	 * Wird im Postfach des Service aufgerufen, wenn die Suche eine Verbindung angenommen hat.
+	 * 
+	 * @param neu Die neue Verbindung oder null bei einem Fehler.
+	 */
+	private void onVerbunden(Transport neu) {
+		if (neu == null) {
+			Log.e(TAG, "Fehler beim Verbindungsaufbau mit Remote-Device.");
+			server.onVerbindungFehlgeschlagen();
+			return;
+		}
+		
+		transport = neu;
+		connected = true;
+		writer = (neu instanceof NioTransport) ? ((NioTransport) neu).getWriter() : new FrameWriter(transport, TAG + ".Writer");
+		herzschlag = new Herzschlag(new Herzschlag.Callback() {
+			@Override
+			public void sendePing(String zeitstempel) {
+				steuerungOut(StatusCodes.PING, zeitstempel);
+			}
+			
+			@Override
+			public void onZeitueberschreitung() {
+				// Verbindung hart schließen, der Listener meldet dann den Abbruch
+				Log.w(TAG, "Client antwortet nicht mehr: " + name);
+				try {
+					transport.close();
+				} catch (IOException e) {
+					Log.e(TAG, "Fehler beim Schließen der Verbindung");
+				}
+			}
+		});
+		
+		// Lesen im eigenen Thread oder in der NioSchleife
+		if (neu instanceof NioTransport) {
+			NioTransport.Empfaenger empfaenger = new NioTransport.Empfaenger() {
+				@Override
+				public void onDaten() {
+					herzschlag.empfangen();
+				}
+				
+				@Override
+				public void onFrame(byte[] frame) {
+					melden(NACHRICHT, frame);
+				}
+				
+				@Override
+				public void onEnde() {
+					melden(ABGEBROCHEN, this);
+				}
+			};
+			leser = empfaenger;
+			((NioTransport) neu).starten(empfaenger);
+		} else {
+			listeningTask = new MessageListener();
+			leser = listeningTask;
+			listeningTask.start();
+		}
+		server.onNeueVerbindung();
+	}
+	
+	/**
+	 * Ein Ereignis der Verbindung im Postfach.
+	 * 
+	 * Ist inzwischen ein anderes Postfach zuständig, wird das Ereignis dorthin weitergereicht.
+	 */
+	private class Ereignis implements Runnable {
+		/** Die Art des Ereignisses */
+		private final int art;
+		
+		/** Das Objekt zum Ereignis */
+		private final Object obj;
+		
+		/** Das Postfach, in dem das Ereignis liegt */
+		private Postfach ziel;
+		
+		/**
+		 * Konstruktor
+		 * 
+		 * @param art Die Art des Ereignisses (NACHRICHT, VERBUNDEN oder ABGEBROCHEN).
+		 * @param obj Das Objekt zum Ereignis.
+		 * @param ziel Das Postfach, in das das Ereignis eingestellt wird.
+		 */
+		Ereignis(int art, Object obj, Postfach ziel) {
+			this.art = art;
+			this.obj = obj;
+			this.ziel = ziel;
+		}
+		
+		@Override
+		public void run() {
+			Postfach zustaendig = zustaendig();
+			if (zustaendig != ziel) {
+				ziel = zustaendig;
+				zustaendig.einstellen(this);
+				return;
+			}
+			
+			behandeln(art, obj);
+		}
+	}
+	
+	/**
+	 * Wartet in einem eigenen Thread auf dem TransportServer auf einen neuen Client.
+	 * 
+	 * Das Ergebnis wird im Postfach des Service zugestellt (s. onVerbunden()).
+	 */
+	private class SucheSpieler extends Thread {
+		/** true, wenn die Suche abgebrochen wurde */
+		private volatile boolean abgebrochen;
+		
+		/**
+		 * Konstruktor
+		 */
+		SucheSpieler() {
+			super(TAG + ".Suche");
+			setDaemon(true);
+		}
+		
+		/**
+		 * Bricht die Suche ab. Eine danach noch angenommene Verbindung wird geschlossen.
+		 */
+		void abbrechen() {
+			abgebrochen = true;
+		}
+		
+		@Override
+		public void run() {
+			Transport neu = null;
+			try {
+				neu = transportServer.accept();
+			} catch (IOException e) {
+				if (!abgebrochen) Log.e(TAG, "Fehler beim Warten auf neue Clients.");
+			}
+			
+			if (abgebrochen) {
+				try {
+					if (neu != null) neu.close();
+				} catch (IOException e) {
+					Log.e(TAG, "Fehler beim Schließen der Verbindung");
+				}
+				return;
+			}
+			melden(VERBUNDEN, neu);
+		}
+	}
+	
+	/**
+	 * Hört in einem eigenen Thread auf eingehende Nachrichten vom Client.
+	 * 
+	 * Der Thread bricht ab, wenn keine Verbindung besteht, es muss also sichergestellt
+	 * werden, dass die Verbindung bereits hergestellt wurde.
+	 * 
+	 * Empfangene Nachrichten werden über das zuständige Postfach an den Callback "onMessageIn()"
+	 * weitergegeben. Die Empfangspuffer werden nach der Verarbeitung an den PufferPool
+	 * zurückgegeben.
+	 * 
+	 * Jede Verbindung hat ihren eigenen Thread, anders als bei einem AsyncTask blockieren sich
+	 * die wartenden Verbindungen nicht gegenseitig im gemeinsamen Thread-Pool.
+	 * 
+	 * @author Timo Ebel
+	 */
+	private class MessageListener extends Thread {
+		/** true, wenn die Verbindung absichtlich getrennt wurde (kein Abbruch) */
+		private volatile boolean abgebrochen;
+		
+		/**
+		 * Konstruktor
+		 */
+		MessageListener() {
+			super(TAG + ".Listener");
+			setDaemon(true);
+		}
+		
+		/**
+		 * Beendet das Hören, ohne einen Verbindungsabbruch zu melden.
+		 * 
+		 * Die Verbindung schließt der Writer, sobald alles gesendet ist, danach endet der Thread.
+		 */
+		void abbrechen() {
+			abgebrochen = true;
+		}
+		
+		@Override
+		public void run() {
+			// InputStream holen
+			InputStream is;
+			try {
+				is = transport.getInputStream();
+			} catch (IOException e) {
+				Log.e(TAG, "Fehler beim Initialisieren des Input-Streams");
+				is = null;
+			}
+			
+			// Empfangspuffer, setzt die Frames wieder zusammen
+			FrameDecoder decoder = new FrameDecoder();
+			
+			// Listener-Schleife
+			while (connected) {
+				try {
+					// Auf Nachrichten hören
+					if (decoder.lese(is) < 0) throw new IOException("Input-Stream beendet");
+					herzschlag.empfangen();
+					
+					// Alle vollständig empfangenen Nachrichten weiterleiten
+					byte[] msg;
+					while ((msg = decoder.naechsterFrame()) != null) melden(NACHRICHT, msg);
+				} catch (IOException ioe) {
+					// Verbindung wurde beendet
+					Log.d(TAG, "Verbindungsabbruch (IOException).");
+					connected = false;
+				}
+			}
+			
+			// Ende
+			if (!abgebrochen) melden(ABGEBROCHEN, this);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package de.fhgiessen.mni.bluememory.server;
 
+import de.fhgiessen.mni.bluememory.netzwerk.Nachricht;
 
 /**
  * Schnittstelle zur Kommunikation mit einem Client des Spiels.
@@ -47,11 +48,21 @@ public interface ServerStrategie {
 	public void sendeSpielfeld();
 	
 	/**
-	 * Sendet dem Client den Namen des Spielers, der am Zug ist.
+	 * Sendet dem Client die Änderungen am Spielfeld seit einem Stand.
 	 * 
-	 * @param spieler Der Spieler, der am Zug ist.
+	 * Liegen die Änderungen nicht mehr vor, wird das ganze Spielfeld gesendet.
+	 * 
+	 * @param stand Der Stand des Spielfelds, das der Client schon hat.
+	 */
+	public void sendeSpielfeldAenderungen(int stand);
+	
+	/**
+	 * Sendet dem Client den Spieler, der am Zug ist, je nach Protokoll.PLATZ_NUMMERN mit seinem
+	 * Platz oder seinem Namen.
+	 * 
+	 * @param platz Der Platz des Spielers, der am Zug ist (s. Spielerliste).
 	 */
-	public void sendeRate(String spieler);
+	public void sendeRate(int platz);
 	
 	/**
 	 * Sendet dem Client einen Zug, den ein Spieler gemacht hat.
@@ -65,6 +76,16 @@ public interface ServerStrategie {
 	 */
 	public void sendeBeenden();
 	
+	/**
+	 * Sendet dem Client eine fertige Nachricht.
+	 * 
+	 * Wird für Nachrichten an alle Spieler verwendet (s. ServerService.broadcast()), die
+	 * Nachricht ist dabei bereits kodiert.
+	 * 
+	 * @param nachricht Die Nachricht.
+	 */
+	public void sende(Nachricht nachricht);
+	
 	/**
 	 * Setzt den Namen des Spielers, den diese Verbindung repräsentiert.
 	 * 
@@ -72,6 +93,27 @@ public interface ServerStrategie {
 	 */
 	public void setName(String name);
 	
+	/**
+	 * Liefert die geglättete Round-Trip-Time zum Spieler (s. Herzschlag).
+	 * 
+	 * @return Die RTT in ms oder -1, wenn sie (noch) nicht bekannt ist.
+	 */
+	public int getRtt();
+	
+	/**
+	 * Liefert die Schwankung der Round-Trip-Time zum Spieler (s. Herzschlag).
+	 * 
+	 * @return Der Jitter in ms oder -1, wenn er (noch) nicht bekannt ist.
+	 */
+	public int getJitter();
+	
+	/**
+	 * Liefert die Fähigkeiten, die bei HELO mit dem Client vereinbart wurden (s. Protokoll).
+	 * 
+	 * @return Die vereinbarten Fähigkeiten, 0 solange der Client kein HELO gesendet hat.
+	 */
+	public int getFaehigkeiten();
+	
 	/**
 	 * Trennt die Verbindung zum Client.
 	 */
@@ -0,0 +1,95 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.security.SecureRandom;
+
+/**
+ * Die Sitzung eines entfernten Spielers, überdauert einen kurzen Verbindungsabbruch.
+ * 
+ * Jede Nachricht, die der Server an den Spieler sendet, erhält eine fortlaufende Sequenznummer
+ * (s. FrameCodec.SEQUENZ) und wird in einem Ringpuffer aufbewahrt. Verbindet sich der Client
+ * nach einem Abbruch mit dem Token der Sitzung und der Nummer der letzten empfangenen Nachricht
+ * neu (s. StatusCodes.FORTSETZEN), werden ihm nur die verpassten Nachrichten erneut gesendet.
+ * 
+ * Der Ringpuffer hält nur Referenzen auf die Frames. Die Frames dürfen daher nach merken()
+ * nicht mehr verändert werden.
+ */
+public class Sitzung {
+	/** Maximale Anzahl Nachrichten, die für eine Wiederholung aufbewahrt werden */
+	public static final int MAX_NACHRICHTEN = 256;
+	
+	/** Erzeugt die Tokens */
+	private static final SecureRandom zufall = new SecureRandom();
+	
+	/** Das Token, mit dem der Client die Sitzung fortsetzt */
+	private final String token;
+	
+	/** Die zuletzt gesendeten Frames, Index ist die Sequenznummer modulo MAX_NACHRICHTEN */
+	private final byte[][] frames;
+	
+	/** Die Sequenznummer der nächsten Nachricht */
+	private int naechsteSequenz;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Erzeugt eine neue Sitzung mit zufälligem Token.
+	 */
+	public Sitzung() {
+		token = Long.toHexString(zufall.nextLong());
+		frames = new byte[MAX_NACHRICHTEN][];
+		naechsteSequenz = 0;
+	}
+	
+	/**
+	 * Liefert das Token der Sitzung.
+	 * 
+	 * @return Das Token.
+	 */
+	public String getToken() {
+		return token;
+	}
+	
+	/**
+	 * Vergibt die nächste Sequenznummer und bewahrt den Frame für eine Wiederholung auf.
+	 * 
+	 * @param frame Der fertige Frame ohne Sequenznummer (s. FrameCodec).
+	 * @return Die Sequenznummer der Nachricht.
+	 */
+	public int merken(byte[] frame) {
+		int sequenz = naechsteSequenz++;
+		frames[sequenz % MAX_NACHRICHTEN] = frame;
+		
+		return sequenz;
+	}
+	
+	/**
+	 * Prüft, ob alle Nachrichten nach einer Sequenznummer noch im Ringpuffer liegen.
+	 * 
+	 * @param letzteSequenz Die Nummer der letzten Nachricht, die der Client empfangen hat, -1 für keine.
+	 * @return true, wenn die Sitzung ab dieser Nachricht fortgesetzt werden kann.
+	 */
+	public boolean kannFortsetzen(int letzteSequenz) {
+		int aelteste = Math.max(0, naechsteSequenz - MAX_NACHRICHTEN);
+		
+		return ((letzteSequenz + 1) >= aelteste) && (letzteSequenz < naechsteSequenz);
+	}
+	
+	/**
+	 * Liefert einen aufbewahrten Frame.
+	 * 
+	 * @param sequenz Die Sequenznummer (s. kannFortsetzen()).
+	 * @return Der Frame.
+	 */
+	public byte[] getFrame(int sequenz) {
+		return frames[sequenz % MAX_NACHRICHTEN];
+	}
+	
+	/**
+	 * Liefert die Sequenznummer, die die nächste Nachricht erhält.
+	 * 
+	 * @return Die Sequenznummer.
+	 */
+	public int getNaechsteSequenz() {
+		return naechsteSequenz;
+	}
+}
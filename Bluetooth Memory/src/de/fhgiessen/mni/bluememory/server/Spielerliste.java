@@ -0,0 +1,277 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Die Spieler eines Raums mit ihren Plätzen.
+ * 
+ * Jeder Spieler bekommt beim Beitreten den kleinsten freien Platz und behält ihn, bis er den
+ * Raum verlässt. Die Plätze bestimmen die Reihenfolge der Spielzüge (s. naechsterPlatz()), ein
+ * Spieler, der geht, verschiebt die anderen also nicht. Nach Name, Platz und Verbindung wird
+ * in konstanter Zeit gesucht.
+ * 
+ * Verändert wird die Liste nur im Postfach ihres Raums. Gelesen werden darf sie aus jedem
+ * Thread: Die Namen und Verbindungen liegen in nebenläufigen Maps, alle Spieler zusammen in
+ * einer unveränderlichen Momentaufnahme (s. alle()), die bei jeder Änderung ersetzt wird.
+ */
+public class Spielerliste {
+	/** Ein leeres Feld für die leere Liste */
+	private static final ServerStrategie[] LEER = new ServerStrategie[0];
+	
+	/** Die Anzahl der Plätze, ein Platz wird als einzelnes Byte übertragen (s. Protokoll.PLATZ_NUMMERN) */
+	public static final int MAX_PLAETZE = 256;
+	
+	/** Zufall für den ersten Spieler */
+	private static final Random zufall = new Random();
+	
+	/** Die Spieler nach ihrem Namen */
+	private final ConcurrentHashMap<String, ServerStrategie> nachName = new ConcurrentHashMap<String, ServerStrategie>();
+	
+	/** Die Plätze nach Spieler */
+	private final Map<ServerStrategie, Integer> nachSpieler = new ConcurrentHashMap<ServerStrategie, Integer>();
+	
+	/** Die Spieler nach Platz, null für freie Plätze (Momentaufnahme, wird nicht verändert) */
+	private volatile ServerStrategie[] plaetze = LEER;
+	
+	/** Alle Spieler nach Platz ohne Lücken (Momentaufnahme, wird nicht verändert) */
+	private volatile ServerStrategie[] alle = LEER;
+	
+	/** Die Namen aus alle (unveränderliche Liste) */
+	private volatile List<String> namen = Collections.emptyList();
+	
+	/**
+	 * Setzt einen Spieler auf den kleinsten freien Platz.
+	 * 
+	 * @param spieler Der Spieler.
+	 * @param name Sein Name oder null, wenn er noch keinen hat (lokaler Spieler vor HELO).
+	 * @return Der Platz oder -1, wenn der Name schon vergeben oder kein Platz mehr frei ist.
+	 */
+	public int hinzufuegen(ServerStrategie spieler, String name) {
+		// Kleinsten freien Platz suchen, sonst hinten anbauen
+		ServerStrategie[] alt = plaetze;
+		int platz = 0;
+		while ((platz < alt.length) && (alt[platz] != null)) platz++;
+		if (platz >= MAX_PLAETZE) return -1;
+		
+		if ((name != null) && !reservieren(spieler, name)) return -1;
+		
+		ServerStrategie[] neu = new ServerStrategie[Math.max(alt.length, platz + 1)];
+		System.arraycopy(alt, 0, neu, 0, alt.length);
+		neu[platz] = spieler;
+		nachSpieler.put(spieler, platz);
+		veroeffentlichen(neu);
+		
+		return platz;
+	}
+	
+	/**
+	 * Gibt einem Spieler einen (neuen) Namen.
+	 * 
+	 * @param spieler Der Spieler, er muss in der Liste sein.
+	 * @param name Der Name.
+	 * @return false, wenn ein anderer Spieler den Namen schon hat.
+	 */
+	public boolean umbenennen(ServerStrategie spieler, String name) {
+		String alt = spieler.toString();
+		if (!reservieren(spieler, name)) return false;
+		if ((alt != null) && !alt.equals(name)) nachName.remove(alt);
+		
+		veroeffentlichen(plaetze);
+		return true;
+	}
+	
+	/**
+	 * Entfernt einen Spieler, sein Platz wird frei.
+	 * 
+	 * @param spieler Der Spieler.
+	 * @return Sein bisheriger Platz oder -1, wenn er nicht in der Liste war.
+	 */
+	public int entfernen(ServerStrategie spieler) {
+		Integer platz = nachSpieler.remove(spieler);
+		if (platz == null) return -1;
+		if (spieler.toString() != null) nachName.remove(spieler.toString());
+		
+		ServerStrategie[] neu = plaetze.clone();
+		neu[platz] = null;
+		veroeffentlichen(neu);
+		
+		return platz;
+	}
+	
+	/**
+	 * Setzt einen Spieler auf den Platz eines anderen, z.B. die neue Verbindung einer
+	 * fortgesetzten Sitzung. Beide müssen denselben Namen haben.
+	 * 
+	 * @param alt Der bisherige Spieler.
+	 * @param neu Der neue Spieler.
+	 * @return Der Platz oder -1, wenn alt nicht in der Liste war.
+	 */
+	public int ersetzen(ServerStrategie alt, ServerStrategie neu) {
+		Integer platz = nachSpieler.remove(alt);
+		if (platz == null) return -1;
+		
+		nachSpieler.put(neu, platz);
+		if (neu.toString() != null) nachName.put(neu.toString(), neu);
+		
+		ServerStrategie[] kopie = plaetze.clone();
+		kopie[platz] = neu;
+		veroeffentlichen(kopie);
+		
+		return platz;
+	}
+	
+	/**
+	 * Entfernt alle Spieler.
+	 */
+	public void leeren() {
+		nachName.clear();
+		nachSpieler.clear();
+		veroeffentlichen(LEER);
+	}
+	
+	/**
+	 * Sucht einen Spieler nach seinem Namen.
+	 * 
+	 * @param name Der Name.
+	 * @return Der Spieler oder null.
+	 */
+	public ServerStrategie get(String name) {
+		return (name != null) ? nachName.get(name) : null;
+	}
+	
+	/**
+	 * Liefert den Spieler auf einem Platz.
+	 * 
+	 * @param platz Der Platz.
+	 * @return Der Spieler oder null, wenn der Platz frei ist.
+	 */
+	public ServerStrategie get(int platz) {
+		ServerStrategie[] p = plaetze;
+		return ((platz >= 0) && (platz < p.length)) ? p[platz] : null;
+	}
+	
+	/**
+	 * Liefert den Platz eines Spielers.
+	 * 
+	 * @param spieler Der Spieler.
+	 * @return Der Platz oder -1, wenn er nicht in der Liste ist.
+	 */
+	public int getPlatz(ServerStrategie spieler) {
+		Integer platz = (spieler != null) ? nachSpieler.get(spieler) : null;
+		return (platz != null) ? platz : -1;
+	}
+	
+	/**
+	 * Ermittelt den nächsten besetzten Platz in der Zugreihenfolge.
+	 * 
+	 * @param platz Der Platz, nach dem gesucht wird (muss nicht besetzt sein).
+	 * @return Der nächste besetzte Platz, ggf. wieder von vorn, oder -1 bei einer leeren Liste.
+	 */
+	public int naechsterPlatz(int platz) {
+		ServerStrategie[] p = plaetze;
+		for (int i = 1; i <= p.length; i++) {
+			int kandidat = (platz + i) % p.length;
+			if ((kandidat >= 0) && (p[kandidat] != null)) return kandidat;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Wählt einen besetzten Platz per Zufall.
+	 * 
+	 * @return Der Platz oder -1 bei einer leeren Liste.
+	 */
+	public int zufaelligerPlatz() {
+		ServerStrategie[] a = alle;
+		return (a.length > 0) ? getPlatz(a[zufall.nextInt(a.length)]) : -1;
+	}
+	
+	/**
+	 * Liefert alle Spieler nach Platz.
+	 * 
+	 * @return Eine Momentaufnahme, sie darf nicht verändert werden.
+	 */
+	public ServerStrategie[] alle() {
+		return alle;
+	}
+	
+	/**
+	 * Liefert die Anzahl der Spieler.
+	 * 
+	 * @return Die Anzahl.
+	 */
+	public int anzahl() {
+		return alle.length;
+	}
+	
+	/**
+	 * Liefert die Namen aller Spieler nach Platz.
+	 * 
+	 * @return Die Namen (unveränderlich).
+	 */
+	public List<String> getNamen() {
+		return namen;
+	}
+	
+	/**
+	 * Liefert die Namen der Spieler nach ihrem Platz (s. Protokoll.PLATZ_NUMMERN).
+	 * 
+	 * @return Ein neues Feld mit dem Namen für jeden Platz, null für freie Plätze.
+	 */
+	public String[] getPlatzNamen() {
+		ServerStrategie[] p = plaetze;
+		String[] n = new String[p.length];
+		for (int i = 0; i < p.length; i++) if (p[i] != null) n[i] = String.valueOf(p[i]);
+		
+		return n;
+	}
+	
+	/**
+	 * Reserviert einen Namen für einen Spieler und setzt ihn.
+	 * 
+	 * @param spieler Der Spieler.
+	 * @param name Der Name.
+	 * @return false, wenn ein anderer Spieler den Namen schon hat.
+	 */
+	private boolean reservieren(ServerStrategie spieler, String name) {
+		ServerStrategie vorher = nachName.putIfAbsent(name, spieler);
+		if ((vorher != null) && (vorher != spieler)) return false;
+		
+		spieler.setName(name);
+		return true;
+	}
+	
+	/**
+	 * Ersetzt die Momentaufnahmen.
+	 * 
+	 * @param neu Die Spieler nach Platz, das Feld wird danach nicht mehr verändert.
+	 */
+	private void veroeffentlichen(ServerStrategie[] neu) {
+		// Freie Plätze am Ende abschneiden
+		int laenge = neu.length;
+		while ((laenge > 0) && (neu[laenge - 1] == null)) laenge--;
+		if (laenge < neu.length) {
+			ServerStrategie[] kurz = new ServerStrategie[laenge];
+			System.arraycopy(neu, 0, kurz, 0, laenge);
+			neu = kurz;
+		}
+		
+		List<ServerStrategie> besetzt = new ArrayList<ServerStrategie>(neu.length);
+		List<String> n = new ArrayList<String>(neu.length);
+		for (ServerStrategie spieler: neu) {
+			if (spieler == null) continue;
+			besetzt.add(spieler);
+			n.add(String.valueOf(spieler));
+		}
+		
+		plaetze = neu;
+		alle = besetzt.toArray(new ServerStrategie[besetzt.size()]);
+		namen = Collections.unmodifiableList(n);
+	}
+}
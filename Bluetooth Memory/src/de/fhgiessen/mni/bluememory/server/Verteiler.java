@@ -0,0 +1,199 @@
+package de.fhgiessen.mni.bluememory.server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import android.util.Log;
+
+/**
+ * Arbeitet Postfächer mit einer festen Anzahl Arbeiter-Threads ab.
+ * 
+ * Jeder Arbeiter hat eine eigene Warteschlange mit eingeplanten Postfächern. Ein Postfach, das
+ * ein Arbeiter einplant (z.B. der Raum, an den ein anderer Raum eine Nachricht schickt), landet
+ * in dessen eigener Schlange, Postfächer aus anderen Threads (lesende Threads, UI-Thread) in einer
+ * gemeinsamen. Hat ein Arbeiter nichts mehr zu tun, nimmt er sich Arbeit aus der gemeinsamen
+ * Schlange und danach aus den Schlangen der anderen Arbeiter. So verteilen sich viele aktive
+ * Räume von selbst auf alle Kerne, ohne dass ein Raum fest an einen Thread gebunden ist.
+ * 
+ * Alle Schlangen kommen ohne Sperren aus. Arbeiter ohne Arbeit schlafen, bis ein neues Postfach
+ * eingeplant wird.
+ * 
+ * Fristen (s. Postfach.einstellenNach()) verwaltet ein eigener Zeitgeber-Thread, der die Aufgabe
+ * bei Ablauf nur in das Postfach stellt.
+ */
+public class Verteiler {
+	/** Logcat-Tag der Klasse */
+	private static final String TAG = "BlueMemory.Verteiler";
+	
+	/** Die Arbeiter */
+	private final Arbeiter[] arbeiter;
+	
+	/** Postfächer, die außerhalb der Arbeiter eingeplant wurden */
+	private final ConcurrentLinkedQueue<Postfach> eingang = new ConcurrentLinkedQueue<Postfach>();
+	
+	/** Stellt die Fristen in die Postfächer */
+	private final ScheduledExecutorService zeitgeber;
+	
+	/** true, wenn die Arbeiter nach der restlichen Arbeit enden sollen */
+	private volatile boolean beendet;
+	
+	/**
+	 * Konstruktor
+	 * 
+	 * Startet einen Arbeiter pro Prozessorkern und den Zeitgeber.
+	 */
+	public Verteiler() {
+		arbeiter = new Arbeiter[Math.max(1, Runtime.getRuntime().availableProcessors())];
+		for (int i = 0; i < arbeiter.length; i++) arbeiter[i] = new Arbeiter(i);
+		for (Arbeiter a: arbeiter) a.start();
+		
+		zeitgeber = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, TAG + ".Zeitgeber");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Plant ein Postfach zur Bearbeitung ein. Wird nur vom Postfach aufgerufen.
+	 * 
+	 * @param postfach Das Postfach, es darf nicht bereits eingeplant sein.
+	 */
+	void planen(Postfach postfach) {
+		Thread aktuell = Thread.currentThread();
+		if ((aktuell instanceof Arbeiter) && (((Arbeiter) aktuell).getVerteiler() == this)) ((Arbeiter) aktuell).schlange.add(postfach);
+		else eingang.add(postfach);
+		
+		wecken();
+	}
+	
+	/**
+	 * Stellt eine Aufgabe nach einer Verzögerung in ein Postfach.
+	 * 
+	 * @param postfach Das Postfach.
+	 * @param aufgabe Die Aufgabe.
+	 * @param verzoegerung Die Verzögerung in ms.
+	 */
+	void planenNach(final Postfach postfach, final Runnable aufgabe, long verzoegerung) {
+		if (beendet) return;
+		
+		zeitgeber.schedule(new Runnable() {
+			@Override
+			public void run() {
+				postfach.einstellen(aufgabe);
+			}
+		}, verzoegerung, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Beendet die Arbeiter, sobald keine Arbeit mehr vorliegt. Offene Fristen verfallen.
+	 */
+	public void beenden() {
+		beendet = true;
+		zeitgeber.shutdownNow();
+		for (Arbeiter a: arbeiter) LockSupport.unpark(a);
+	}
+	
+	/**
+	 * Weckt einen schlafenden Arbeiter, falls es einen gibt.
+	 */
+	private void wecken() {
+		for (Arbeiter a: arbeiter) {
+			if (a.schlaeft) {
+				LockSupport.unpark(a);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Sucht das nächste Postfach für einen Arbeiter.
+	 * 
+	 * @param a Der Arbeiter.
+	 * @return Das Postfach oder null, wenn es nirgends Arbeit gibt.
+	 */
+	private Postfach naechstes(Arbeiter a) {
+		// Eigene Schlange, dann die gemeinsame
+		Postfach postfach = a.schlange.poll();
+		if (postfach == null) postfach = eingang.poll();
+		
+		// Bei den anderen Arbeitern stehlen, beim rechten Nachbarn beginnend
+		for (int i = 1; (postfach == null) && (i < arbeiter.length); i++) postfach = arbeiter[(a.nummer + i) % arbeiter.length].schlange.poll();
+		
+		return postfach;
+	}
+	
+	/**
+	 * Prüft, ob irgendwo noch ein Postfach eingeplant ist.
+	 * 
+	 * @return true, wenn es Arbeit gibt.
+	 */
+	private boolean hatArbeit() {
+		if (!eingang.isEmpty()) return true;
+		for (Arbeiter a: arbeiter) if (!a.schlange.isEmpty()) return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Ein Arbeiter-Thread des Verteilers.
+	 */
+	private class Arbeiter extends Thread {
+		/** Die Nummer des Arbeiters */
+		final int nummer;
+		
+		/** Die vom Arbeiter selbst eingeplanten Postfächer, andere Arbeiter stehlen hieraus */
+		final ConcurrentLinkedQueue<Postfach> schlange = new ConcurrentLinkedQueue<Postfach>();
+		
+		/** true, während der Arbeiter schläft oder sich gerade schlafen legt */
+		volatile boolean schlaeft;
+		
+		/**
+		 * Konstruktor
+		 * 
+		 * @param nummer Die Nummer des Arbeiters.
+		 */
+		Arbeiter(int nummer) {
+			super(TAG + "." + nummer);
+			this.nummer = nummer;
+			setDaemon(true);
+		}
+		
+		/**
+		 * Liefert den Verteiler des Arbeiters.
+		 * 
+		 * @return Der Verteiler.
+		 */
+		Verteiler getVerteiler() {
+			return Verteiler.this;
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				Postfach postfach = naechstes(this);
+				if (postfach != null) {
+					// Liegt noch mehr an, einen weiteren Arbeiter dazuholen
+					if (hatArbeit()) wecken();
+					postfach.run();
+					continue;
+				}
+				if (beendet) break;
+				
+				// Schlafen, bis ein Postfach eingeplant wird
+				schlaeft = true;
+				if (!hatArbeit() && !beendet) LockSupport.park(this);
+				schlaeft = false;
+			}
+			
+			Log.d(TAG, getName() + " beendet.");
+		}
+	}
+}